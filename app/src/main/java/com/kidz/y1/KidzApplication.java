@@ -2,9 +2,27 @@ package com.kidz.y1;
 
 import android.app.Application;
 
+import com.kidz.y1.di.DependencyProvider;
+import com.kidz.y1.repositories.ImageRepository;
+import com.kidz.y1.repositories.MusicRepository;
+import com.kidz.y1.utils.LibraryWatcher;
+import com.kidz.y1.utils.StorageMonitor;
+
 public class KidzApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        MusicRepository musicRepository = DependencyProvider.getMusicRepository();
+        ImageRepository imageRepository = DependencyProvider.getImageRepository();
+        LibraryWatcher libraryWatcher = DependencyProvider.getLibraryWatcher();
+
+        musicRepository.setIndexDirectory(getFilesDir());
+        // Keep cover paths and directory watches in sync with every new library index
+        musicRepository.addLibraryIndexListener(imageRepository::onLibraryIndexValidated);
+        musicRepository.addLibraryIndexListener(libraryWatcher::watchLibrary);
+        // Suspend file access while storage is shared with a PC, and re-validate once it is back
+        new StorageMonitor(this, musicRepository, imageRepository, libraryWatcher).start();
+        // Validate the library and warm the cover cache while charging unattended
+        DependencyProvider.getBackgroundReindexer(this).start();
     }
 }
@@ -6,10 +6,13 @@ import android.os.Bundle;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.kidz.y1.models.Album;
+import com.kidz.y1.models.LibraryDiff;
+import com.kidz.y1.models.NameIndex;
 import com.kidz.y1.models.Profile;
 import com.kidz.y1.utils.Constants;
 import com.kidz.y1.utils.Logger;
 import com.kidz.y1.utils.NavigationHelper;
+import com.kidz.y1.utils.PlaylistParser;
 import com.kidz.y1.viewmodels.AlbumsViewModel;
 
 import java.io.File;
@@ -46,7 +49,7 @@ public class AlbumsActivity extends CoverFlowActivity {
             showErrorMessage("Invalid profile directory");
         }
         
-        viewModel.getAlbums().observe(this, this::onAlbumsLoaded);
+        viewModel.getAlbumChanges().observe(this, this::onAlbumsChanged);
         viewModel.getErrorMessage().observe(this, this::onError);
     }
 
@@ -70,21 +73,38 @@ public class AlbumsActivity extends CoverFlowActivity {
         }
     }
 
-    private void onAlbumsLoaded(List<Album> albumsList) {
-        if (albumsList != null) {
-            albums = albumsList;
-            items = new ArrayList<>();
-            for (Album album : albums) {
-                items.add(album.getDirectory());
-            }
-        } else {
-            items = new ArrayList<>();
+    /**
+     * Applies a new album listing. A diff from the listing on screen only moves the covers of
+     * the albums that are still listed; any other listing replaces the whole cover flow.
+     */
+    private void onAlbumsChanged(LibraryDiff<Album> diff) {
+        if (diff == null || diff.getCurrent() == albums) {
+            onNameIndexAvailable();
+            return;
         }
-        restoreSelection();
-        if (coverFlowView != null && items != null && !items.isEmpty()) {
-            coverFlowView.setSelectedIndexWithoutAnimation(selectedIndex);
+        File previouslySelected = getSelectedItem();
+        int previousCount = getItemCount();
+        boolean incremental = diff.getPrevious() == albums;
+        albums = diff.getCurrent();
+        items = new ArrayList<>(albums.size());
+        for (Album album : albums) {
+            items.add(album.getDirectory());
         }
-        updateDisplay();
+        restoreSelection(previouslySelected);
+        if (incremental) {
+            applyItemChanges(previousCount, diff::getNewPosition);
+        } else {
+            if (coverFlowView != null && !items.isEmpty()) {
+                coverFlowView.setSelectedIndexWithoutAnimation(selectedIndex);
+            }
+            updateDisplay();
+        }
+        onNameIndexAvailable();
+    }
+
+    @Override
+    protected NameIndex getNameIndex() {
+        return viewModel != null ? viewModel.getAlbumNames(albums) : null;
     }
 
     private void onError(String error) {
@@ -105,7 +125,7 @@ public class AlbumsActivity extends CoverFlowActivity {
 
     @Override
     protected String getItemName(File item) {
-        return item.getName();
+        return PlaylistParser.getBaseName(item.getName());
     }
 
     @Override
@@ -6,6 +6,7 @@ import android.view.KeyEvent;
 import android.view.View;
 
 import com.kidz.y1.R;
+import com.kidz.y1.models.NameIndex;
 import com.kidz.y1.utils.Constants;
 import com.kidz.y1.utils.ImageHelper;
 import com.kidz.y1.utils.NavigationHelper;
@@ -20,6 +21,12 @@ public abstract class CoverFlowActivity extends BaseActivity {
     protected int selectedIndex = 0;
     protected List<File> items;
     protected ImageType imageType;
+    // The saved selection is beyond the items listed so far (partial listing)
+    private boolean selectionPending = false;
+    // Jump or type-ahead waiting for the name index of the items
+    private Runnable pendingNameIndexAction;
+    private final StringBuilder typeAhead = new StringBuilder();
+    private long lastTypeAheadTime = 0;
 
     public enum ImageType {
         PROFILE, ALBUM, TRACK
@@ -91,18 +98,184 @@ public abstract class CoverFlowActivity extends BaseActivity {
      * Used to maintain selection when navigating back to an activity.
      */
     protected void restoreSelection() {
-        if (items == null || items.isEmpty()) {
+        if (getItemCount() == 0) {
             selectedIndex = 0;
             return;
         }
         int savedIndex = getIntent().getIntExtra(getSelectionExtraKey(), -1);
-        if (savedIndex >= 0 && savedIndex < items.size()) {
+        if (savedIndex >= 0 && savedIndex < getItemCount()) {
             selectedIndex = savedIndex;
+            selectionPending = false;
         } else {
             selectedIndex = 0;
+            selectionPending = savedIndex > 0;
         }
     }
 
+    /**
+     * Restores the selection after the items were replaced, e.g. by a revalidated or more
+     * complete listing. Keeps the previously selected item selected if it is still listed,
+     * unless it was only selected because the saved selection was not listed yet; otherwise
+     * falls back to restoreSelection().
+     *
+     * @param previouslySelected the item selected before the replacement, or null
+     */
+    protected void restoreSelection(File previouslySelected) {
+        int index = previouslySelected != null && !selectionPending ? indexOfItem(previouslySelected) : -1;
+        if (index >= 0) {
+            selectedIndex = index;
+        } else {
+            restoreSelection();
+        }
+    }
+
+    protected File getSelectedItem() {
+        if (selectedIndex < 0 || selectedIndex >= getItemCount()) {
+            return null;
+        }
+        return getItem(selectedIndex);
+    }
+
+    /**
+     * Gets the number of items of the cover flow.
+     * Subclasses that load their items in windows override it together with getItem().
+     * @return the number of items, including items not loaded yet
+     */
+    protected int getItemCount() {
+        return items != null ? items.size() : 0;
+    }
+
+    /**
+     * Gets the item at a position.
+     * @param index the position of the item
+     * @return the File representing the item, or null if it is not loaded yet
+     */
+    protected File getItem(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * Gets the position of an item.
+     * @param item the File representing the item
+     * @return the position, or -1 if the item is not (or not yet) listed
+     */
+    protected int indexOfItem(File item) {
+        return items != null ? items.indexOf(item) : -1;
+    }
+
+    /**
+     * Called when the user moved the selection.
+     * Subclasses that load their items in windows use it to load the items around it.
+     * @param index the new selected position
+     */
+    protected void onSelectedIndexChanged(int index) {
+    }
+
+    /**
+     * Refreshes the displayed items after items were loaded without changing their count.
+     * Cheaper than updateDisplay(): only the covers whose item changed are reloaded.
+     */
+    protected void refreshLoadedItems() {
+        if (coverFlowView != null) {
+            coverFlowView.notifyCoversChanged();
+        }
+        updateBottomBarText();
+        updateTopBarText();
+    }
+
+    /**
+     * Updates the display after items were added, removed or moved, e.g. by a revalidated
+     * listing. Cheaper than updateDisplay(): covers of items that are still listed stay bound
+     * and only move, so only the covers of new items are loaded.
+     * The subclass replaces its items and restores the selection before calling it.
+     *
+     * @param previousCount the number of items before the change
+     * @param positions maps the positions before the change to the positions after it
+     */
+    protected void applyItemChanges(int previousCount, CoverFlowView.PositionMap positions) {
+        if (coverFlowView == null || previousCount == 0 || getItemCount() == 0) {
+            if (coverFlowView != null && getItemCount() > 0) {
+                coverFlowView.setSelectedIndexWithoutAnimation(selectedIndex);
+            }
+            updateDisplay();
+            return;
+        }
+        coverFlowView.applyChanges(getItemCount(), positions, selectedIndex);
+        updateBottomBarText();
+        updateTopBarText();
+    }
+
+    /**
+     * Gets the index of the item names, used to jump to the next letter or a typed prefix.
+     * Subclasses get it from their ViewModel, which builds it off the main thread; until it
+     * is available they return null, and call onNameIndexAvailable() once it is.
+     * @return the name index of all items, by item position, or null if it is not available yet
+     */
+    protected abstract NameIndex getNameIndex();
+
+    /**
+     * Runs the jump or type-ahead that was waiting for the name index, if any.
+     * Called by subclasses when getNameIndex() may have become available.
+     */
+    protected void onNameIndexAvailable() {
+        Runnable action = pendingNameIndexAction;
+        if (action != null && getNameIndex() != null) {
+            pendingNameIndexAction = null;
+            action.run();
+        }
+    }
+
+    /**
+     * Selects the first item of the next letter group, or of the previous one (or of the
+     * current one if the selection is not its first item).
+     * @param forward true to jump to the next letter group
+     */
+    protected void jumpToLetterGroup(boolean forward) {
+        NameIndex names = getNameIndex();
+        if (names == null) {
+            pendingNameIndexAction = () -> jumpToLetterGroup(forward);
+            return;
+        }
+        if (coverFlowView == null || selectedIndex < 0 || selectedIndex >= names.size()) {
+            return;
+        }
+        int index = forward ? names.getNextGroupStart(selectedIndex)
+                : names.getPreviousGroupStart(selectedIndex);
+        if (index >= 0) {
+            coverFlowView.jumpToIndex(index);
+        }
+    }
+
+    /**
+     * Extends the typed prefix by a character and selects the first item starting with it.
+     * The prefix starts over after Constants.TYPE_AHEAD_TIMEOUT_MS without typing.
+     */
+    private void typeAhead(char c, long eventTime) {
+        if (eventTime - lastTypeAheadTime > Constants.TYPE_AHEAD_TIMEOUT_MS) {
+            typeAhead.setLength(0);
+        }
+        lastTypeAheadTime = eventTime;
+        typeAhead.append(c);
+        jumpToTypedPrefix();
+    }
+
+    private void jumpToTypedPrefix() {
+        NameIndex names = getNameIndex();
+        if (names == null) {
+            pendingNameIndexAction = this::jumpToTypedPrefix;
+            return;
+        }
+        int index = names.findPrefix(typeAhead.toString());
+        if (index >= 0 && coverFlowView != null) {
+            coverFlowView.jumpToIndex(index);
+        }
+    }
+
+    private static boolean isStepKey(int keyCode) {
+        return keyCode == KeyEvent.KEYCODE_DPAD_LEFT || keyCode == KeyEvent.KEYCODE_MEDIA_PREVIOUS
+                || keyCode == KeyEvent.KEYCODE_DPAD_RIGHT || keyCode == KeyEvent.KEYCODE_MEDIA_NEXT;
+    }
+
     protected abstract String getSelectionExtraKey();
 
     private void setupCoverFlowView() {
@@ -111,8 +284,10 @@ public abstract class CoverFlowActivity extends BaseActivity {
         coverFlowView.setCoverSize(coverSize);
         coverFlowView.setOnCoverSelectedListener(index -> {
             selectedIndex = index;
+            selectionPending = false;
             updateBottomBarText();
             updateTopBarText();
+            onSelectedIndexChanged(index);
         });
     }
 
@@ -121,7 +296,7 @@ public abstract class CoverFlowActivity extends BaseActivity {
      * Shows error message if no items, otherwise displays the cover flow.
      */
     protected void updateDisplay() {
-        if (items == null || items.isEmpty()) {
+        if (getItemCount() == 0) {
             showErrorMessage(getEmptyMessage());
             if (coverFlowView != null) {
                 coverFlowView.setVisibility(View.GONE);
@@ -138,38 +313,62 @@ public abstract class CoverFlowActivity extends BaseActivity {
     }
 
     private void loadCovers() {
-        if (items == null || items.isEmpty() || coverFlowView == null) {
+        if (getItemCount() == 0 || coverFlowView == null) {
             return;
         }
         int coverSize = calculateCoverSize();
         ImageHelper.ImageType helperImageType = ImageHelper.ImageType.valueOf(imageType.name());
-        coverFlowView.setCoversFromSources(items, helperImageType, coverSize);
+        coverFlowView.setCovers(getItemCount(), this::getItem, helperImageType, coverSize);
         coverFlowView.setSelectedIndexWithoutAnimation(selectedIndex);
     }
 
     private void updateBottomBarText() {
-        if (items != null && !items.isEmpty() && selectedIndex >= 0 && selectedIndex < items.size()) {
-            bottomBarText.setText(getItemName(items.get(selectedIndex)));
+        if (selectedIndex >= 0 && selectedIndex < getItemCount()) {
+            File item = getItem(selectedIndex);
+            bottomBarText.setText(item != null ? getItemName(item) : "");
         }
     }
 
     private void updateTopBarText() {
-        if (items != null && !items.isEmpty()) {
+        if (getItemCount() > 0) {
             int current = selectedIndex + 1;
-            int total = items.size();
+            int total = getItemCount();
             topBarText.setText(current + "/" + total);
         }
     }
 
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        if (isStepKey(keyCode)) {
+            // Tracked so that holding the key calls onKeyLongPress()
+            event.startTracking();
+            return true;
+        }
+        return super.onKeyDown(keyCode, event);
+    }
+
+    @Override
+    public boolean onKeyLongPress(int keyCode, KeyEvent event) {
+        if (isStepKey(keyCode) && getItemCount() > 0) {
+            jumpToLetterGroup(keyCode == KeyEvent.KEYCODE_DPAD_RIGHT || keyCode == KeyEvent.KEYCODE_MEDIA_NEXT);
+            return true;
+        }
+        return super.onKeyLongPress(keyCode, event);
+    }
+
     @Override
     public boolean onKeyUp(int keyCode, KeyEvent event) {
-        if (items == null || items.isEmpty()) {
+        if (getItemCount() == 0) {
             if (keyCode == KeyEvent.KEYCODE_BACK) {
                 handleBackPress();
                 return true;
             }
             return true;
         }
+        if (isStepKey(keyCode) && (event.getFlags() & KeyEvent.FLAG_CANCELED_LONG_PRESS) != 0) {
+            // Released after a long press, which already jumped
+            return true;
+        }
         if (keyCode == KeyEvent.KEYCODE_ENTER) {
             handleCenterClick();
             return true;
@@ -186,9 +385,22 @@ public abstract class CoverFlowActivity extends BaseActivity {
             handleBackPress();
             return true;
         }
+        if (keyCode == KeyEvent.KEYCODE_MEDIA_FAST_FORWARD) {
+            jumpToLetterGroup(true);
+            return true;
+        }
+        if (keyCode == KeyEvent.KEYCODE_MEDIA_REWIND) {
+            jumpToLetterGroup(false);
+            return true;
+        }
         if (keyCode == KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE) {
             return true;
         }
+        int unicodeChar = event.getUnicodeChar();
+        if (unicodeChar > 0 && Character.isLetterOrDigit((char) unicodeChar)) {
+            typeAhead((char) unicodeChar, event.getEventTime());
+            return true;
+        }
         return super.onKeyUp(keyCode, event);
     }
 
@@ -19,7 +19,6 @@ import com.bumptech.glide.request.RequestOptions;
 import android.util.TypedValue;
 import com.kidz.y1.R;
 import com.kidz.y1.utils.ImageHelper;
-import com.kidz.y1.utils.MusicFileScanner;
 import com.kidz.y1.utils.NavigationHelper;
 import com.kidz.y1.utils.Constants;
 import com.kidz.y1.utils.GlideOptionsCache;
@@ -28,7 +27,6 @@ import com.kidz.y1.utils.ProgressUpdateObserver;
 import com.kidz.y1.utils.VolumeManager;
 
 import java.io.File;
-import java.util.List;
 
 public class NowPlayingActivity extends BaseActivity {
     private ImageView coverView;
@@ -39,7 +37,6 @@ public class NowPlayingActivity extends BaseActivity {
     private File trackFile;
     private File albumDirectory;
     private int trackIndex = 0;
-    private List<File> trackFiles;
 
     private ProgressUpdateObserver progressUpdateObserver;
 
@@ -136,12 +133,9 @@ public class NowPlayingActivity extends BaseActivity {
     }
 
     private void loadTrackInfoAsync() {
-        trackFiles = MusicFileScanner.scanTracks(albumDirectory);
-        if (trackIndex < 0 || trackIndex >= trackFiles.size()) {
-            trackIndex = trackFiles.indexOf(trackFile);
-            if (trackIndex < 0) {
-                trackIndex = 0;
-            }
+        // The position comes from the track listing; TracksActivity checks it against the album again
+        if (trackIndex < 0) {
+            trackIndex = 0;
         }
 
         String imagePath = ImageHelper.findImagePath(trackFile, ImageHelper.ImageType.TRACK);
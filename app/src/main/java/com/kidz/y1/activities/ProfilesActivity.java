@@ -6,6 +6,8 @@ import android.view.View;
 
 import androidx.lifecycle.ViewModelProvider;
 
+import com.kidz.y1.models.LibraryDiff;
+import com.kidz.y1.models.NameIndex;
 import com.kidz.y1.models.Profile;
 import com.kidz.y1.utils.Constants;
 import com.kidz.y1.utils.NavigationHelper;
@@ -25,7 +27,7 @@ public class ProfilesActivity extends CoverFlowActivity {
         
         viewModel = new ViewModelProvider(this).get(MainViewModel.class);
         
-        viewModel.getProfiles().observe(this, this::onProfilesLoaded);
+        viewModel.getProfileChanges().observe(this, this::onProfilesChanged);
         viewModel.getErrorMessage().observe(this, this::onError);
         viewModel.getIsKidzDirectoryExists().observe(this, exists -> {
             if (exists != null && exists) {
@@ -66,21 +68,38 @@ public class ProfilesActivity extends CoverFlowActivity {
         }
     }
 
-    private void onProfilesLoaded(List<Profile> profilesList) {
-        if (profilesList != null) {
-            profiles = profilesList;
-            items = new ArrayList<>();
-            for (Profile profile : profiles) {
-                items.add(profile.getDirectory());
-            }
-        } else {
-            items = new ArrayList<>();
+    /**
+     * Applies a new profile listing. A diff from the listing on screen only moves the covers of
+     * the profiles that are still listed; any other listing replaces the whole cover flow.
+     */
+    private void onProfilesChanged(LibraryDiff<Profile> diff) {
+        if (diff == null || diff.getCurrent() == profiles) {
+            onNameIndexAvailable();
+            return;
         }
-        restoreSelection();
-        if (coverFlowView != null && items != null && !items.isEmpty()) {
-            coverFlowView.setSelectedIndexWithoutAnimation(selectedIndex);
+        File previouslySelected = getSelectedItem();
+        int previousCount = getItemCount();
+        boolean incremental = diff.getPrevious() == profiles;
+        profiles = diff.getCurrent();
+        items = new ArrayList<>(profiles.size());
+        for (Profile profile : profiles) {
+            items.add(profile.getDirectory());
         }
-        updateDisplay();
+        restoreSelection(previouslySelected);
+        if (incremental) {
+            applyItemChanges(previousCount, diff::getNewPosition);
+        } else {
+            if (coverFlowView != null && !items.isEmpty()) {
+                coverFlowView.setSelectedIndexWithoutAnimation(selectedIndex);
+            }
+            updateDisplay();
+        }
+        onNameIndexAvailable();
+    }
+
+    @Override
+    protected NameIndex getNameIndex() {
+        return viewModel != null ? viewModel.getProfileNames(profiles) : null;
     }
 
     private void onError(String error) {
@@ -6,20 +6,30 @@ import android.os.Bundle;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.kidz.y1.models.Album;
+import com.kidz.y1.models.LibraryDiff;
+import com.kidz.y1.models.NameIndex;
 import com.kidz.y1.models.Profile;
 import com.kidz.y1.models.Track;
+import com.kidz.y1.models.TrackPage;
 import com.kidz.y1.utils.Constants;
+import com.kidz.y1.utils.MusicFileScanner;
 import com.kidz.y1.utils.NavigationHelper;
 import com.kidz.y1.viewmodels.TracksViewModel;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.List;
 
+/**
+ * Cover flow of the tracks of an album.
+ * Tracks are listed in windows (see TracksViewModel), so albums of any size open at once;
+ * covers of positions outside the loaded window stay blank until it arrives.
+ * A revalidated window is applied from its diff, so unchanged covers stay bound.
+ * The NameIndex of the album is loaded by the first jump or type-ahead.
+ */
 public class TracksActivity extends CoverFlowActivity {
     private TracksViewModel viewModel;
     private Album album;
-    private List<Track> tracks = new ArrayList<>();
+    private TrackPage page;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -36,10 +46,11 @@ public class TracksActivity extends CoverFlowActivity {
         viewModel = new ViewModelProvider(this).get(TracksViewModel.class);
         
         if (album != null) {
-            viewModel.setAlbum(album);
+            viewModel.setAlbum(album, getIntent().getIntExtra(getSelectionExtraKey(), 0));
         }
         
-        viewModel.getTracks().observe(this, this::onTracksLoaded);
+        viewModel.getTrackPage().observe(this, this::onTracksLoaded);
+        viewModel.getTrackNames().observe(this, names -> onNameIndexAvailable());
         viewModel.getErrorMessage().observe(this, this::onError);
     }
 
@@ -51,33 +62,101 @@ public class TracksActivity extends CoverFlowActivity {
             return;
         }
         
-        List<Track> currentTracks = viewModel.getTracks().getValue();
-        if (currentTracks != null) {
-            tracks = currentTracks;
-            items = new ArrayList<>();
-            for (Track track : tracks) {
-                items.add(track.getFile());
+        page = viewModel.getTrackPage().getValue();
+    }
+
+    private void onTracksLoaded(TrackPage trackPage) {
+        File previouslySelected = getSelectedItem();
+        if (page != null && trackPage != null && trackPage.getChanges() != null
+                && trackPage.getChanges().getPrevious() == page.getTracks()) {
+            // Revalidated window: move the covers of the tracks that are still listed
+            TrackPage previousPage = page;
+            LibraryDiff<Track> changes = trackPage.getChanges();
+            if (viewModel != null) {
+                // The album listing changed
+                viewModel.clearTrackNames();
+            }
+            int previousCount = getItemCount();
+            page = trackPage;
+            restoreSelection(previouslySelected);
+            applyItemChanges(previousCount, position -> {
+                if (!previousPage.contains(position)) {
+                    return -1;
+                }
+                int newPosition = changes.getNewPosition(position - previousPage.getOffset());
+                return newPosition >= 0 ? trackPage.getOffset() + newPosition : -1;
+            });
+            if (viewModel != null && getItemCount() > 0) {
+                viewModel.loadTracks(selectedIndex);
             }
+            return;
+        }
+        boolean countChanged = page == null || trackPage == null
+                || page.getTotalCount() != trackPage.getTotalCount();
+        page = trackPage;
+        if (!countChanged && (previouslySelected == null || previouslySelected.equals(getSelectedItem()))) {
+            // Another window of the same listing: only the covers that were blank change
+            refreshLoadedItems();
         } else {
-            items = new ArrayList<>();
+            restoreSelection(previouslySelected);
+            if (coverFlowView != null && getItemCount() > 0) {
+                coverFlowView.setSelectedIndexWithoutAnimation(selectedIndex);
+            }
+            updateDisplay();
+        }
+        if (viewModel != null && getItemCount() > 0) {
+            viewModel.loadTracks(selectedIndex);
         }
     }
 
-    private void onTracksLoaded(List<Track> tracksList) {
-        if (tracksList != null) {
-            tracks = tracksList;
-            items = new ArrayList<>();
-            for (Track track : tracks) {
-                items.add(track.getFile());
+    @Override
+    protected int getItemCount() {
+        return page != null ? page.getTotalCount() : 0;
+    }
+
+    @Override
+    protected File getItem(int index) {
+        Track track = page != null ? page.getTrack(index) : null;
+        return track != null ? track.getFile() : null;
+    }
+
+    @Override
+    protected NameIndex getNameIndex() {
+        if (viewModel == null) {
+            return null;
+        }
+        // Covers the whole album, not only the loaded window
+        NameIndex names = viewModel.getTrackNames().getValue();
+        if (names != null && names.size() != getItemCount()) {
+            // Built from an older listing of the album
+            viewModel.clearTrackNames();
+            names = null;
+        }
+        if (names == null) {
+            viewModel.loadTrackNames();
+            return null;
+        }
+        return names;
+    }
+
+    @Override
+    protected int indexOfItem(File item) {
+        if (page == null) {
+            return -1;
+        }
+        for (Track track : page.getTracks()) {
+            if (track.getFile().equals(item)) {
+                return page.indexOf(track);
             }
-        } else {
-            items = new ArrayList<>();
         }
-        restoreSelection();
-        if (coverFlowView != null && items != null && !items.isEmpty()) {
-            coverFlowView.setSelectedIndexWithoutAnimation(selectedIndex);
+        return -1;
+    }
+
+    @Override
+    protected void onSelectedIndexChanged(int index) {
+        if (viewModel != null) {
+            viewModel.loadTracks(index);
         }
-        updateDisplay();
     }
 
     private void onError(String error) {
@@ -98,11 +177,7 @@ public class TracksActivity extends CoverFlowActivity {
 
     @Override
     protected String getItemName(File item) {
-        String name = item.getName();
-        if (name.toLowerCase().endsWith(Constants.MP3_EXTENSION)) {
-            name = name.substring(0, name.length() - 4);
-        }
-        return name;
+        return MusicFileScanner.getTrackBaseName(item.getName());
     }
 
     @Override
@@ -112,12 +187,12 @@ public class TracksActivity extends CoverFlowActivity {
 
     @Override
     protected void handleCenterClick() {
-        if (items == null || items.isEmpty() || tracks.isEmpty() || album == null) {
+        if (page == null || album == null) {
             return;
         }
         selectedIndex = coverFlowView.getSelectedIndex();
-        if (selectedIndex >= 0 && selectedIndex < tracks.size()) {
-            Track selectedTrack = tracks.get(selectedIndex);
+        Track selectedTrack = page.getTrack(selectedIndex);
+        if (selectedTrack != null) {
             int profileIndex = getIntent().getIntExtra(Constants.EXTRA_PROFILE_SELECTED_INDEX, -1);
             int albumIndex = getIntent().getIntExtra(Constants.EXTRA_ALBUM_SELECTED_INDEX, -1);
             Intent intent = NavigationHelper.createNowPlayingIntent(
@@ -1,7 +1,12 @@
 package com.kidz.y1.di;
 
+import android.app.Application;
+import android.content.Context;
+
 import com.kidz.y1.repositories.ImageRepository;
 import com.kidz.y1.repositories.MusicRepository;
+import com.kidz.y1.utils.BackgroundReindexer;
+import com.kidz.y1.utils.LibraryWatcher;
 
 /**
  * Simple Dependency Injection provider.
@@ -12,6 +17,8 @@ import com.kidz.y1.repositories.MusicRepository;
 public class DependencyProvider {
     private static MusicRepository musicRepository;
     private static ImageRepository imageRepository;
+    private static LibraryWatcher libraryWatcher;
+    private static BackgroundReindexer backgroundReindexer;
 
     /**
      * Get or create MusicRepository instance.
@@ -33,6 +40,27 @@ public class DependencyProvider {
         return imageRepository;
     }
 
+    /**
+     * Get or create LibraryWatcher instance.
+     */
+    public static synchronized LibraryWatcher getLibraryWatcher() {
+        if (libraryWatcher == null) {
+            libraryWatcher = new LibraryWatcher(getMusicRepository(), getImageRepository());
+        }
+        return libraryWatcher;
+    }
+
+    /**
+     * Get or create BackgroundReindexer instance.
+     */
+    public static synchronized BackgroundReindexer getBackgroundReindexer(Context context) {
+        if (backgroundReindexer == null) {
+            backgroundReindexer = new BackgroundReindexer((Application) context.getApplicationContext(),
+                    getMusicRepository(), getImageRepository());
+        }
+        return backgroundReindexer;
+    }
+
     /**
      * Set MusicRepository (useful for testing).
      */
@@ -53,5 +81,7 @@ public class DependencyProvider {
     public static void clear() {
         musicRepository = null;
         imageRepository = null;
+        libraryWatcher = null;
+        backgroundReindexer = null;
     }
 }
@@ -1,51 +1,59 @@
 package com.kidz.y1.models;
 
+import com.kidz.y1.utils.PlaylistParser;
+
 import java.io.File;
 
 /**
  * Represents a music album (collection of tracks).
+ * An album is a directory of tracks, or a playlist file (see isPlaylist()) whose entries
+ * may be stored in any directory.
  */
-public class Album {
-    private final File directory;
-    private final String name;
+public class Album extends LibraryNode {
     private final Profile profile;
 
     public Album(File directory, Profile profile) {
-        this.directory = directory;
-        this.name = directory.getName();
+        super(directory);
         this.profile = profile;
     }
 
-    public File getDirectory() {
-        return directory;
+    public Album(LibraryIndex library, int id) {
+        super(library, id);
+        this.profile = null;
     }
 
-    public String getName() {
-        return name;
+    /**
+     * @return the album directory, or the playlist file of a playlist album
+     */
+    public File getDirectory() {
+        return getNodeFile();
     }
 
-    public Profile getProfile() {
-        return profile;
+    /**
+     * @return the directory name, or the playlist file name without its extension
+     */
+    public String getName() {
+        String name = getFileName();
+        return PlaylistParser.isPlaylistName(name) ? PlaylistParser.getBaseName(name) : name;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Album album = (Album) o;
-        return directory.equals(album.directory);
+    /**
+     * @return true if the album is a playlist file; the file is not accessed
+     */
+    public boolean isPlaylist() {
+        return PlaylistParser.isPlaylistName(getFileName());
     }
 
-    @Override
-    public int hashCode() {
-        return directory.hashCode();
+    public Profile getProfile() {
+        LibraryIndex library = getLibrary();
+        return library != null ? new Profile(library, library.getParent(getId())) : profile;
     }
 
     @Override
     public String toString() {
         return "Album{" +
-                "name='" + name + '\'' +
-                ", directory=" + directory +
+                "name='" + getName() + '\'' +
+                ", directory=" + getDirectory() +
                 '}';
     }
 }
@@ -0,0 +1,63 @@
+package com.kidz.y1.models;
+
+/**
+ * Cheap fingerprint of a directory: its last modification time and number of entries.
+ * Adding, removing or renaming an entry changes at least one of the two, so a directory
+ * whose signature is unchanged does not need to be listed or have its covers re-resolved.
+ *
+ * A source that knows only some of a directory's entries (e.g. the media rows MediaStore
+ * indexed) records UNKNOWN_CHILD_COUNT; matches() then compares the modification times only,
+ * so the signature stays comparable with one taken from a full listing.
+ */
+public class DirectorySignature {
+    public static final int UNKNOWN_CHILD_COUNT = -2;
+
+    private final long lastModified;
+    private final int childCount;
+
+    public DirectorySignature(long lastModified, int childCount) {
+        this.lastModified = lastModified;
+        this.childCount = childCount;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * @param other a signature of the same directory, possibly taken from another source
+     * @return true if the directory did not change between the two signatures
+     */
+    public boolean matches(DirectorySignature other) {
+        if (other == null || lastModified != other.lastModified) {
+            return false;
+        }
+        return childCount == other.childCount
+                || childCount == UNKNOWN_CHILD_COUNT || other.childCount == UNKNOWN_CHILD_COUNT;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DirectorySignature that = (DirectorySignature) o;
+        return lastModified == that.lastModified && childCount == that.childCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (lastModified ^ (lastModified >>> 32)) + childCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectorySignature{" +
+                "lastModified=" + lastModified +
+                ", childCount=" + childCount +
+                '}';
+    }
+}
@@ -0,0 +1,214 @@
+package com.kidz.y1.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structural difference between two versions of a listing of library nodes.
+ *
+ * Nodes are matched by path, so a node keeps its identity across library versions even
+ * though it is a view of a different LibraryIndex. Relative to the previous listing:
+ * - Added nodes are only in the current listing
+ * - Removed nodes are only in the previous listing
+ * - Moved nodes are in both, but their order relative to the other nodes of both changed;
+ *   the fewest nodes are reported moved (all others keep their relative order)
+ * Nodes that are merely shifted by added or removed nodes are neither, so a screen can
+ * keep them bound and only move them to their new position.
+ *
+ * Threading:
+ * - Immutable; safe to share between threads
+ *
+ * Compatible with API 17+.
+ */
+public final class LibraryDiff<T extends LibraryNode> {
+    private final List<T> previous;
+    private final List<T> current;
+    // Previous position of each current node, or -1 if it was added
+    private final int[] oldPositions;
+    // Current position of each previous node, or -1 if it was removed
+    private final int[] newPositions;
+    private final int[] added;
+    private final int[] removed;
+    private final int[] moved;
+
+    private LibraryDiff(List<T> previous, List<T> current, int[] oldPositions, int[] newPositions,
+            int[] added, int[] removed, int[] moved) {
+        this.previous = previous;
+        this.current = current;
+        this.oldPositions = oldPositions;
+        this.newPositions = newPositions;
+        this.added = added;
+        this.removed = removed;
+        this.moved = moved;
+    }
+
+    /**
+     * Computes the difference between two listings, in O(n log n).
+     *
+     * @param previous the listing before the change, or null for an empty one
+     * @param current the listing after the change
+     * @return the difference
+     */
+    public static <T extends LibraryNode> LibraryDiff<T> between(List<T> previous, List<T> current) {
+        List<T> before = previous != null ? previous : Collections.<T>emptyList();
+        Map<String, Integer> positions = new HashMap<>(before.size() * 2);
+        for (int i = 0; i < before.size(); i++) {
+            positions.put(before.get(i).getPath(), i);
+        }
+
+        int[] oldPositions = new int[current.size()];
+        int[] newPositions = new int[before.size()];
+        Arrays.fill(newPositions, -1);
+        int addedCount = 0;
+        for (int i = 0; i < current.size(); i++) {
+            Integer position = positions.get(current.get(i).getPath());
+            if (position != null && newPositions[position] < 0) {
+                oldPositions[i] = position;
+                newPositions[position] = i;
+            } else {
+                oldPositions[i] = -1;
+                addedCount++;
+            }
+        }
+
+        int[] added = new int[addedCount];
+        int[] removed = new int[before.size() - (current.size() - addedCount)];
+        int a = 0;
+        int r = 0;
+        for (int i = 0; i < current.size(); i++) {
+            if (oldPositions[i] < 0) {
+                added[a++] = i;
+            }
+        }
+        for (int i = 0; i < before.size(); i++) {
+            if (newPositions[i] < 0) {
+                removed[r++] = i;
+            }
+        }
+        return new LibraryDiff<>(before, current, oldPositions, newPositions, added, removed,
+                findMoved(oldPositions));
+    }
+
+    /**
+     * Finds the retained nodes outside a longest run of retained nodes in their previous order.
+     *
+     * @return the current positions of the moved nodes, ascending
+     */
+    private static int[] findMoved(int[] oldPositions) {
+        int n = oldPositions.length;
+        // tails[k]: current position ending the lowest increasing run of length k + 1
+        int[] tails = new int[n];
+        int[] predecessors = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int old = oldPositions[i];
+            if (old < 0) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (oldPositions[tails[middle]] < old) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        boolean[] inOrder = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            inOrder[i] = true;
+        }
+        List<Integer> moved = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (oldPositions[i] >= 0 && !inOrder[i]) {
+                moved.add(i);
+            }
+        }
+        int[] result = new int[moved.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = moved.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the listing before the change
+     */
+    public List<T> getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return the listing after the change
+     */
+    public List<T> getCurrent() {
+        return current;
+    }
+
+    /**
+     * @param newPosition a position in the current listing
+     * @return the position of that node in the previous listing, or -1 if it was added
+     */
+    public int getOldPosition(int newPosition) {
+        return oldPositions[newPosition];
+    }
+
+    /**
+     * @param oldPosition a position in the previous listing
+     * @return the position of that node in the current listing, or -1 if it was removed
+     */
+    public int getNewPosition(int oldPosition) {
+        return newPositions[oldPosition];
+    }
+
+    /**
+     * @return the current positions of the added nodes, ascending
+     */
+    public int[] getAdded() {
+        return added.clone();
+    }
+
+    /**
+     * @return the previous positions of the removed nodes, ascending
+     */
+    public int[] getRemoved() {
+        return removed.clone();
+    }
+
+    /**
+     * @return the current positions of the moved nodes, ascending
+     */
+    public int[] getMoved() {
+        return moved.clone();
+    }
+
+    /**
+     * @return true if no node was added, removed or moved
+     */
+    public boolean isEmpty() {
+        return added.length == 0 && removed.length == 0 && moved.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LibraryDiff{" +
+                "previous=" + previous.size() +
+                ", current=" + current.size() +
+                ", added=" + added.length +
+                ", removed=" + removed.length +
+                ", moved=" + moved.length +
+                '}';
+    }
+}
@@ -0,0 +1,477 @@
+package com.kidz.y1.models;
+
+import com.kidz.y1.utils.Constants;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshot of the whole Kidz library: profiles, albums, tracks and their resolved cover references.
+ *
+ * The index is built by LibraryWalker and persisted by LibraryIndexStore so that startup
+ * can serve listings and cover paths without walking the filesystem.
+ * Directory signatures recorded at scan time let LibraryWalker refresh only changed subtrees;
+ * the fingerprint of the ExclusionRules the index was built with tells it when the whole
+ * library must be walked again.
+ *
+ * Layout:
+ * - Every node (root, profile, album, track) is addressed by an int id; the root is ROOT_ID
+ * - A node stores only its name and its parent id, so each path segment is held once;
+ *   absolute paths are rebuilt on demand by getPath()
+ * - Nodes are numbered breadth-first in display order, so the children of a node are the
+ *   contiguous id range starting at getChild(id, 0)
+ * - Covers are kept in a shared table as (directory node, image name) or (track node, ID3),
+ *   so tracks falling back to their album cover share one entry
+ *
+ * Profile, Album and Track objects created from an index are views over these arrays.
+ * The path-based accessors materialize strings on every call; hot paths should use ids.
+ */
+public class LibraryIndex {
+    public static final int ROOT_ID = 0;
+    public static final int NO_NODE = -1;
+    // Child count of nodes without a signature; DirectorySignature.UNKNOWN_CHILD_COUNT differs
+    private static final int NO_SIGNATURE = -1;
+
+    private final String[] names;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int albumStart;
+    private final int trackStart;
+    private final long[] signatureTimes;
+    private final int[] signatureCounts;
+    private final int[] covers;
+    private final int[] coverNodes;
+    private final String[] coverNames;
+    private final int exclusionFingerprint;
+
+    private LibraryIndex(LibraryIndex other, long[] signatureTimes, int[] signatureCounts) {
+        this.names = other.names;
+        this.parents = other.parents;
+        this.firstChildren = other.firstChildren;
+        this.albumStart = other.albumStart;
+        this.trackStart = other.trackStart;
+        this.signatureTimes = signatureTimes;
+        this.signatureCounts = signatureCounts;
+        this.covers = other.covers;
+        this.coverNodes = other.coverNodes;
+        this.coverNames = other.coverNames;
+        this.exclusionFingerprint = other.exclusionFingerprint;
+    }
+
+    /**
+     * Builds the index from path-keyed listings.
+     * Paths missing from the listing maps have no children; covers and signatures of
+     * paths that are not part of the hierarchy are ignored.
+     *
+     * @param exclusionFingerprint ExclusionRules.getFingerprint() of the rules the listings were made with
+     */
+    public LibraryIndex(String rootPath, List<String> profilePaths,
+            Map<String, List<String>> albumPaths, Map<String, List<String>> trackPaths,
+            Map<String, String> profileCovers, Map<String, String> albumCovers,
+            Map<String, String> trackCovers, Map<String, DirectorySignature> signatures,
+            int exclusionFingerprint) {
+        this.exclusionFingerprint = exclusionFingerprint;
+        List<String> paths = new ArrayList<>();
+        List<Integer> parentIds = new ArrayList<>();
+        paths.add(rootPath);
+        parentIds.add(NO_NODE);
+        for (String profilePath : profilePaths) {
+            paths.add(profilePath);
+            parentIds.add(ROOT_ID);
+        }
+        albumStart = paths.size();
+        for (int p = 1; p < albumStart; p++) {
+            addChildren(paths, parentIds, p, albumPaths.get(paths.get(p)));
+        }
+        trackStart = paths.size();
+        for (int a = albumStart; a < trackStart; a++) {
+            addChildren(paths, parentIds, a, trackPaths.get(paths.get(a)));
+        }
+
+        int count = paths.size();
+        names = new String[count];
+        parents = new int[count];
+        firstChildren = new int[count + 1];
+        Map<String, Integer> ids = new HashMap<>(count * 2);
+        for (int id = 0; id < count; id++) {
+            String path = paths.get(id);
+            names[id] = id == ROOT_ID ? path : path.substring(path.lastIndexOf(File.separatorChar) + 1);
+            parents[id] = parentIds.get(id);
+            ids.put(path, id);
+        }
+        // Children of consecutive parents are consecutive, so each node's range starts where
+        // the previous node's range ends
+        int next = 1;
+        for (int id = 0; id < count; id++) {
+            firstChildren[id] = next;
+            while (next < count && parents[next] == id) {
+                next++;
+            }
+        }
+        firstChildren[count] = count;
+
+        signatureTimes = new long[trackStart];
+        signatureCounts = new int[trackStart];
+        for (int id = 0; id < trackStart; id++) {
+            DirectorySignature signature = signatures.get(paths.get(id));
+            signatureTimes[id] = signature != null ? signature.getLastModified() : 0L;
+            signatureCounts[id] = signature != null ? signature.getChildCount() : NO_SIGNATURE;
+        }
+
+        covers = new int[count];
+        List<Integer> tableNodes = new ArrayList<>();
+        List<String> tableNames = new ArrayList<>();
+        Map<String, Integer> coverIds = new HashMap<>();
+        covers[ROOT_ID] = NO_NODE;
+        for (int id = 1; id < count; id++) {
+            Map<String, String> kindCovers = id < albumStart ? profileCovers
+                    : id < trackStart ? albumCovers : trackCovers;
+            covers[id] = encodeCover(kindCovers.get(paths.get(id)), ids, coverIds, tableNodes, tableNames);
+        }
+        coverNodes = new int[tableNodes.size()];
+        coverNames = new String[tableNames.size()];
+        for (int i = 0; i < coverNodes.length; i++) {
+            coverNodes[i] = tableNodes.get(i);
+            coverNames[i] = tableNames.get(i);
+        }
+    }
+
+    private static void addChildren(List<String> paths, List<Integer> parentIds, int parent, List<String> children) {
+        if (children == null) {
+            return;
+        }
+        for (String child : children) {
+            paths.add(child);
+            parentIds.add(parent);
+        }
+    }
+
+    private static int encodeCover(String cover, Map<String, Integer> ids, Map<String, Integer> coverIds,
+            List<Integer> tableNodes, List<String> tableNames) {
+        if (cover == null) {
+            return NO_NODE;
+        }
+        Integer existing = coverIds.get(cover);
+        if (existing != null) {
+            return existing;
+        }
+        int node = NO_NODE;
+        String name = cover;
+        if (cover.startsWith(Constants.ID3_PREFIX)) {
+            Integer trackId = ids.get(cover.substring(Constants.ID3_PREFIX.length()));
+            if (trackId != null) {
+                node = trackId;
+                name = null;
+            }
+        } else {
+            int separator = cover.lastIndexOf(File.separatorChar);
+            Integer directoryId = separator > 0 ? ids.get(cover.substring(0, separator)) : null;
+            if (directoryId != null) {
+                node = directoryId;
+                name = cover.substring(separator + 1);
+            }
+        }
+        int coverId = tableNodes.size();
+        tableNodes.add(node);
+        tableNames.add(name);
+        coverIds.put(cover, coverId);
+        return coverId;
+    }
+
+    // Node accessors
+
+    public int getNodeCount() {
+        return names.length;
+    }
+
+    /**
+     * @return the file name of a node; for the root, its absolute path
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return the parent id of a node, or NO_NODE for the root
+     */
+    public int getParent(int id) {
+        return parents[id];
+    }
+
+    /**
+     * @return the absolute path of a node, rebuilt from its ancestors' names
+     */
+    public String getPath(int id) {
+        if (id == ROOT_ID) {
+            return names[ROOT_ID];
+        }
+        int depth = 0;
+        for (int node = id; node != ROOT_ID; node = parents[node]) {
+            depth++;
+        }
+        int[] chain = new int[depth];
+        for (int node = id; node != ROOT_ID; node = parents[node]) {
+            chain[--depth] = node;
+        }
+        StringBuilder path = new StringBuilder(names[ROOT_ID]);
+        for (int node : chain) {
+            path.append(File.separatorChar).append(names[node]);
+        }
+        return path.toString();
+    }
+
+    public int getChildCount(int id) {
+        return firstChildren[id + 1] - firstChildren[id];
+    }
+
+    public int getChild(int id, int index) {
+        return firstChildren[id] + index;
+    }
+
+    public boolean isProfile(int id) {
+        return id >= 1 && id < albumStart;
+    }
+
+    public boolean isAlbum(int id) {
+        return id >= albumStart && id < trackStart;
+    }
+
+    public boolean isTrack(int id) {
+        return id >= trackStart && id < names.length;
+    }
+
+    /**
+     * @return the cover reference of a node, or null if it has none
+     */
+    public String getCover(int id) {
+        int cover = covers[id];
+        if (cover == NO_NODE) {
+            return null;
+        }
+        int node = coverNodes[cover];
+        if (node == NO_NODE) {
+            return coverNames[cover];
+        }
+        if (coverNames[cover] == null) {
+            return Constants.ID3_PREFIX + getPath(node);
+        }
+        return getPath(node) + File.separatorChar + coverNames[cover];
+    }
+
+    /**
+     * @return the signature of the root, a profile or an album directory when it was
+     *         scanned, or null if it has none
+     */
+    public DirectorySignature getSignature(int id) {
+        if (id < 0 || id >= trackStart || signatureCounts[id] == NO_SIGNATURE) {
+            return null;
+        }
+        return new DirectorySignature(signatureTimes[id], signatureCounts[id]);
+    }
+
+    /**
+     * Finds the node of an absolute path.
+     *
+     * @return the node id, or NO_NODE if the path is not part of the index
+     */
+    public int findNode(String path) {
+        String rootPath = names[ROOT_ID];
+        if (!path.startsWith(rootPath)) {
+            return NO_NODE;
+        }
+        int node = ROOT_ID;
+        int start = rootPath.length();
+        while (start < path.length()) {
+            if (path.charAt(start) != File.separatorChar) {
+                return NO_NODE;
+            }
+            int end = path.indexOf(File.separatorChar, start + 1);
+            if (end < 0) {
+                end = path.length();
+            }
+            node = findChild(node, path, start + 1, end);
+            if (node == NO_NODE) {
+                return NO_NODE;
+            }
+            start = end;
+        }
+        return node;
+    }
+
+    /**
+     * Finds the node behind a Profile, Album or Track, whether it is a view of this index
+     * or was created from a file.
+     *
+     * @return the node id, or NO_NODE if the node is not part of the index
+     */
+    public int findNode(LibraryNode node) {
+        if (node.getLibrary() == this) {
+            return node.getId();
+        }
+        return findNode(node.getPath());
+    }
+
+    private int findChild(int parent, String path, int start, int end) {
+        int length = end - start;
+        for (int child = firstChildren[parent]; child < firstChildren[parent + 1]; child++) {
+            String name = names[child];
+            if (name.length() == length && path.regionMatches(start, name, 0, length)) {
+                return child;
+            }
+        }
+        return NO_NODE;
+    }
+
+    // Path accessors
+
+    public String getRootPath() {
+        return names[ROOT_ID];
+    }
+
+    /**
+     * @return the fingerprint of the ExclusionRules the index was built with
+     */
+    public int getExclusionFingerprint() {
+        return exclusionFingerprint;
+    }
+
+    public List<String> getProfilePaths() {
+        return getChildPaths(ROOT_ID);
+    }
+
+    /**
+     * @return the album paths of a profile, or an empty list if the profile is unknown
+     */
+    public List<String> getAlbumPaths(String profilePath) {
+        int id = findNode(profilePath);
+        return isProfile(id) ? getChildPaths(id) : Collections.<String>emptyList();
+    }
+
+    /**
+     * @return the track paths of an album, or an empty list if the album is unknown
+     */
+    public List<String> getTrackPaths(String albumPath) {
+        int id = findNode(albumPath);
+        return isAlbum(id) ? getChildPaths(id) : Collections.<String>emptyList();
+    }
+
+    public String getProfileCover(String profilePath) {
+        int id = findNode(profilePath);
+        return isProfile(id) ? getCover(id) : null;
+    }
+
+    public String getAlbumCover(String albumPath) {
+        int id = findNode(albumPath);
+        return isAlbum(id) ? getCover(id) : null;
+    }
+
+    public String getTrackCover(String trackPath) {
+        int id = findNode(trackPath);
+        return isTrack(id) ? getCover(id) : null;
+    }
+
+    /**
+     * @return the signature of the root, a profile or an album directory when it was scanned,
+     *         or null if the directory is not part of the index
+     */
+    public DirectorySignature getSignature(String directoryPath) {
+        int id = findNode(directoryPath);
+        return id != NO_NODE ? getSignature(id) : null;
+    }
+
+    /**
+     * @return every distinct cover reference in the library, profiles first
+     */
+    public Set<String> getCoverPaths() {
+        Set<String> paths = new LinkedHashSet<>();
+        for (int id = 1; id < names.length; id++) {
+            String cover = getCover(id);
+            if (cover != null) {
+                paths.add(cover);
+            }
+        }
+        return paths;
+    }
+
+    private List<String> getChildPaths(int id) {
+        int count = getChildCount(id);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        String prefix = getPath(id) + File.separatorChar;
+        List<String> paths = new ArrayList<>(count);
+        for (int child = firstChildren[id]; child < firstChildren[id + 1]; child++) {
+            paths.add(prefix + names[child]);
+        }
+        return paths;
+    }
+
+    /**
+     * Returns a copy of this index in which the given directories have no signature, so
+     * LibraryWalker rescans them although their signature did not change, e.g. after a file
+     * was written in place. Paths that are not directories of the index are ignored.
+     *
+     * @param directoryPaths absolute paths of the root, profile or album directories to rescan
+     * @return the copy, or this index if none of the paths is part of it
+     */
+    public LibraryIndex withoutSignatures(Collection<String> directoryPaths) {
+        long[] times = null;
+        int[] counts = null;
+        for (String path : directoryPaths) {
+            int id = findNode(path);
+            if (id == NO_NODE || id >= trackStart) {
+                continue;
+            }
+            if (counts == null) {
+                times = signatureTimes.clone();
+                counts = signatureCounts.clone();
+            }
+            times[id] = 0L;
+            counts[id] = NO_SIGNATURE;
+        }
+        return counts != null ? new LibraryIndex(this, times, counts) : this;
+    }
+
+    /**
+     * Compares the library content (hierarchy and covers) of two indexes.
+     */
+    public boolean contentEquals(LibraryIndex other) {
+        if (other == null) return false;
+        return albumStart == other.albumStart
+                && trackStart == other.trackStart
+                && exclusionFingerprint == other.exclusionFingerprint
+                && Arrays.equals(names, other.names)
+                && Arrays.equals(parents, other.parents)
+                && Arrays.equals(covers, other.covers)
+                && Arrays.equals(coverNodes, other.coverNodes)
+                && Arrays.equals(coverNames, other.coverNames);
+    }
+
+    /**
+     * Compares the directory signatures of two indexes with the same content. They differ
+     * when a directory changed without changing the library, e.g. a text file was added.
+     */
+    public boolean signaturesEqual(LibraryIndex other) {
+        if (other == null) return false;
+        return Arrays.equals(signatureTimes, other.signatureTimes)
+                && Arrays.equals(signatureCounts, other.signatureCounts);
+    }
+
+    @Override
+    public String toString() {
+        return "LibraryIndex{" +
+                "rootPath='" + names[ROOT_ID] + '\'' +
+                ", profiles=" + (albumStart - 1) +
+                ", albums=" + (trackStart - albumStart) +
+                ", tracks=" + (names.length - trackStart) +
+                '}';
+    }
+}
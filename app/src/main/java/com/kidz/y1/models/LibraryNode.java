@@ -0,0 +1,70 @@
+package com.kidz.y1.models;
+
+import java.io.File;
+
+/**
+ * Base of Profile, Album and Track.
+ *
+ * A node is either a view of a LibraryIndex, holding only the index and its node id,
+ * or detached, holding the file it was created from (e.g. a directory passed in an
+ * Intent). Paths and names of views are read from the index on demand.
+ */
+public abstract class LibraryNode {
+    private final LibraryIndex library;
+    private final int id;
+    private final File file;
+
+    protected LibraryNode(LibraryIndex library, int id) {
+        this.library = library;
+        this.id = id;
+        this.file = null;
+    }
+
+    protected LibraryNode(File file) {
+        this.library = null;
+        this.id = LibraryIndex.NO_NODE;
+        this.file = file;
+    }
+
+    /**
+     * @return the index this node is a view of, or null if it is detached
+     */
+    public LibraryIndex getLibrary() {
+        return library;
+    }
+
+    /**
+     * @return the node id in getLibrary(), or LibraryIndex.NO_NODE if detached
+     */
+    public int getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return library != null ? library.getPath(id) : file.getAbsolutePath();
+    }
+
+    protected File getNodeFile() {
+        return library != null ? new File(library.getPath(id)) : file;
+    }
+
+    protected String getFileName() {
+        return library != null ? library.getName(id) : file.getName();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LibraryNode node = (LibraryNode) o;
+        if (library != null && library == node.library) {
+            return id == node.id;
+        }
+        return getPath().equals(node.getPath());
+    }
+
+    @Override
+    public int hashCode() {
+        return getPath().hashCode();
+    }
+}
@@ -0,0 +1,102 @@
+package com.kidz.y1.models;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable state of the whole library at one point in time: the LibraryIndex of every
+ * library root that has one.
+ *
+ * MusicRepository publishes the snapshot through a single atomic reference, and
+ * ImageRepository serves covers from that same snapshot. A reader takes the current
+ * snapshot once and serves a whole request from it, so it sees the indexes of all roots as
+ * they were at that moment, without locking and without copying anything.
+ *
+ * Updates:
+ * - withIndex() returns a new snapshot that swaps the index of one root, and leaves this
+ *   one untouched; the indexes of the other roots are reused as they are
+ * - Updates are per root only: a rescan builds a complete new LibraryIndex for its root,
+ *   even if a single album changed
+ *
+ * Threading:
+ * - Immutable; safe to share between threads
+ *
+ * Compatible with API 17+.
+ */
+public final class LibrarySnapshot {
+    public static final LibrarySnapshot EMPTY = new LibrarySnapshot(new LibraryIndex[0]);
+
+    private final LibraryIndex[] indexes;
+
+    private LibrarySnapshot(LibraryIndex[] indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * @return the indexes of the snapshot, in the order their roots were first added
+     */
+    public List<LibraryIndex> getIndexes() {
+        return Collections.unmodifiableList(Arrays.asList(indexes));
+    }
+
+    public boolean isEmpty() {
+        return indexes.length == 0;
+    }
+
+    /**
+     * @param rootPath the absolute path of a library root
+     * @return the index of that root, or null if the snapshot has none
+     */
+    public LibraryIndex getIndex(String rootPath) {
+        for (LibraryIndex index : indexes) {
+            if (index.getRootPath().equals(rootPath)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param path an absolute path
+     * @return the index of the root containing the path, or null if the snapshot has none
+     */
+    public LibraryIndex findIndex(String path) {
+        for (LibraryIndex index : indexes) {
+            String rootPath = index.getRootPath();
+            if (path.equals(rootPath) || path.startsWith(rootPath + File.separator)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param index the new index of a root
+     * @return a snapshot in which the index replaces the previous index of its root, or is added
+     */
+    public LibrarySnapshot withIndex(LibraryIndex index) {
+        String rootPath = index.getRootPath();
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i].getRootPath().equals(rootPath)) {
+                if (indexes[i] == index) {
+                    return this;
+                }
+                LibraryIndex[] updated = indexes.clone();
+                updated[i] = index;
+                return new LibrarySnapshot(updated);
+            }
+        }
+        LibraryIndex[] updated = Arrays.copyOf(indexes, indexes.length + 1);
+        updated[indexes.length] = index;
+        return new LibrarySnapshot(updated);
+    }
+
+    @Override
+    public String toString() {
+        return "LibrarySnapshot{" +
+                "indexes=" + Arrays.toString(indexes) +
+                '}';
+    }
+}
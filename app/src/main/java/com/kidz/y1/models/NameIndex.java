@@ -0,0 +1,219 @@
+package com.kidz.y1.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Jump table over the names of a listing, so a cover flow can skip to the next letter
+ * or to a typed prefix instead of stepping through every cover.
+ *
+ * Built once per listing, from the display names in listing order:
+ * - Letter groups: runs of consecutive names with the same group key (the first letter or
+ *   digit of the name, upper case; "#" for digits and names without either). The next and
+ *   previous group of any position are found in O(1)
+ * - Prefix table: the case-folded names sorted with their positions, so the first name
+ *   starting with a prefix is found in O(log n)
+ * Listings are sorted, so there is usually one group per key; merged or mixed listings
+ * (e.g. albums followed by playlists) may have several groups per key.
+ *
+ * Threading:
+ * - Immutable; safe to share between threads
+ *
+ * Compatible with API 17+.
+ */
+public final class NameIndex {
+    public static final char OTHER_KEY = '#';
+    public static final NameIndex EMPTY = build(Collections.<String>emptyList());
+
+    // Group of each position, and the first position and key of each group
+    private final int[] groupOfPosition;
+    private final int[] groupStarts;
+    private final char[] groupKeys;
+    // Case-folded names, ascending, and their positions
+    private final String[] sortedNames;
+    private final int[] sortedPositions;
+
+    private NameIndex(int[] groupOfPosition, int[] groupStarts, char[] groupKeys,
+            String[] sortedNames, int[] sortedPositions) {
+        this.groupOfPosition = groupOfPosition;
+        this.groupStarts = groupStarts;
+        this.groupKeys = groupKeys;
+        this.sortedNames = sortedNames;
+        this.sortedPositions = sortedPositions;
+    }
+
+    /**
+     * Builds the index of a listing, in O(n log n).
+     *
+     * @param names the display names, in listing order
+     * @return the index
+     */
+    public static NameIndex build(List<String> names) {
+        int count = names.size();
+        char[] keys = new char[count];
+        int[] groupOfPosition = new int[count];
+        int groupCount = 0;
+        for (int i = 0; i < count; i++) {
+            keys[i] = getGroupKey(names.get(i));
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                groupCount++;
+            }
+            groupOfPosition[i] = groupCount - 1;
+        }
+        int[] groupStarts = new int[groupCount];
+        char[] groupKeys = new char[groupCount];
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                groupStarts[groupOfPosition[i]] = i;
+                groupKeys[groupOfPosition[i]] = keys[i];
+            }
+        }
+
+        String[] folded = new String[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            folded[i] = fold(names.get(i));
+            order[i] = i;
+        }
+        // Stable, so equal names keep their listing order
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer p1, Integer p2) {
+                return folded[p1].compareTo(folded[p2]);
+            }
+        });
+        String[] sortedNames = new String[count];
+        int[] sortedPositions = new int[count];
+        for (int i = 0; i < count; i++) {
+            sortedNames[i] = folded[order[i]];
+            sortedPositions[i] = order[i];
+        }
+        return new NameIndex(groupOfPosition, groupStarts, groupKeys, sortedNames, sortedPositions);
+    }
+
+    /**
+     * @param name a display name
+     * @return the group key of the name: its first letter or digit in upper case, or OTHER_KEY
+     *         for digits and names without letters
+     */
+    public static char getGroupKey(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                return Character.isLetter(c) ? Character.toUpperCase(c) : OTHER_KEY;
+            }
+        }
+        return OTHER_KEY;
+    }
+
+    /**
+     * Case-folds like NaturalOrder, so a prefix matches regardless of case.
+     */
+    private static String fold(String name) {
+        StringBuilder folded = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            folded.append(Character.toLowerCase(Character.toUpperCase(name.charAt(i))));
+        }
+        return folded.toString();
+    }
+
+    /**
+     * @return the number of names of the listing
+     */
+    public int size() {
+        return groupOfPosition.length;
+    }
+
+    /**
+     * @param position a position of the listing
+     * @return the group key of the name at that position
+     */
+    public char getGroupKey(int position) {
+        return groupKeys[groupOfPosition[position]];
+    }
+
+    /**
+     * @param position a position of the listing
+     * @return the first position of the letter group after the one of the position, or -1 if
+     *         the position is in the last group
+     */
+    public int getNextGroupStart(int position) {
+        int group = groupOfPosition[position] + 1;
+        return group < groupStarts.length ? groupStarts[group] : -1;
+    }
+
+    /**
+     * @param position a position of the listing
+     * @return the first position of the letter group of the position if the position is not
+     *         that first position, else the first position of the group before it; -1 if the
+     *         position is the first one of the listing
+     */
+    public int getPreviousGroupStart(int position) {
+        int group = groupOfPosition[position];
+        if (position > groupStarts[group]) {
+            return groupStarts[group];
+        }
+        return group > 0 ? groupStarts[group - 1] : -1;
+    }
+
+    /**
+     * Finds the name that comes first, in alphabetical order, of the names starting with a prefix.
+     *
+     * @param prefix the prefix, in any case
+     * @return the position of that name, or -1 if no name starts with the prefix
+     */
+    public int findPrefix(String prefix) {
+        String folded = fold(prefix);
+        int low = 0;
+        int high = sortedNames.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedNames[middle].compareTo(folded) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low < sortedNames.length && sortedNames[low].startsWith(folded)) {
+            return sortedPositions[low];
+        }
+        return -1;
+    }
+
+    /**
+     * @return the estimated heap footprint of the index in bytes, for bounded caches
+     */
+    public long estimateSize() {
+        // Arrays and object headers, plus a folded name String (header and UTF-16 chars) per name
+        long bytes = 112 + 2L * groupKeys.length + 4L * groupStarts.length
+                + 4L * groupOfPosition.length + 4L * sortedPositions.length;
+        for (String name : sortedNames) {
+            bytes += 16 + 48 + 2L * name.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NameIndex index = (NameIndex) o;
+        return Arrays.equals(sortedPositions, index.sortedPositions)
+                && Arrays.equals(sortedNames, index.sortedNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(sortedPositions) + Arrays.hashCode(sortedNames);
+    }
+
+    @Override
+    public String toString() {
+        return "NameIndex{" +
+                "size=" + size() +
+                ", groups=" + groupStarts.length +
+                '}';
+    }
+}
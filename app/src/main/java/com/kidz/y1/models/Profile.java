@@ -5,41 +5,28 @@ import java.io.File;
 /**
  * Represents a user profile (music collection directory).
  */
-public class Profile {
-    private final File directory;
-    private final String name;
-
+public class Profile extends LibraryNode {
     public Profile(File directory) {
-        this.directory = directory;
-        this.name = directory.getName();
+        super(directory);
     }
 
-    public File getDirectory() {
-        return directory;
-    }
-
-    public String getName() {
-        return name;
+    public Profile(LibraryIndex library, int id) {
+        super(library, id);
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Profile profile = (Profile) o;
-        return directory.equals(profile.directory);
+    public File getDirectory() {
+        return getNodeFile();
     }
 
-    @Override
-    public int hashCode() {
-        return directory.hashCode();
+    public String getName() {
+        return getFileName();
     }
 
     @Override
     public String toString() {
         return "Profile{" +
-                "name='" + name + '\'' +
-                ", directory=" + directory +
+                "name='" + getName() + '\'' +
+                ", directory=" + getDirectory() +
                 '}';
     }
 }
@@ -1,56 +1,43 @@
 package com.kidz.y1.models;
 
+import com.kidz.y1.utils.MusicFileScanner;
+
 import java.io.File;
 
 /**
- * Represents a music track (MP3 file).
+ * Represents a music track (an audio file, see AudioFormat).
  */
-public class Track {
-    private final File file;
-    private final String name;
+public class Track extends LibraryNode {
     private final Album album;
 
     public Track(File file, Album album) {
-        this.file = file;
-        String fileName = file.getName();
-        if (fileName.toLowerCase().endsWith(".mp3")) {
-            this.name = fileName.substring(0, fileName.length() - 4);
-        } else {
-            this.name = fileName;
-        }
+        super(file);
         this.album = album;
     }
 
+    public Track(LibraryIndex library, int id) {
+        super(library, id);
+        this.album = null;
+    }
+
     public File getFile() {
-        return file;
+        return getNodeFile();
     }
 
     public String getName() {
-        return name;
+        return MusicFileScanner.getTrackBaseName(getFileName());
     }
 
     public Album getAlbum() {
-        return album;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Track track = (Track) o;
-        return file.equals(track.file);
-    }
-
-    @Override
-    public int hashCode() {
-        return file.hashCode();
+        LibraryIndex library = getLibrary();
+        return library != null ? new Album(library, library.getParent(getId())) : album;
     }
 
     @Override
     public String toString() {
         return "Track{" +
-                "name='" + name + '\'' +
-                ", file=" + file +
+                "name='" + getName() + '\'' +
+                ", file=" + getFile() +
                 '}';
     }
 }
@@ -0,0 +1,116 @@
+package com.kidz.y1.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A window of the sorted tracks of an album.
+ *
+ * Holds the tracks at positions [offset, offset + size) of the album listing, and the
+ * number of tracks of the whole album, so huge albums can be browsed without building
+ * a Track for every file. The NameIndex of the whole album, which lets a screen jump to a
+ * letter or prefix outside the window, is requested separately (MusicRepository.getTrackNames()).
+ *
+ * A page that replaces a page delivered earlier for the same request (e.g. after
+ * revalidation) carries the LibraryDiff between the tracks of both windows.
+ */
+public class TrackPage {
+    private final int offset;
+    private final int totalCount;
+    private final List<Track> tracks;
+    private final LibraryDiff<Track> changes;
+
+    public TrackPage(int offset, int totalCount, List<Track> tracks) {
+        this(offset, totalCount, Collections.unmodifiableList(tracks), null);
+    }
+
+    private TrackPage(int offset, int totalCount, List<Track> tracks, LibraryDiff<Track> changes) {
+        this.offset = offset;
+        this.totalCount = totalCount;
+        this.tracks = tracks;
+        this.changes = changes;
+    }
+
+    /**
+     * @param previous the page this page replaces
+     * @return this page, carrying the diff from the tracks of the previous page
+     */
+    public TrackPage withChangesFrom(TrackPage previous) {
+        return new TrackPage(offset, totalCount, tracks, LibraryDiff.between(previous.tracks, tracks));
+    }
+
+    /**
+     * Positions of the diff are relative to the windows: add getOffset() of the respective page
+     * to get album positions.
+     *
+     * @return the diff from the tracks of the page this page replaces, or null if it replaces none
+     */
+    public LibraryDiff<Track> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return the album position of the first track of the window
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the number of tracks of the whole album
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public List<Track> getTracks() {
+        return tracks;
+    }
+
+    /**
+     * @param position an album position
+     * @return true if the track at that position is part of the window
+     */
+    public boolean contains(int position) {
+        return position >= offset && position < offset + tracks.size();
+    }
+
+    /**
+     * @param position an album position
+     * @return the track at that position, or null if it is outside the window
+     */
+    public Track getTrack(int position) {
+        return contains(position) ? tracks.get(position - offset) : null;
+    }
+
+    /**
+     * @param track a track of the album
+     * @return the album position of the track, or -1 if it is outside the window
+     */
+    public int indexOf(Track track) {
+        int index = tracks.indexOf(track);
+        return index >= 0 ? offset + index : -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TrackPage page = (TrackPage) o;
+        return offset == page.offset && totalCount == page.totalCount && tracks.equals(page.tracks);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * offset + totalCount) + tracks.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TrackPage{" +
+                "offset=" + offset +
+                ", size=" + tracks.size() +
+                ", totalCount=" + totalCount +
+                '}';
+    }
+}
@@ -4,13 +4,20 @@ import androidx.annotation.MainThread;
 import androidx.annotation.WorkerThread;
 
 import com.kidz.y1.models.Album;
+import com.kidz.y1.models.LibraryIndex;
+import com.kidz.y1.models.LibrarySnapshot;
+import com.kidz.y1.models.LibraryNode;
 import com.kidz.y1.models.Profile;
 import com.kidz.y1.models.Track;
+import com.kidz.y1.utils.BoundedCache;
+import com.kidz.y1.utils.CacheStats;
+import com.kidz.y1.utils.Constants;
 import com.kidz.y1.utils.ImageHelper;
 import com.kidz.y1.utils.Logger;
+import com.kidz.y1.utils.SingleFlight;
 
 import java.io.File;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -18,24 +25,39 @@ import java.util.concurrent.Executors;
  * Repository for image path operations.
  * Handles finding and caching image paths for profiles, albums, and tracks.
  * 
+ * Covers of nodes in the current LibraryIndex of their library root are read from the
+ * index; only nodes outside it are resolved with ImageHelper and cached. The indexes come
+ * from the LibrarySnapshot published by MusicRepository, so both repositories always serve
+ * the same indexes. A node below a directory invalidated since its index was validated
+ * (MusicRepository.isServedFromIndex()) is resolved from disk until the next refresh.
+ * While storage is unavailable, covers outside the index resolve to null without touching
+ * the filesystem.
+ * 
  * Threading:
  * - All file I/O and MediaMetadataRetriever operations run on background threads
+ * - Concurrent requests for the same image share one lookup (SingleFlight)
  * - Callbacks are invoked from background threads
  * - ViewModels should use postValue() to update LiveData from callbacks
  */
 public class ImageRepository {
     private static ImageRepository instance;
     private final ExecutorService executorService;
-    private final ConcurrentHashMap<String, String> imagePathCache;
+    private final BoundedCache<String, String> imagePathCache;
+    private final MusicRepository musicRepository;
+    private volatile boolean storageAvailable = true;
+    private final SingleFlight<String, String> lookupFlight = new SingleFlight<>();
 
-    private ImageRepository() {
+    private ImageRepository(MusicRepository musicRepository) {
+        this.musicRepository = musicRepository;
         executorService = Executors.newFixedThreadPool(2);
-        imagePathCache = new ConcurrentHashMap<>();
+        // Keys and paths are Strings of about the same length: object headers plus UTF-16 chars
+        imagePathCache = new BoundedCache<>(Constants.IMAGE_PATH_CACHE_MAX_BYTES,
+                (key, path) -> 112 + 2L * (key.length() + path.length()));
     }
 
     public static synchronized ImageRepository getInstance() {
         if (instance == null) {
-            instance = new ImageRepository();
+            instance = new ImageRepository(MusicRepository.getInstance());
         }
         return instance;
     }
@@ -52,16 +74,16 @@ public class ImageRepository {
     public void getProfileImagePath(Profile profile, RepositoryCallback<String> callback) {
         executorService.execute(() -> {
             try {
-                String cacheKey = "profile_" + profile.getDirectory().getAbsolutePath();
-                String imagePath = imagePathCache.get(cacheKey);
-                
-                if (imagePath == null) {
-                    imagePath = ImageHelper.findImagePath(profile.getDirectory(), ImageHelper.ImageType.PROFILE);
-                    if (imagePath != null) {
-                        imagePathCache.put(cacheKey, imagePath);
-                    }
+                LibraryIndex index = findLibraryIndex(profile);
+                int id = index != null ? index.findNode(profile) : LibraryIndex.NO_NODE;
+                if (index != null && index.isProfile(id)) {
+                    callback.onSuccess(index.getCover(id));
+                    return;
                 }
-                
+
+                String cacheKey = "profile_" + profile.getDirectory().getAbsolutePath();
+                String imagePath = resolveImagePath(cacheKey,
+                        () -> ImageHelper.findImagePath(profile.getDirectory(), ImageHelper.ImageType.PROFILE));
                 callback.onSuccess(imagePath);
             } catch (SecurityException e) {
                 Logger.w("ImageRepository", "Permission denied accessing image file", e);
@@ -86,16 +108,16 @@ public class ImageRepository {
     public void getAlbumImagePath(Album album, RepositoryCallback<String> callback) {
         executorService.execute(() -> {
             try {
-                String cacheKey = "album_" + album.getDirectory().getAbsolutePath();
-                String imagePath = imagePathCache.get(cacheKey);
-                
-                if (imagePath == null) {
-                    imagePath = ImageHelper.findImagePath(album.getDirectory(), ImageHelper.ImageType.ALBUM);
-                    if (imagePath != null) {
-                        imagePathCache.put(cacheKey, imagePath);
-                    }
+                LibraryIndex index = findLibraryIndex(album);
+                int id = index != null ? index.findNode(album) : LibraryIndex.NO_NODE;
+                if (index != null && index.isAlbum(id)) {
+                    callback.onSuccess(index.getCover(id));
+                    return;
                 }
-                
+
+                String cacheKey = "album_" + album.getDirectory().getAbsolutePath();
+                String imagePath = resolveImagePath(cacheKey,
+                        () -> ImageHelper.findImagePath(album.getDirectory(), ImageHelper.ImageType.ALBUM));
                 callback.onSuccess(imagePath);
             } catch (SecurityException e) {
                 Logger.w("ImageRepository", "Permission denied accessing image file", e);
@@ -120,19 +142,21 @@ public class ImageRepository {
     public void getTrackImagePath(Track track, RepositoryCallback<String> callback) {
         executorService.execute(() -> {
             try {
+                LibraryIndex index = findLibraryIndex(track);
+                int id = index != null ? index.findNode(track) : LibraryIndex.NO_NODE;
+                if (index != null && index.isTrack(id)) {
+                    callback.onSuccess(index.getCover(id));
+                    return;
+                }
+
                 String cacheKey = "track_" + track.getFile().getAbsolutePath();
-                String imagePath = imagePathCache.get(cacheKey);
-                
-                if (imagePath == null) {
-                    imagePath = ImageHelper.findImagePath(track.getFile(), ImageHelper.ImageType.TRACK);
-                    if (imagePath == null && track.getAlbum() != null) {
-                        imagePath = ImageHelper.findImagePath(track.getAlbum().getDirectory(), ImageHelper.ImageType.ALBUM);
+                String imagePath = resolveImagePath(cacheKey, () -> {
+                    String path = ImageHelper.findImagePath(track.getFile(), ImageHelper.ImageType.TRACK);
+                    if (path == null && track.getAlbum() != null) {
+                        path = ImageHelper.findImagePath(track.getAlbum().getDirectory(), ImageHelper.ImageType.ALBUM);
                     }
-                    if (imagePath != null) {
-                        imagePathCache.put(cacheKey, imagePath);
-                    }
-                }
-                
+                    return path;
+                });
                 callback.onSuccess(imagePath);
             } catch (SecurityException e) {
                 Logger.w("ImageRepository", "Permission denied accessing image file", e);
@@ -144,6 +168,71 @@ public class ImageRepository {
         });
     }
 
+    /**
+     * Get a cached image path, or run the lookup and cache its result.
+     * Concurrent lookups of the same key share one ImageHelper call.
+     */
+    private String resolveImagePath(String cacheKey, Callable<String> lookup) throws Exception {
+        String imagePath = imagePathCache.get(cacheKey);
+        if (imagePath != null || !storageAvailable) {
+            return imagePath;
+        }
+        return lookupFlight.run(cacheKey, () -> {
+            String path = lookup.call();
+            if (path != null) {
+                imagePathCache.put(cacheKey, path);
+            }
+            return path;
+        });
+    }
+
+    /**
+     * Drops the paths cached for nodes of a library root once its index was validated or
+     * replaced: its covers are served from the index again.
+     * 
+     * @param index the validated index of the root
+     */
+    public void onLibraryIndexValidated(LibraryIndex index) {
+        String rootPath = index.getRootPath();
+        for (String key : imagePathCache.keys()) {
+            // Keys are "<type>_<absolute path>"
+            if (isInRoot(key.substring(key.indexOf('_') + 1), rootPath)) {
+                imagePathCache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the root containing a node, or null if there is none or the
+     *         node's directory was invalidated since the index was validated
+     */
+    private LibraryIndex findLibraryIndex(LibraryNode node) {
+        if (!musicRepository.isServedFromIndex(node.getPath())) {
+            return null;
+        }
+        LibrarySnapshot library = musicRepository.getLibrarySnapshot();
+        LibraryIndex index = node.getLibrary();
+        if (index != null && library.getIndex(index.getRootPath()) == index) {
+            return index;
+        }
+        return library.findIndex(node.getPath());
+    }
+
+    private static boolean isInRoot(String path, String rootPath) {
+        return path.equals(rootPath) || path.startsWith(rootPath + File.separator);
+    }
+
+    /**
+     * Set whether external storage can be accessed.
+     * Cached paths are dropped on every transition.
+     */
+    public void setStorageAvailable(boolean available) {
+        if (storageAvailable != available) {
+            storageAvailable = available;
+            imagePathCache.clear();
+        }
+    }
+
     /**
      * Invalidate cache for a specific item.
      */
@@ -152,6 +241,40 @@ public class ImageRepository {
         imagePathCache.remove(cacheKey);
     }
 
+    /**
+     * Invalidate the cover references that may depend on an entry of a directory.
+     * An entry named "Story1.*" in a directory can be the cover of the folder or track
+     * "Story1" next to it; any entry of an album directory can change the album cover
+     * (track-named images, ID3 art of the first track) and thus the covers of its tracks.
+     * The index covers of the directory stop being used once MusicRepository.invalidateCache()
+     * was called for it, until its root is refreshed.
+     * 
+     * @param directory the directory that changed
+     * @param name the name of the entry that changed, or null if unknown
+     */
+    public void invalidateDirectoryEntry(File directory, String name) {
+        String directoryPath = directory.getAbsolutePath();
+        if (name != null) {
+            int dot = name.lastIndexOf('.');
+            String baseName = dot > 0 ? name.substring(0, dot) : name;
+            String siblingPath = new File(directory, baseName).getAbsolutePath();
+            imagePathCache.remove("profile_" + siblingPath);
+            imagePathCache.remove("album_" + siblingPath);
+            for (String ext : Constants.PLAYLIST_EXTENSIONS) {
+                // A playlist album whose cover image is named like the entry
+                imagePathCache.remove("album_" + siblingPath + ext);
+            }
+        }
+        imagePathCache.remove("album_" + directoryPath);
+
+        String trackPrefix = "track_" + directoryPath + File.separator;
+        for (String key : imagePathCache.keys()) {
+            if (key.startsWith(trackPrefix) && key.indexOf(File.separatorChar, trackPrefix.length()) < 0) {
+                imagePathCache.remove(key);
+            }
+        }
+    }
+
     /**
      * Clear all caches.
      */
@@ -159,6 +282,13 @@ public class ImageRepository {
         imagePathCache.clear();
     }
 
+    /**
+     * @return the size and hit counts of the image path cache
+     */
+    public CacheStats getImagePathCacheStats() {
+        return imagePathCache.getStats();
+    }
+
     /**
      * Shutdown the executor service.
      */
@@ -1,42 +1,119 @@
 package com.kidz.y1.repositories;
 
-import android.os.Environment;
 import androidx.annotation.MainThread;
 import androidx.annotation.WorkerThread;
 
 import com.kidz.y1.models.Album;
+import com.kidz.y1.models.DirectorySignature;
+import com.kidz.y1.models.LibraryDiff;
+import com.kidz.y1.models.LibraryIndex;
+import com.kidz.y1.models.LibrarySnapshot;
+import com.kidz.y1.models.LibraryNode;
+import com.kidz.y1.models.NameIndex;
 import com.kidz.y1.models.Profile;
 import com.kidz.y1.models.Track;
+import com.kidz.y1.models.TrackPage;
+import com.kidz.y1.utils.BoundedCache;
+import com.kidz.y1.utils.CacheStats;
 import com.kidz.y1.utils.Constants;
+import com.kidz.y1.utils.DirectoryContents;
+import com.kidz.y1.utils.FilesystemScanBackend;
+import com.kidz.y1.utils.LibraryIndexStore;
 import com.kidz.y1.utils.Logger;
 import com.kidz.y1.utils.MusicFileScanner;
+import com.kidz.y1.utils.NaturalOrder;
+import com.kidz.y1.utils.PathTrie;
+import com.kidz.y1.utils.PlaylistCache;
+import com.kidz.y1.utils.ScanBackend;
+import com.kidz.y1.utils.ScanExclusions;
+import com.kidz.y1.utils.SingleFlight;
+import com.kidz.y1.utils.Storage;
+import com.kidz.y1.utils.StorageBackend;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Repository for music file operations.
  * Handles scanning and caching of music directories, albums, and tracks.
  * 
+ * Library roots:
+ * - The library spans the Kidz directories of MusicFileScanner.getKidzDirectories()
+ * - Profiles of all roots are merged into one list; a profile name present on several
+ *   roots is listed once, and its albums are those of every root
+ * - Each root has its own LibraryIndex, persisted in its own file, and its own refresh
+ *   thread, so a slow removable card never delays the roots on internal flash
+ * - The indexes of all roots are published together as an immutable LibrarySnapshot through
+ *   one atomic reference; each request reads the snapshot once and is served from it, and a
+ *   refreshed root replaces only its own index in the next snapshot
+ * - ImageRepository serves covers from the same snapshot, and skips the nodes of directories
+ *   invalidated since their index was validated (see isServedFromIndex())
+ * 
+ * Startup:
+ * - Listings are served as views of the persisted LibraryIndex, without touching the filesystem
+ * - Directories invalidated since the index was validated, and directories outside it,
+ *   are scanned and kept in the scan cache, a PathTrie of directory listings
+ * - refreshLibraryIndexes() validates the indexes in the background, re-listing only directories
+ *   whose signature changed since the index was written
+ * - Indexes are built by the ScanBackend: the filesystem walker by default, or MediaStore
+ * - Playlists in a profile directory are albums; their entries are resolved through the
+ *   PlaylistCache, which parses a playlist again only after its file changed
+ * - The NameIndex of an album's tracks is built on request only (getTrackNames()), when a screen
+ *   first jumps or types ahead, and cached by album until the album's signature (or playlist) changes
+ * - LibraryIndexListeners are notified whenever a new index replaces the current one of its root
+ * 
+ * Changes:
+ * - A listing delivered more than once (partial results, revalidation) is published to a
+ *   ChangeCallback with the LibraryDiff from the previous delivery, and a revalidated TrackPage
+ *   carries the diff from the page it replaces, so screens rebind only the changed entries
+ * 
+ * Storage:
+ * - The library is read through the StorageBackend of Storage.get(): the device's filesystem
+ *   by default, or e.g. an InMemoryStorageBackend to scan a synthetic library off-device
+ * - While external storage is unavailable (setStorageAvailable(false)), listings are served
+ *   from the library index only; requests that need the filesystem fail fast with an
+ *   IOException and revalidations and refreshes are skipped
+ * 
  * Threading:
  * - All file I/O operations run on background threads via ExecutorService
+ * - Concurrent requests for the same directory share one read (SingleFlight)
  * - Callbacks are invoked from background threads
  * - ViewModels should use postValue() to update LiveData from callbacks
  */
 public class MusicRepository {
     private static MusicRepository instance;
     private final ExecutorService executorService;
-    private final ConcurrentHashMap<String, List<File>> scanCache;
+    private final PathTrie<DirectoryContents> scanCache;
+    private final PlaylistCache playlistCache = new PlaylistCache();
+    private final BoundedCache<String, AlbumNames> nameIndexCache = new BoundedCache<>(
+            Constants.NAME_INDEX_CACHE_MAX_BYTES, (path, names) -> names.index.estimateSize());
+    private final PathTrie<Long> staleIndexPaths = new PathTrie<>();
+    private final AtomicLong staleSequence = new AtomicLong();
+    private final SingleFlight<String, DirectoryContents> listingFlight = new SingleFlight<>();
+    private volatile File indexDirectory;
+    private volatile ScanBackend scanBackend = new FilesystemScanBackend();
+    private volatile boolean storageAvailable = true;
+    private List<LibraryRoot> roots;
+    private final AtomicReference<LibrarySnapshot> snapshot = new AtomicReference<>(LibrarySnapshot.EMPTY);
+    private final CopyOnWriteArrayList<LibraryIndexListener> indexListeners = new CopyOnWriteArrayList<>();
 
     private MusicRepository() {
         executorService = Executors.newFixedThreadPool(2);
-        scanCache = new ConcurrentHashMap<>();
+        scanCache = new PathTrie<>(Constants.SCAN_CACHE_MAX_BYTES,
+                (path, contents) -> contents.estimateSize());
     }
 
     public static synchronized MusicRepository getInstance() {
@@ -50,29 +127,44 @@ public class MusicRepository {
      * Check if the Kidz directory exists.
      * This is a lightweight check that can be called from any thread.
      * 
-     * @return true if the Kidz directory exists, false otherwise
+     * @return true if the Kidz directory exists on any library root, false otherwise
      */
     public boolean isKidzDirectoryExists() {
         return MusicFileScanner.isKidzDirectoryExists();
     }
 
     /**
-     * Get all profiles (music directories).
+     * Get all profiles (music directories) of all library roots.
      * Runs on background thread via ExecutorService.
+     * Roots served from their library index are listed first; if the callback is a
+     * StreamingCallback, the profiles found so far are delivered before each root that
+     * has to be listed from disk.
+     * A ChangeCallback also receives the diff of every delivery from the previous one.
      * Callback is invoked from background thread - use postValue() in ViewModels.
      * 
-     * @param callback invoked on background thread with results
+     * @param listener invoked on background thread with results
      */
     @MainThread
-    public void getProfiles(RepositoryCallback<List<Profile>> callback) {
+    public void getProfiles(RepositoryCallback<List<Profile>> listener) {
+        RepositoryCallback<List<Profile>> callback = publishChanges(listener);
         executorService.execute(() -> {
             try {
-                List<File> directories = MusicFileScanner.scanMusicDirectories();
-                List<Profile> profiles = new ArrayList<>();
-                for (File dir : directories) {
-                    profiles.add(new Profile(dir));
+                List<LibraryRoot> libraryRoots = getRoots();
+                LibrarySnapshot library = snapshot.get();
+                List<List<Profile>> listed = new ArrayList<>(libraryRoots.size());
+                List<LibraryRoot> unindexed = new ArrayList<>();
+                for (LibraryRoot root : libraryRoots) {
+                    boolean indexed = library.getIndex(root.path) != null && isServedFromIndex(root.path);
+                    listed.add(indexed ? listProfiles(library, root) : null);
+                    if (!indexed) {
+                        unindexed.add(root);
+                    }
+                }
+                for (LibraryRoot root : unindexed) {
+                    deliverPartial(callback, mergeProfiles(listed));
+                    listed.set(libraryRoots.indexOf(root), listProfiles(library, root));
                 }
-                callback.onSuccess(profiles);
+                callback.onSuccess(mergeProfiles(listed));
             } catch (SecurityException e) {
                 Logger.e("MusicRepository", "Permission denied accessing music directories", e);
                 callback.onError(e);
@@ -84,33 +176,29 @@ public class MusicRepository {
     }
 
     /**
-     * Get all albums for a profile.
+     * Get all albums for a profile, from every library root that has a profile of that name.
      * Runs on background thread via ExecutorService.
-     * Uses caching to avoid repeated file system scans.
+     * Profile directories served from a cache are listed first; if the callback is a
+     * StreamingCallback, the albums found so far are delivered before each profile directory
+     * that has to be listed from disk.
+     * A cached listing (library index or scan cache) is delivered immediately and then
+     * revalidated in the background; if the directory contents changed, the callback is
+     * invoked a second time with the fresh albums.
+     * A ChangeCallback also receives the diff of every delivery from the previous one.
      * Callback is invoked from background thread - use postValue() in ViewModels.
      * 
      * @param profile the profile to get albums for
-     * @param callback invoked on background thread with results
+     * @param listener invoked on background thread with results, at most twice
      */
     @MainThread
-    public void getAlbums(Profile profile, RepositoryCallback<List<Album>> callback) {
+    public void getAlbums(Profile profile, RepositoryCallback<List<Album>> listener) {
+        RepositoryCallback<List<Album>> callback = publishChanges(listener);
         executorService.execute(() -> {
             try {
-                File profileDir = profile.getDirectory();
-                String cacheKey = "albums_" + profileDir.getAbsolutePath();
-                
-                List<File> directories = scanCache.get(cacheKey);
-                
-                if (directories == null) {
-                    directories = MusicFileScanner.scanProfileDirectories(profileDir);
-                    scanCache.put(cacheKey, directories);
-                }
-                
-                List<Album> albums = new ArrayList<>(directories.size());
-                for (File dir : directories) {
-                    albums.add(new Album(dir, profile));
-                }
+                List<DirectoryCheck> served = new ArrayList<>();
+                List<Album> albums = collectAlbums(profile, served, callback);
                 callback.onSuccess(albums);
+                revalidate(served, () -> collectAlbums(profile, null, null), albums, callback);
             } catch (SecurityException e) {
                 Logger.e("MusicRepository", "Permission denied accessing album directories", e);
                 callback.onError(e);
@@ -124,31 +212,24 @@ public class MusicRepository {
     /**
      * Get all tracks for an album.
      * Runs on background thread via ExecutorService.
-     * Uses caching to avoid repeated file system scans.
+     * A cached listing (library index or scan cache) is delivered immediately and then
+     * revalidated in the background; if the directory contents changed, the callback is
+     * invoked a second time with the fresh tracks.
+     * A ChangeCallback also receives the diff of every delivery from the previous one.
      * Callback is invoked from background thread - use postValue() in ViewModels.
      * 
      * @param album the album to get tracks for
-     * @param callback invoked on background thread with results
+     * @param listener invoked on background thread with results, at most twice
      */
     @MainThread
-    public void getTracks(Album album, RepositoryCallback<List<Track>> callback) {
+    public void getTracks(Album album, RepositoryCallback<List<Track>> listener) {
+        RepositoryCallback<List<Track>> callback = publishChanges(listener);
         executorService.execute(() -> {
             try {
-                File albumDir = album.getDirectory();
-                String cacheKey = "tracks_" + albumDir.getAbsolutePath();
-                
-                List<File> trackFiles = scanCache.get(cacheKey);
-                
-                if (trackFiles == null) {
-                    trackFiles = MusicFileScanner.scanTracks(albumDir);
-                    scanCache.put(cacheKey, trackFiles);
-                }
-                
-                List<Track> tracks = new ArrayList<>(trackFiles.size());
-                for (File trackFile : trackFiles) {
-                    tracks.add(new Track(trackFile, album));
-                }
+                List<DirectoryCheck> served = new ArrayList<>();
+                List<Track> tracks = collectTracks(album, served);
                 callback.onSuccess(tracks);
+                revalidate(served, () -> collectTracks(album, null), tracks, callback);
             } catch (SecurityException e) {
                 Logger.e("MusicRepository", "Permission denied accessing track files", e);
                 callback.onError(e);
@@ -159,19 +240,769 @@ public class MusicRepository {
         });
     }
 
+    /**
+     * Get a window of the tracks of an album, in album order, and the number of tracks of the album.
+     * Runs on background thread via ExecutorService.
+     * Served from the library index, only the tracks of the window are created, so the cost does
+     * not depend on the size of the album. Cached listings are revalidated as by getTracks(); the
+     * callback is invoked a second time if the window or the track count changed, with a page
+     * carrying the diff from the first one (see TrackPage.getChanges()).
+     * Callback is invoked from background thread - use postValue() in ViewModels.
+     * 
+     * @param album the album to get tracks for
+     * @param offset the album position of the first track of the window
+     * @param limit the maximum number of tracks of the window
+     * @param callback invoked on background thread with results, at most twice
+     */
+    @MainThread
+    public void getTracks(Album album, int offset, int limit, RepositoryCallback<TrackPage> callback) {
+        executorService.execute(() -> {
+            try {
+                List<DirectoryCheck> served = new ArrayList<>();
+                TrackPage page = collectTracks(album, offset, limit, served);
+                callback.onSuccess(page);
+                revalidate(served, () -> collectTracks(album, offset, limit, null).withChangesFrom(page),
+                        page, callback);
+            } catch (SecurityException e) {
+                Logger.e("MusicRepository", "Permission denied accessing track files", e);
+                callback.onError(e);
+            } catch (Exception e) {
+                Logger.e("MusicRepository", "Error loading tracks for album: " + album.getName(), e);
+                callback.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Get the NameIndex of all tracks of an album, in album order, so a screen showing a window
+     * of the album can jump to a letter or prefix outside it.
+     * Runs on background thread via ExecutorService. The index is built from the same listing as
+     * getTracks() and cached until the listing changes, so only the first request per album
+     * version costs O(n log n).
+     * Callback is invoked from background thread - use postValue() in ViewModels.
+     * 
+     * @param album the album to index
+     * @param callback invoked on background thread with the index
+     */
+    @MainThread
+    public void getTrackNames(Album album, RepositoryCallback<NameIndex> callback) {
+        executorService.execute(() -> {
+            try {
+                callback.onSuccess(collectTrackNames(album));
+            } catch (Exception e) {
+                Logger.e("MusicRepository", "Error indexing tracks for album: " + album.getName(), e);
+                callback.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Merge the profiles of the roots listed so far, in root order.
+     * A profile name present on several roots is listed once, as the profile of the first of them.
+     * 
+     * @param listed the profiles of each root, null for roots not listed yet
+     */
+    private static List<Profile> mergeProfiles(List<List<Profile>> listed) {
+        List<Profile> profiles = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (List<Profile> rootProfiles : listed) {
+            if (rootProfiles == null) {
+                continue;
+            }
+            for (Profile profile : rootProfiles) {
+                // Names are compared like the FAT filesystems used on the device
+                if (names.add(profile.getName().toLowerCase())) {
+                    profiles.add(profile);
+                }
+            }
+        }
+        if (listed.size() > 1) {
+            NaturalOrder.sortNodes(profiles);
+        }
+        return profiles;
+    }
+
+    /**
+     * Deliver the nodes found so far if the callback accepts partial results and there are any.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void deliverPartial(RepositoryCallback<List<T>> callback, List<T> discovered) {
+        if (callback instanceof StreamingCallback && !discovered.isEmpty()) {
+            ((StreamingCallback<T>) callback).onPartial(discovered);
+        }
+    }
+
+    /**
+     * Wrap a ChangeCallback so that each delivery is followed by its diff from the previous one.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends LibraryNode> RepositoryCallback<List<T>> publishChanges(
+            RepositoryCallback<List<T>> callback) {
+        if (callback instanceof ChangeCallback) {
+            return new ChangePublisher<>((ChangeCallback<T>) callback);
+        }
+        return callback;
+    }
+
+    private List<Profile> listProfiles(LibrarySnapshot library, LibraryRoot root) throws Exception {
+        LibraryIndex index = library.getIndex(root.path);
+        if (index != null && isServedFromIndex(root.path)) {
+            int count = index.getChildCount(LibraryIndex.ROOT_ID);
+            List<Profile> profiles = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                profiles.add(new Profile(index, index.getChild(LibraryIndex.ROOT_ID, i)));
+            }
+            return profiles;
+        }
+
+        requireStorage();
+        List<File> directories = getDirectories(root.directory);
+        List<Profile> profiles = new ArrayList<>(directories.size());
+        for (File dir : directories) {
+            profiles.add(new Profile(dir));
+        }
+        return profiles;
+    }
+
+    /**
+     * List the albums of a profile on every root.
+     * 
+     * @param served receives the directories whose listing came from a cache, or null
+     * @param partial receives partial results if it is a StreamingCallback, or null
+     */
+    private List<Album> collectAlbums(Profile profile, List<DirectoryCheck> served,
+            RepositoryCallback<List<Album>> partial) throws Exception {
+        List<File> profileDirs = getProfileDirectories(profile);
+        LibrarySnapshot library = snapshot.get();
+        List<Album> albums = new ArrayList<>();
+        List<File> uncached = new ArrayList<>();
+        for (File profileDir : profileDirs) {
+            String path = profileDir.getAbsolutePath();
+            boolean own = path.equals(profile.getPath());
+            LibraryIndex index = library.findIndex(path);
+            if (index != null && isServedFromIndex(path)) {
+                int id = own ? index.findNode(profile) : index.findNode(path);
+                if (index.isProfile(id)) {
+                    int count = index.getChildCount(id);
+                    for (int i = 0; i < count; i++) {
+                        albums.add(new Album(index, index.getChild(id, i)));
+                    }
+                    if (served != null) {
+                        served.add(new DirectoryCheck(profileDir, index.getSignature(id)));
+                    }
+                    continue;
+                }
+                if (!own && id == LibraryIndex.NO_NODE) {
+                    // The root's index is current and has no profile of that name
+                    continue;
+                }
+            }
+
+            requireStorage();
+            DirectoryContents cached = scanCache.get(path);
+            if (cached == null) {
+                uncached.add(profileDir);
+                continue;
+            }
+            for (File albumFile : MusicFileScanner.getAlbumFiles(cached)) {
+                albums.add(new Album(albumFile, profile));
+            }
+            if (served != null) {
+                served.add(new DirectoryCheck(profileDir, cached.getSignature()));
+            }
+        }
+
+        for (File profileDir : uncached) {
+            if (partial != null) {
+                deliverPartial(partial, sortAlbums(new ArrayList<>(albums), profileDirs.size()));
+            }
+            DirectoryContents contents = getDirectoryContents(profileDir);
+            if (contents != null) {
+                for (File albumFile : MusicFileScanner.getAlbumFiles(contents)) {
+                    albums.add(new Album(albumFile, profile));
+                }
+            }
+        }
+        return sortAlbums(albums, profileDirs.size());
+    }
+
+    /**
+     * Albums of a single profile directory keep its listing order; merged ones are sorted.
+     */
+    private static List<Album> sortAlbums(List<Album> albums, int profileDirCount) {
+        if (profileDirCount > 1) {
+            NaturalOrder.sortNodes(albums);
+        }
+        return albums;
+    }
+
+    /**
+     * List the tracks of an album.
+     * 
+     * @param served receives the directory if its listing came from a cache, or null
+     */
+    private List<Track> collectTracks(Album album, List<DirectoryCheck> served) throws Exception {
+        return new ArrayList<>(collectTracks(album, 0, Integer.MAX_VALUE, served).getTracks());
+    }
+
+    /**
+     * List a window of the tracks of an album.
+     * 
+     * @param served receives the directory if its listing came from a cache, or null
+     */
+    private TrackPage collectTracks(Album album, int offset, int limit, List<DirectoryCheck> served)
+            throws Exception {
+        File albumDir = album.getDirectory();
+        if (album.isPlaylist()) {
+            return collectPlaylistTracks(album, offset, limit);
+        }
+        LibraryIndex index = snapshot.get().findIndex(album.getPath());
+        int id = findIndexedNode(index, album);
+        if (index != null && index.isAlbum(id)) {
+            int count = index.getChildCount(id);
+            int start = clampOffset(offset, count);
+            int end = start + Math.min(Math.max(limit, 0), count - start);
+            List<Track> tracks = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                tracks.add(new Track(index, index.getChild(id, i)));
+            }
+            if (served != null) {
+                served.add(new DirectoryCheck(albumDir, index.getSignature(id)));
+            }
+            return new TrackPage(start, count, tracks);
+        }
+
+        requireStorage();
+        DirectoryContents cached = scanCache.get(albumDir.getAbsolutePath());
+        DirectoryContents contents = cached != null ? cached : getDirectoryContents(albumDir);
+        List<File> trackFiles = contents != null ? contents.getTracks() : Collections.<File>emptyList();
+        int count = trackFiles.size();
+        int start = clampOffset(offset, count);
+        int end = start + Math.min(Math.max(limit, 0), count - start);
+        List<Track> tracks = new ArrayList<>(end - start);
+        for (File file : trackFiles.subList(start, end)) {
+            tracks.add(new Track(file, album));
+        }
+        if (served != null && cached != null) {
+            served.add(new DirectoryCheck(albumDir, cached.getSignature()));
+        }
+        return new TrackPage(start, count, tracks);
+    }
+
+    /**
+     * List a window of the entries of a playlist album.
+     * The playlist cache revalidates the entries itself, so the result is never revalidated.
+     */
+    private TrackPage collectPlaylistTracks(Album album, int offset, int limit) throws Exception {
+        requireStorage();
+        List<File> entries = playlistCache.getEntries(album.getDirectory());
+        int count = entries.size();
+        int start = clampOffset(offset, count);
+        int end = start + Math.min(Math.max(limit, 0), count - start);
+        List<Track> tracks = new ArrayList<>(end - start);
+        for (File file : entries.subList(start, end)) {
+            tracks.add(new Track(file, album));
+        }
+        return new TrackPage(start, count, tracks);
+    }
+
+    /**
+     * Index the track names of an album, from the same listing as collectTracks().
+     */
+    private NameIndex collectTrackNames(Album album) throws Exception {
+        if (album.isPlaylist()) {
+            requireStorage();
+            List<File> entries = playlistCache.getEntries(album.getDirectory());
+            // The cache returns the same entries until the playlist changes
+            return getTrackNames(album, entries, trackNames(entries));
+        }
+        LibraryIndex index = snapshot.get().findIndex(album.getPath());
+        int id = findIndexedNode(index, album);
+        if (index != null && index.isAlbum(id)) {
+            return getTrackNames(album, index.getSignature(id), indexedTrackNames(index, id));
+        }
+        requireStorage();
+        File albumDir = album.getDirectory();
+        DirectoryContents cached = scanCache.get(albumDir.getAbsolutePath());
+        DirectoryContents contents = cached != null ? cached : getDirectoryContents(albumDir);
+        if (contents == null) {
+            return NameIndex.EMPTY;
+        }
+        return getTrackNames(album, contents.getSignature(), trackNames(contents.getTracks()));
+    }
+
+    /**
+     * Gets the NameIndex of the tracks of an album, building it only if the album's listing
+     * changed since it was last built.
+     *
+     * @param version identifies the listing (directory signature or playlist entries), or null
+     *                if it cannot be identified and the index must be built
+     * @param names the track names, in album order; only read if the index is built
+     */
+    private NameIndex getTrackNames(Album album, Object version, List<String> names) {
+        String path = album.getPath();
+        AlbumNames cached = version != null ? nameIndexCache.get(path) : null;
+        if (cached != null && cached.version.equals(version)) {
+            return cached.index;
+        }
+        NameIndex index = NameIndex.build(names);
+        if (version != null) {
+            nameIndexCache.put(path, new AlbumNames(version, index));
+        }
+        return index;
+    }
+
+    private static List<String> indexedTrackNames(LibraryIndex index, int albumId) {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int position) {
+                return MusicFileScanner.getTrackBaseName(index.getName(index.getChild(albumId, position)));
+            }
+
+            @Override
+            public int size() {
+                return index.getChildCount(albumId);
+            }
+        };
+    }
+
+    private static List<String> trackNames(List<File> trackFiles) {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int position) {
+                return MusicFileScanner.getTrackBaseName(trackFiles.get(position).getName());
+            }
+
+            @Override
+            public int size() {
+                return trackFiles.size();
+            }
+        };
+    }
+
+    private static int clampOffset(int offset, int count) {
+        return Math.max(0, Math.min(offset, count));
+    }
+
+    /**
+     * Get the directories holding a profile's albums: its own directory, followed by the
+     * directory of the same name on every other root (which may not exist).
+     */
+    private List<File> getProfileDirectories(Profile profile) {
+        File directory = profile.getDirectory();
+        List<File> directories = new ArrayList<>();
+        directories.add(directory);
+        List<LibraryRoot> libraryRoots = getRoots();
+        if (libraryRoots.size() > 1) {
+            File parent = directory.getParentFile();
+            LibraryRoot ownRoot = getRoot(directory.getAbsolutePath());
+            if (ownRoot != null && ownRoot.directory.equals(parent)) {
+                for (LibraryRoot root : libraryRoots) {
+                    if (root != ownRoot) {
+                        directories.add(new File(root.directory, directory.getName()));
+                    }
+                }
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Check delivered listings against the filesystem in the background.
+     * Costs one directory read per listing when nothing changed, shared with concurrent reads
+     * of the same directory. If a directory's signature changed, the fresh listing replaces
+     * the cached one and the directory stops being served from the library index until the
+     * next refresh; the result is then collected again, and the callback receives it if
+     * it differs from the delivered one (nodes are compared by path). Skipped while storage
+     * is unavailable.
+     */
+    private <T> void revalidate(List<DirectoryCheck> served, Callable<T> reload,
+            T delivered, RepositoryCallback<T> callback) {
+        if (served.isEmpty() || !storageAvailable) {
+            return;
+        }
+        executorService.execute(() -> {
+            try {
+                if (!storageAvailable) {
+                    return;
+                }
+                boolean changed = false;
+                for (DirectoryCheck check : served) {
+                    DirectoryContents fresh = readDirectory(check.directory);
+                    if (fresh != null && fresh.getSignature().matches(check.signature)) {
+                        continue;
+                    }
+                    String path = check.directory.getAbsolutePath();
+                    staleIndexPaths.put(path, staleSequence.incrementAndGet());
+                    if (fresh == null) {
+                        scanCache.removeSubtree(path);
+                    }
+                    Logger.d("MusicRepository", "Listing changed since it was cached: " + path);
+                    changed = true;
+                }
+                if (!changed) {
+                    return;
+                }
+                T result = reload.call();
+                if (!result.equals(delivered)) {
+                    callback.onSuccess(result);
+                }
+            } catch (Exception e) {
+                // The cached listing was already delivered; the next request will retry
+                Logger.w("MusicRepository", "Error revalidating listing", e);
+            }
+        });
+    }
+
+    /**
+     * Set the directory holding the persisted library indexes, one file per root.
+     * Must be called before loadLibraryIndexes(), typically from Application.onCreate().
+     */
+    public void setIndexDirectory(File directory) {
+        this.indexDirectory = directory;
+    }
+
+    /**
+     * Set the backend used to build and refresh the library indexes.
+     * Defaults to walking the filesystem; typically set from Application.onCreate().
+     */
+    public void setScanBackend(ScanBackend backend) {
+        this.scanBackend = backend;
+    }
+
+    /**
+     * Set the storage the library is read from, dropping the listings cached from the previous one.
+     * Defaults to the device's filesystem; must be called before loadLibraryIndexes().
+     * 
+     * @param backend the storage backend, or null to restore the filesystem
+     */
+    public void setStorageBackend(StorageBackend backend) {
+        Storage.set(backend);
+        clearCache();
+    }
+
+    /**
+     * Get the current library snapshot.
+     * Lock-free; the snapshot is immutable and can be read from any thread.
+     * 
+     * @return the snapshot, LibrarySnapshot.EMPTY if no index has been loaded yet
+     */
+    public LibrarySnapshot getLibrarySnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Load the persisted library indexes and serve listings from them.
+     * If no valid index is stored for the primary root, it is scanned and the new index is
+     * persisted; other roots without a stored index are scanned on their own refresh thread,
+     * and listed from disk until then. While storage is unavailable, stored indexes are
+     * served as is.
+     * Blocking - must be called from a background thread.
+     * 
+     * @return the loaded or freshly built indexes
+     * @throws IOException if no index is stored and storage is unavailable
+     */
+    @WorkerThread
+    public List<LibraryIndex> loadLibraryIndexes() throws IOException {
+        List<LibraryRoot> libraryRoots = getRoots();
+        List<LibraryIndex> indexes = new ArrayList<>();
+        for (int i = 0; i < libraryRoots.size(); i++) {
+            LibraryRoot root = libraryRoots.get(i);
+            LibraryIndex index = loadLibraryIndex(root, i == 0);
+            if (index != null) {
+                indexes.add(index);
+            } else if (storageAvailable) {
+                refreshLibraryIndex(root, new RepositoryCallback<LibraryIndex>() {
+                    @Override
+                    public void onSuccess(LibraryIndex result) {
+                        Logger.d("MusicRepository", "Library index ready: " + result);
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        Logger.w("MusicRepository", "Error building library index: " + root.path, error);
+                    }
+                });
+            }
+        }
+        if (indexes.isEmpty() && !storageAvailable) {
+            throw new IOException("External storage is unavailable");
+        }
+        return indexes;
+    }
+
+    /**
+     * Load the index of one root.
+     * 
+     * @param scanIfMissing whether to build the index on this thread if none is stored
+     * @return the index, or null if none is stored and it was not built
+     */
+    private LibraryIndex loadLibraryIndex(LibraryRoot root, boolean scanIfMissing) {
+        synchronized (root.lock) {
+            LibraryIndexStore store = getIndexStore(root);
+            LibraryIndex index = store != null ? store.read() : null;
+            if (index != null && !root.path.equals(index.getRootPath())) {
+                index = null;
+            }
+            if (index == null) {
+                if (!scanIfMissing || !storageAvailable) {
+                    return null;
+                }
+                index = scanBackend.scan(root.directory, null);
+                persistLibraryIndex(root, index);
+            }
+            applyLibraryIndex(root, index, true);
+            Logger.d("MusicRepository", "Library index ready: " + index);
+            return index;
+        }
+    }
+
+    /**
+     * Validate the indexes of all library roots against the filesystem.
+     * Each root is refreshed as by refreshLibraryIndex(File, RepositoryCallback), on its own thread.
+     * 
+     * @param callback invoked on background threads once per root with its validated index
+     * @return the number of library roots, i.e. of callback invocations to expect
+     */
+    public int refreshLibraryIndexes(RepositoryCallback<LibraryIndex> callback) {
+        List<LibraryRoot> libraryRoots = getRoots();
+        for (LibraryRoot root : libraryRoots) {
+            refreshLibraryIndex(root, callback);
+        }
+        return libraryRoots.size();
+    }
+
+    /**
+     * Validate the index of the library root containing a directory against the filesystem.
+     * Runs on the root's refresh thread. The index is refreshed incrementally, and if it
+     * differs from the current one, it replaces the current one, is persisted and listeners
+     * are notified. If only directory signatures changed, it replaces the current one and
+     * is persisted without notifying listeners, so those directories are not rescanned
+     * again. Directories of the root invalidated before the refresh are served from the
+     * index again. Fails with an IOException while storage is unavailable.
+     * 
+     * @param directory a directory of the library
+     * @param callback invoked on background thread with the validated index
+     */
+    public void refreshLibraryIndex(File directory, RepositoryCallback<LibraryIndex> callback) {
+        LibraryRoot root = getRoot(directory.getAbsolutePath());
+        if (root == null) {
+            callback.onError(new IOException("Not part of the library: " + directory));
+            return;
+        }
+        refreshLibraryIndex(root, callback);
+    }
+
+    private void refreshLibraryIndex(LibraryRoot root, RepositoryCallback<LibraryIndex> callback) {
+        root.refreshExecutor.execute(() -> {
+            try {
+                requireStorage();
+                LibraryIndex index;
+                synchronized (root.lock) {
+                    // Paths invalidated again while walking stay stale until the next refresh
+                    Map<String, Long> validated = staleIndexPaths.toMap();
+                    LibraryIndex current = snapshot.get().getIndex(root.path);
+                    // Invalidated directories may have changed without changing their signature
+                    LibraryIndex previous = current != null ? current.withoutSignatures(validated.keySet()) : null;
+                    LibraryIndex fresh = scanBackend.scan(root.directory, previous);
+                    if (!fresh.contentEquals(current)) {
+                        Logger.i("MusicRepository", "Library changed since last index, refreshing: " + fresh);
+                        applyLibraryIndex(root, fresh, true);
+                        persistLibraryIndex(root, fresh);
+                    } else if (!fresh.signaturesEqual(current)) {
+                        Logger.d("MusicRepository", "Directory signatures changed, updating index: " + fresh);
+                        applyLibraryIndex(root, fresh, false);
+                        persistLibraryIndex(root, fresh);
+                    }
+                    for (Map.Entry<String, Long> entry : validated.entrySet()) {
+                        if (isInRoot(entry.getKey(), root.path)) {
+                            staleIndexPaths.remove(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    index = snapshot.get().getIndex(root.path);
+                }
+                callback.onSuccess(index);
+            } catch (SecurityException e) {
+                Logger.e("MusicRepository", "Permission denied validating library index", e);
+                callback.onError(e);
+            } catch (Exception e) {
+                Logger.e("MusicRepository", "Error validating library index: " + root.path, e);
+                callback.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Add a listener notified whenever a new library index is applied.
+     */
+    public void addLibraryIndexListener(LibraryIndexListener listener) {
+        indexListeners.addIfAbsent(listener);
+    }
+
+    public void removeLibraryIndexListener(LibraryIndexListener listener) {
+        indexListeners.remove(listener);
+    }
+
+    /**
+     * @param notify whether the library content changed, so listeners must be notified
+     */
+    private void applyLibraryIndex(LibraryRoot root, LibraryIndex index, boolean notify) {
+        // Other roots may publish concurrently; each keeps the indexes the other published
+        LibrarySnapshot current;
+        do {
+            current = snapshot.get();
+        } while (!snapshot.compareAndSet(current, current.withIndex(index)));
+        // Listings scanned while the previous index was stale are superseded by this one
+        scanCache.removeSubtree(root.path);
+        if (!notify) {
+            return;
+        }
+
+        for (LibraryIndexListener listener : indexListeners) {
+            listener.onLibraryIndexChanged(index);
+        }
+    }
+
+    /**
+     * Find the index node of a profile or album that can be served from the index.
+     * 
+     * @return the node id, or LibraryIndex.NO_NODE if there is no index, the node is not part
+     *         of it, or the node was invalidated since the index was validated
+     */
+    private int findIndexedNode(LibraryIndex index, LibraryNode node) {
+        if (index == null) {
+            return LibraryIndex.NO_NODE;
+        }
+        int id = index.findNode(node);
+        if (id == LibraryIndex.NO_NODE || !isServedFromIndex(node.getPath())) {
+            return LibraryIndex.NO_NODE;
+        }
+        return id;
+    }
+
+    /**
+     * Set whether external storage can be accessed.
+     * Cached listings are dropped on every transition: they may not describe the storage
+     * that is (or was) mounted.
+     */
+    public void setStorageAvailable(boolean available) {
+        if (storageAvailable != available) {
+            storageAvailable = available;
+            scanCache.clear();
+            playlistCache.clear();
+            nameIndexCache.clear();
+            Logger.i("MusicRepository", available ? "Storage available, resuming file access"
+                    : "Storage unavailable, suspending file access");
+        }
+    }
+
+    public boolean isStorageAvailable() {
+        return storageAvailable;
+    }
+
+    private void requireStorage() throws IOException {
+        if (!storageAvailable) {
+            throw new IOException("External storage is unavailable");
+        }
+    }
+
+    /**
+     * @param path the absolute path of a library node
+     * @return false if the node or one of its directories was invalidated since the index of
+     *         its root was last validated, so the index may not describe it
+     */
+    public boolean isServedFromIndex(String path) {
+        return !staleIndexPaths.containsSelfOrAncestor(path);
+    }
+
+    private synchronized List<LibraryRoot> getRoots() {
+        if (roots == null) {
+            List<LibraryRoot> libraryRoots = new ArrayList<>();
+            for (File directory : MusicFileScanner.getKidzDirectories()) {
+                libraryRoots.add(new LibraryRoot(directory));
+            }
+            roots = Collections.unmodifiableList(libraryRoots);
+        }
+        return roots;
+    }
+
+    /**
+     * @return the root containing a path, or null if the path is outside the library
+     */
+    private LibraryRoot getRoot(String path) {
+        for (LibraryRoot root : getRoots()) {
+            if (isInRoot(path, root.path)) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInRoot(String path, String rootPath) {
+        return path.equals(rootPath) || path.startsWith(rootPath + File.separator);
+    }
+
+    private LibraryIndexStore getIndexStore(LibraryRoot root) {
+        File directory = indexDirectory;
+        if (directory == null) {
+            return null;
+        }
+        return new LibraryIndexStore(LibraryIndexStore.getIndexFile(directory, root.directory,
+                root == getRoots().get(0)));
+    }
+
+    private List<File> getDirectories(File directory) throws Exception {
+        DirectoryContents contents = getDirectoryContents(directory);
+        return contents != null ? contents.getDirectories() : Collections.<File>emptyList();
+    }
+
+    /**
+     * Get the cached listing of a directory, reading it on a cache miss.
+     * One listing serves both the sub-directories and the tracks of the directory.
+     * 
+     * @return the listing, or null if the directory does not exist
+     */
+    private DirectoryContents getDirectoryContents(File directory) throws Exception {
+        DirectoryContents contents = scanCache.get(directory.getAbsolutePath());
+        return contents != null ? contents : readDirectory(directory);
+    }
+
+    /**
+     * Read a directory and cache its listing.
+     * Concurrent reads of the same directory share one read.
+     * 
+     * @return the listing, or null if the directory does not exist
+     */
+    private DirectoryContents readDirectory(File directory) throws Exception {
+        String path = directory.getAbsolutePath();
+        return listingFlight.run(path, () -> {
+            DirectoryContents contents = DirectoryContents.read(directory);
+            if (contents != null) {
+                scanCache.put(path, contents);
+            }
+            return contents;
+        });
+    }
+
+    private void persistLibraryIndex(LibraryRoot root, LibraryIndex index) {
+        LibraryIndexStore store = getIndexStore(root);
+        if (store != null) {
+            store.write(index);
+        }
+    }
+
     /**
      * Invalidate cache for a specific directory.
      * Use this when you know the directory contents have changed.
+     * Removes exactly the directory's subtree from the scan cache, in time proportional to its depth
+     * and subtree size. The directory and everything below it are scanned again until the next
+     * refresh of its root.
      */
     public void invalidateCache(File directory) {
         String path = directory.getAbsolutePath();
-        Iterator<Map.Entry<String, List<File>>> iterator = scanCache.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, List<File>> entry = iterator.next();
-            if (entry.getKey().contains(path)) {
-                iterator.remove();
-            }
-        }
+        staleIndexPaths.put(path, staleSequence.incrementAndGet());
+        scanCache.removeSubtree(path);
+        playlistCache.invalidate(directory);
     }
 
     /**
@@ -179,14 +1010,160 @@ public class MusicRepository {
      */
     public void clearCache() {
         scanCache.clear();
+        playlistCache.clear();
+        nameIndexCache.clear();
+        ScanExclusions.clear();
     }
 
     /**
-     * Shutdown the executor service.
+     * @return the size and hit counts of the directory listing cache
+     */
+    public CacheStats getScanCacheStats() {
+        return scanCache.getStats();
+    }
+
+    /**
+     * @return the size and hit counts of the playlist entry cache
+     */
+    public CacheStats getPlaylistCacheStats() {
+        return playlistCache.getStats();
+    }
+
+    /**
+     * Shutdown the executor services.
      * Should be called when the repository is no longer needed.
      */
     public void shutdown() {
         executorService.shutdown();
+        for (LibraryRoot root : getRoots()) {
+            root.refreshExecutor.shutdown();
+        }
+    }
+
+    /**
+     * One Kidz directory of the library, with its own lock and refresh thread.
+     * Its index is part of the library snapshot.
+     */
+    private static class LibraryRoot {
+        final File directory;
+        final String path;
+        final Object lock = new Object();
+        final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+
+        LibraryRoot(File directory) {
+            this.directory = directory;
+            this.path = directory.getAbsolutePath();
+        }
+    }
+
+    /**
+     * A directory whose cached listing was delivered, with the signature it was delivered at.
+     */
+    private static class DirectoryCheck {
+        final File directory;
+        final DirectorySignature signature;
+
+        DirectoryCheck(File directory, DirectorySignature signature) {
+            this.directory = directory;
+            this.signature = signature;
+        }
+    }
+
+    /**
+     * The NameIndex of an album's tracks, with the version of the listing it was built from.
+     */
+    private static class AlbumNames {
+        final Object version;
+        final NameIndex index;
+
+        AlbumNames(Object version, NameIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Delivers listings to a ChangeCallback, followed by their diff from the previous delivery.
+     */
+    private static class ChangePublisher<T extends LibraryNode> implements StreamingCallback<T> {
+        private final ChangeCallback<T> callback;
+        private List<T> delivered;
+
+        ChangePublisher(ChangeCallback<T> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onPartial(List<T> discovered) {
+            callback.onPartial(discovered);
+            publish(discovered);
+        }
+
+        @Override
+        public void onSuccess(List<T> result) {
+            callback.onSuccess(result);
+            publish(result);
+        }
+
+        @Override
+        public void onError(Exception error) {
+            callback.onError(error);
+        }
+
+        // Synchronized so that diffs are published in the order they chain up
+        private synchronized void publish(List<T> listing) {
+            LibraryDiff<T> diff = LibraryDiff.between(delivered, listing);
+            delivered = listing;
+            callback.onChanged(diff);
+        }
+    }
+
+    /**
+     * Listener for library index changes.
+     * 
+     * Threading: Invoked from the background thread that applied the index.
+     */
+    public interface LibraryIndexListener {
+        /**
+         * @param index the new index of one library root (see LibraryIndex.getRootPath())
+         */
+        @WorkerThread
+        void onLibraryIndexChanged(LibraryIndex index);
+    }
+
+    /**
+     * Callback of listings that are delivered while they are being discovered.
+     * onSuccess() receives the complete listing and signals that the listing is done;
+     * it may still be called a second time with revalidated results.
+     * 
+     * Threading: Callbacks are invoked from background threads.
+     */
+    public interface StreamingCallback<T> extends RepositoryCallback<List<T>> {
+        /**
+         * Called with the nodes discovered so far, sorted like the complete listing, while
+         * further directories are still being listed. Each call contains the nodes of the
+         * previous one (profiles by name).
+         * Invoked from background thread.
+         */
+        @WorkerThread
+        void onPartial(List<T> discovered);
+    }
+
+    /**
+     * Streaming callback that is also told how each delivered listing differs from the
+     * previous one, so a screen can rebind only the added, removed and moved entries.
+     * 
+     * Threading: Callbacks are invoked from background threads.
+     */
+    public interface ChangeCallback<T extends LibraryNode> extends StreamingCallback<T> {
+        /**
+         * Called after each onPartial() and onSuccess(), with the diff between the listing just
+         * delivered (getCurrent()) and the one delivered before it (getPrevious()); the first
+         * listing is diffed against an empty one.
+         * Invoked from background thread.
+         */
+        @WorkerThread
+        void onChanged(LibraryDiff<T> diff);
     }
 
     /**
@@ -198,11 +1175,12 @@ public class MusicRepository {
     public interface RepositoryCallback<T> {
         /**
          * Called when the operation succeeds.
-         * Invoked from background thread.
+         * Invoked from background thread. Operations that serve cached results may call it
+         * a second time with revalidated results.
          */
         @WorkerThread
         void onSuccess(T result);
-        
+
         /**
          * Called when the operation fails.
          * Invoked from background thread.
@@ -0,0 +1,351 @@
+package com.kidz.y1.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Audio formats recognized as tracks, and their detection.
+ *
+ * Detection uses the file name first: a name ending in a known extension is a track of
+ * that format without touching the file. Only files with an unknown extension (or none)
+ * are sniffed, by reading the first bytes and matching the format's magic bytes:
+ * - MP3: "ID3" tag or an MPEG audio frame sync
+ * - M4A: "ftyp" box at offset 4 with an audio brand ("M4A ", "M4B "...); a generic brand
+ *   ("isom", "mp42"...) only if the file's tracks are sound tracks, found by walking the
+ *   box headers to the "moov" box and skipping everything else; image and video brands
+ *   (HEIF photos, QuickTime, 3GPP) are never tracks
+ * - AAC: ADTS frame sync
+ * - OGG: "OggS"
+ * - FLAC: "fLaC"
+ * - WAV: "RIFF" followed by "WAVE" at offset 8
+ *
+ * Sniff results are cached by path, bounded by Constants.SNIFF_CACHE_MAX_BYTES, and
+ * revalidated with the file's modification time and length from one stat, so a cached file
+ * costs one stat, and each file is read at most once while it does not change.
+ *
+ * Threading:
+ * - sniff() and detect() perform file I/O and should be called from background threads
+ * - The cache is thread-safe
+ *
+ * Compatible with API 17+.
+ */
+public enum AudioFormat {
+    MP3(".mp3"),
+    M4A(".m4a"),
+    AAC(".aac"),
+    OGG(".ogg"),
+    FLAC(".flac"),
+    WAV(".wav");
+
+    private static final int HEADER_BYTES = 12;
+    // ISO base media brands of audio files, and of files that are never audio tracks
+    private static final Set<String> AUDIO_BRANDS = new HashSet<>(Arrays.asList(
+            "M4A ", "M4B ", "M4P ", "F4A ", "F4B "));
+    private static final Set<String> NON_AUDIO_BRANDS = new HashSet<>(Arrays.asList(
+            "heic", "heix", "hevc", "heim", "heis", "mif1", "msf1", "avif", "avis",
+            "qt  ", "M4V ", "M4VH", "M4VP", "f4v "));
+    private static final int MAX_BRANDS = 32;
+    // Bounds the box headers read from a file while looking for its tracks
+    private static final int MAX_BOXES = 256;
+    private static final int SNIFF_RESULT_BYTES = 64;
+    private static final BoundedCache<String, SniffResult> sniffCache = new BoundedCache<>(
+            Constants.SNIFF_CACHE_MAX_BYTES, (path, result) -> SNIFF_RESULT_BYTES + 2L * path.length());
+
+    private final String extension;
+
+    AudioFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return the lowercase extension of the format, including the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Gets the format of a file from its name.
+     *
+     * @param name the file name
+     * @return the format, or null if the extension is not a known audio extension
+     */
+    public static AudioFormat fromName(String name) {
+        String lowerName = name.toLowerCase();
+        for (AudioFormat format : values()) {
+            if (lowerName.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the format of a file from its name, or from its content if the name is not conclusive.
+     *
+     * @param file the file to classify
+     * @return the format, or null if the file is not a recognized audio file
+     */
+    public static AudioFormat detect(File file) {
+        AudioFormat format = fromName(file.getName());
+        return format != null ? format : sniff(file);
+    }
+
+    /**
+     * Gets the format of a file from its magic bytes, using the cached result while the
+     * file's modification time and length are unchanged.
+     *
+     * @param file the file to sniff
+     * @return the format, or null if the file is missing, unreadable or not recognized
+     */
+    public static AudioFormat sniff(File file) {
+        FileAttributes attributes = Storage.get().stat(file);
+        SyscallCounter.countStat();
+        return sniff(file, attributes);
+    }
+
+    /**
+     * Like sniff(File), for a caller that already stat'ed the file.
+     *
+     * @param file the file to sniff
+     * @param attributes the file's attributes from StorageBackend.stat()
+     * @return the format, or null if the file is missing, unreadable or not recognized
+     */
+    static AudioFormat sniff(File file, FileAttributes attributes) {
+        if (!attributes.isFile()) {
+            return null;
+        }
+        String path = file.getAbsolutePath();
+        SniffResult cached = sniffCache.get(path);
+        if (cached != null && cached.lastModified == attributes.getLastModified()
+                && cached.length == attributes.getLength()) {
+            return cached.format;
+        }
+
+        AudioFormat format = readFormat(file);
+        sniffCache.put(path, new SniffResult(attributes.getLastModified(), attributes.getLength(), format));
+        return format;
+    }
+
+    private static AudioFormat readFormat(File file) {
+        InputStream in = null;
+        try {
+            in = Storage.get().openInputStream(file);
+            SyscallCounter.countFileRead();
+            byte[] header = new byte[HEADER_BYTES];
+            if (!readFully(in, header, HEADER_BYTES)) {
+                return null;
+            }
+            AudioFormat format = fromHeader(header);
+            if (format == M4A && !isAudioIsoMedia(in, header)) {
+                return null;
+            }
+            return format;
+        } catch (IOException e) {
+            Logger.w("AudioFormat", "Cannot read file header: " + file, e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Logger.w("AudioFormat", "Error closing file: " + file, e);
+                }
+            }
+        }
+    }
+
+    private static AudioFormat fromHeader(byte[] h) {
+        if (matches(h, 0, "ID3")) {
+            return MP3;
+        }
+        if (matches(h, 0, "fLaC")) {
+            return FLAC;
+        }
+        if (matches(h, 0, "OggS")) {
+            return OGG;
+        }
+        if (matches(h, 0, "RIFF") && matches(h, 8, "WAVE")) {
+            return WAV;
+        }
+        if (matches(h, 4, "ftyp")) {
+            return M4A;
+        }
+        if ((h[0] & 0xFF) == 0xFF) {
+            int b1 = h[1] & 0xFF;
+            // ADTS: 12-bit sync word, layer 00
+            if ((b1 & 0xF6) == 0xF0) {
+                return AAC;
+            }
+            // MPEG audio: 11-bit sync word, layer other than the reserved 00
+            if ((b1 & 0xE0) == 0xE0 && (b1 & 0x06) != 0) {
+                return MP3;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the brands of an ISO base media file, and its tracks if the brands are generic.
+     *
+     * @param in the file, positioned after the header
+     * @param header the first HEADER_BYTES bytes: the size and type of the "ftyp" box and the major brand
+     */
+    private static boolean isAudioIsoMedia(InputStream in, byte[] header) throws IOException {
+        long remaining = readUInt32(header, 0) - HEADER_BYTES;
+        List<String> brands = new ArrayList<>();
+        brands.add(new String(header, 8, 4, "ISO-8859-1"));
+        // The minor version, then the compatible brands
+        byte[] buffer = new byte[16];
+        if (remaining < 4 || !skipFully(in, 4)) {
+            return false;
+        }
+        remaining -= 4;
+        while (remaining >= 4 && brands.size() < MAX_BRANDS) {
+            if (!readFully(in, buffer, 4)) {
+                return false;
+            }
+            brands.add(new String(buffer, 0, 4, "ISO-8859-1"));
+            remaining -= 4;
+        }
+        for (String brand : brands) {
+            if (AUDIO_BRANDS.contains(brand)) {
+                return true;
+            }
+        }
+        for (String brand : brands) {
+            if (NON_AUDIO_BRANDS.contains(brand) || brand.startsWith("3gp") || brand.startsWith("3g2")) {
+                return false;
+            }
+        }
+        if (!skipFully(in, remaining)) {
+            return false;
+        }
+        // Sound and video handlers seen, boxes read, and whether the "moov" box was found
+        int[] tracks = new int[4];
+        scanBoxes(in, Long.MAX_VALUE, 0, buffer, tracks);
+        return tracks[3] != 0 && tracks[0] > 0 && tracks[1] == 0;
+    }
+
+    /**
+     * Walks the boxes of one level, descending into moov/trak/mdia and reading the handler
+     * type of every track's "hdlr" box; everything else is skipped without being read.
+     *
+     * @param length the size of the level, Long.MAX_VALUE for the top level
+     * @return the bytes consumed, or -1 if the file ended, is malformed or has too many boxes
+     */
+    private static long scanBoxes(InputStream in, long length, int depth, byte[] buffer, int[] tracks)
+            throws IOException {
+        long consumed = 0;
+        while (length - consumed >= 8) {
+            if (++tracks[2] > MAX_BOXES || !readFully(in, buffer, 8)) {
+                return -1;
+            }
+            long size = readUInt32(buffer, 0);
+            String type = new String(buffer, 4, 4, "ISO-8859-1");
+            long headerSize = 8;
+            if (size == 1) {
+                if (!readFully(in, buffer, 8)) {
+                    return -1;
+                }
+                size = (readUInt32(buffer, 0) << 32) | readUInt32(buffer, 4);
+                headerSize = 16;
+            } else if (size == 0) {
+                // The box extends to the end of its parent
+                size = length == Long.MAX_VALUE ? Long.MAX_VALUE : length - consumed;
+            }
+            long bodySize = size == Long.MAX_VALUE ? Long.MAX_VALUE : size - headerSize;
+            if (bodySize < 0 || (length != Long.MAX_VALUE && headerSize + bodySize > length - consumed)) {
+                return -1;
+            }
+            long read = 0;
+            if ((depth == 0 && type.equals("moov")) || (depth == 1 && type.equals("trak"))
+                    || (depth == 2 && type.equals("mdia"))) {
+                read = scanBoxes(in, bodySize, depth + 1, buffer, tracks);
+                if (read < 0) {
+                    return -1;
+                }
+                if (depth == 0) {
+                    tracks[3] = 1;
+                    return consumed + headerSize + read;
+                }
+            } else if (depth == 3 && type.equals("hdlr") && bodySize >= 12) {
+                // Version and flags, pre-defined, then the handler type
+                if (!readFully(in, buffer, 12)) {
+                    return -1;
+                }
+                String handler = new String(buffer, 8, 4, "ISO-8859-1");
+                if (handler.equals("soun")) {
+                    tracks[0]++;
+                } else if (handler.equals("vide")) {
+                    tracks[1]++;
+                }
+                read = 12;
+            }
+            if (bodySize == Long.MAX_VALUE || !skipFully(in, bodySize - read)) {
+                return -1;
+            }
+            consumed += headerSize + bodySize;
+        }
+        return consumed;
+    }
+
+    private static long readUInt32(byte[] b, int offset) {
+        return ((b[offset] & 0xFFL) << 24) | ((b[offset + 1] & 0xFFL) << 16)
+                | ((b[offset + 2] & 0xFFL) << 8) | (b[offset + 3] & 0xFFL);
+    }
+
+    private static boolean readFully(InputStream in, byte[] buffer, int count) throws IOException {
+        int length = 0;
+        while (length < count) {
+            int read = in.read(buffer, length, count - length);
+            if (read < 0) {
+                return false;
+            }
+            length += read;
+        }
+        return true;
+    }
+
+    private static boolean skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                // skip() may stop early without reaching the end; one read tells
+                if (in.read() < 0) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] header, int offset, String magic) {
+        for (int i = 0; i < magic.length(); i++) {
+            if (header[offset + i] != (byte) magic.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class SniffResult {
+        final long lastModified;
+        final long length;
+        final AudioFormat format;
+
+        SniffResult(long lastModified, long length, AudioFormat format) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.format = format;
+        }
+    }
+}
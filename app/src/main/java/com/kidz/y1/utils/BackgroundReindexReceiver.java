@@ -0,0 +1,24 @@
+package com.kidz.y1.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.kidz.y1.di.DependencyProvider;
+
+/**
+ * Receives ACTION_POWER_CONNECTED and the alarm of BackgroundReindexer, and starts a
+ * background re-index if the device is idle.
+ * Declared in the manifest, so it also runs when no activity of the app is alive.
+ *
+ * Threading:
+ * - Invoked on the main thread; the pass itself runs on BackgroundReindexer's thread
+ *
+ * Compatible with API 17+.
+ */
+public class BackgroundReindexReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        DependencyProvider.getBackgroundReindexer(context).runIfIdle(intent.getAction());
+    }
+}
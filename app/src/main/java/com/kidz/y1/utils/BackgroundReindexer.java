@@ -0,0 +1,286 @@
+package com.kidz.y1.utils;
+
+import android.app.Activity;
+import android.app.AlarmManager;
+import android.app.Application;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.media.AudioManager;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.kidz.y1.models.LibraryIndex;
+import com.kidz.y1.repositories.ImageRepository;
+import com.kidz.y1.repositories.MusicRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Validates the library and warms the cover caches while the device charges unattended,
+ * so the next launch finds the persisted indexes and Glide's disk cache up to date.
+ *
+ * A pass:
+ * - Refreshes the index of every library root, one root at a time; changed indexes are
+ *   persisted by MusicRepository
+ * - Loads every cover of the indexes through CoverPreloader into Glide's disk cache
+ * - Stops early, between roots or covers, if the device is unplugged, the UI comes back or
+ *   music starts playing
+ * - Validation and preloading each have their own time budget, and both end before the
+ *   pass's wake lock times out
+ * - Records its completion time; passes run at most every Constants.BACKGROUND_REINDEX_MIN_GAP_MS
+ *
+ * Triggers (minSdk 17 has no JobScheduler):
+ * - ACTION_POWER_CONNECTED, received by BackgroundReindexReceiver
+ * - An inexact repeating alarm every Constants.BACKGROUND_REINDEX_INTERVAL_MS, for devices
+ *   that stay plugged in
+ * - The last activity of the app being stopped while the device charges
+ * A trigger only starts a pass if the device is charging, no activity is started, no music
+ * is playing and storage is available.
+ *
+ * Threading:
+ * - start() and the activity callbacks run on the main thread; runIfIdle() may be called
+ *   from any thread
+ * - Passes run on a single background thread, holding a partial wake lock
+ *
+ * Compatible with API 17+.
+ */
+public class BackgroundReindexer implements Application.ActivityLifecycleCallbacks {
+    private final Application application;
+    private final MusicRepository musicRepository;
+    private final ImageRepository imageRepository;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private int startedActivities = 0;
+    private volatile boolean foreground = false;
+
+    public BackgroundReindexer(Application application, MusicRepository musicRepository,
+            ImageRepository imageRepository) {
+        this.application = application;
+        this.musicRepository = musicRepository;
+        this.imageRepository = imageRepository;
+    }
+
+    /**
+     * Starts following the activities of the app and schedules the repeating alarm.
+     */
+    public void start() {
+        application.registerActivityLifecycleCallbacks(this);
+
+        AlarmManager alarmManager = (AlarmManager) application.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+        Intent intent = new Intent(application, BackgroundReindexReceiver.class)
+                .setAction(Constants.ACTION_BACKGROUND_REINDEX);
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            flags |= PendingIntent.FLAG_IMMUTABLE;
+        }
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(application, 0, intent, flags);
+        // Replaces the alarm scheduled by a previous process
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                SystemClock.elapsedRealtime() + Constants.BACKGROUND_REINDEX_INTERVAL_MS,
+                Constants.BACKGROUND_REINDEX_INTERVAL_MS, pendingIntent);
+    }
+
+    /**
+     * Starts a pass if the device is charging and idle and no pass ran recently.
+     *
+     * @param trigger what triggered the check, for logging
+     * @return true if a pass was started
+     */
+    public boolean runIfIdle(String trigger) {
+        if (!isIdle() || !musicRepository.isStorageAvailable()) {
+            Logger.d("BackgroundReindexer", "Not idle, skipping background re-index (" + trigger + ")");
+            return false;
+        }
+        long lastRun = getPreferences().getLong(Constants.PREF_LAST_BACKGROUND_REINDEX, 0L);
+        long sinceLastRun = System.currentTimeMillis() - lastRun;
+        if (sinceLastRun >= 0 && sinceLastRun < Constants.BACKGROUND_REINDEX_MIN_GAP_MS) {
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        PowerManager powerManager = (PowerManager) application.getSystemService(Context.POWER_SERVICE);
+        PowerManager.WakeLock wakeLock = powerManager.newWakeLock(
+                PowerManager.PARTIAL_WAKE_LOCK, Constants.REINDEX_WAKE_LOCK_TAG);
+        // Acquired before returning, so the wake lock of a waking alarm is handed over
+        wakeLock.acquire(Constants.BACKGROUND_REINDEX_TIMEOUT_MS);
+        long lockExpiresAt = SystemClock.elapsedRealtime() + Constants.BACKGROUND_REINDEX_TIMEOUT_MS;
+        Logger.i("BackgroundReindexer", "Starting background re-index (" + trigger + ")");
+        executor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                runPass(lockExpiresAt);
+            } catch (Exception e) {
+                Logger.w("BackgroundReindexer", "Background re-index failed", e);
+            } finally {
+                if (wakeLock.isHeld()) {
+                    wakeLock.release();
+                }
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @param lockExpiresAt when the pass's wake lock times out, in elapsedRealtime() time
+     */
+    private void runPass(long lockExpiresAt) throws IOException, InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        if (musicRepository.getLibrarySnapshot().isEmpty()) {
+            // Process started by the receiver: refresh the stored indexes instead of rebuilding them
+            musicRepository.loadLibraryIndexes();
+        }
+
+        // One root at a time, so the pass stops between roots once the device is in use
+        long validateDeadline = Math.min(start + Constants.BACKGROUND_REINDEX_VALIDATE_TIMEOUT_MS, lockExpiresAt);
+        List<LibraryIndex> validated = new ArrayList<>();
+        for (File root : MusicFileScanner.getKidzDirectories()) {
+            if (!isIdle()) {
+                Logger.i("BackgroundReindexer", "Device in use, background re-index stopped after "
+                        + validated.size() + " roots");
+                return;
+            }
+            LibraryIndex index = validate(root, validateDeadline);
+            if (index != null) {
+                validated.add(index);
+            }
+        }
+
+        CoverPreloader preloader = new CoverPreloader(application);
+        long preloadDeadline = Math.min(SystemClock.elapsedRealtime() + Constants.BACKGROUND_REINDEX_PRELOAD_TIMEOUT_MS,
+                lockExpiresAt);
+        int covers = 0;
+        for (LibraryIndex index : validated) {
+            // Its covers are served from the index again, even if it did not change
+            imageRepository.onLibraryIndexValidated(index);
+            for (String coverPath : index.getCoverPaths()) {
+                if (!isIdle()) {
+                    Logger.i("BackgroundReindexer", "Device in use, background re-index stopped after "
+                            + covers + " covers");
+                    return;
+                }
+                if (SystemClock.elapsedRealtime() >= preloadDeadline) {
+                    Logger.w("BackgroundReindexer", "Out of time, background re-index stopped after "
+                            + covers + " covers");
+                    return;
+                }
+                preloader.preload(coverPath);
+                covers++;
+            }
+        }
+
+        getPreferences().edit()
+                .putLong(Constants.PREF_LAST_BACKGROUND_REINDEX, System.currentTimeMillis())
+                .apply();
+        Logger.i("BackgroundReindexer", "Background re-index of " + validated.size() + " roots and "
+                + covers + " covers finished in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    /**
+     * Refreshes the index of one library root and waits for it.
+     *
+     * @param deadline when to stop waiting, in elapsedRealtime() time
+     * @return the validated index, or null if validation failed, the root has no index or
+     *         the deadline passed
+     */
+    private LibraryIndex validate(File root, long deadline) throws InterruptedException {
+        AtomicReference<LibraryIndex> validated = new AtomicReference<>();
+        Semaphore finished = new Semaphore(0);
+        musicRepository.refreshLibraryIndex(root, new MusicRepository.RepositoryCallback<LibraryIndex>() {
+            @Override
+            public void onSuccess(LibraryIndex result) {
+                validated.set(result);
+                finished.release();
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Logger.w("BackgroundReindexer", "Library index validation failed: " + root, error);
+                finished.release();
+            }
+        });
+        long timeout = Math.max(0, deadline - SystemClock.elapsedRealtime());
+        if (!finished.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            Logger.w("BackgroundReindexer", "Timed out validating the library index: " + root);
+            return null;
+        }
+        return validated.get();
+    }
+
+    private boolean isIdle() {
+        if (foreground) {
+            return false;
+        }
+        AudioManager audioManager = (AudioManager) application.getSystemService(Context.AUDIO_SERVICE);
+        if (audioManager != null && audioManager.isMusicActive()) {
+            return false;
+        }
+        return isCharging();
+    }
+
+    private boolean isCharging() {
+        // Sticky broadcast, read without registering a receiver
+        Intent batteryStatus = application.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return batteryStatus != null && batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    private SharedPreferences getPreferences() {
+        return application.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        startedActivities++;
+        foreground = true;
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        startedActivities = Math.max(0, startedActivities - 1);
+        if (startedActivities == 0) {
+            foreground = false;
+            runIfIdle("app in background");
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+    }
+}
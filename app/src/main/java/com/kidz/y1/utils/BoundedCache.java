@@ -0,0 +1,107 @@
+package com.kidz.y1.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map bounded by the estimated byte size of its entries.
+ *
+ * Entries are weighed by a Weigher when they are put; once the total exceeds the maximum
+ * size, entries are evicted in SegmentedLru order, so entries hit more than once outlive
+ * entries that were only used once. Hits, misses and evictions are counted (see getStats()).
+ *
+ * Threading:
+ * - All methods are synchronized; instances can be shared between threads
+ *
+ * Compatible with API 17+.
+ */
+public class BoundedCache<K, V> {
+    private final Map<K, Node<K, V>> map = new HashMap<>();
+    private final SegmentedLru<Node<K, V>> lru;
+    private final Weigher<K, V> weigher;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Estimates the heap retained by a cache entry.
+     */
+    public interface Weigher<K, V> {
+        /**
+         * @return the estimated size of the entry, in bytes
+         */
+        long weigh(K key, V value);
+    }
+
+    /**
+     * @param maxSize the estimated size above which entries are evicted, in bytes
+     * @param weigher estimates the size of each entry
+     */
+    public BoundedCache(long maxSize, Weigher<K, V> weigher) {
+        this.lru = new SegmentedLru<>(maxSize);
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        lru.access(node);
+        return node.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            lru.remove(node);
+        } else {
+            node = new Node<>(key);
+            map.put(key, node);
+        }
+        node.value = value;
+        lru.add(node, weigher.weigh(key, value));
+        Node<K, V> victim;
+        while ((victim = lru.evict()) != null) {
+            map.remove(victim.key);
+        }
+    }
+
+    public synchronized V remove(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        lru.remove(node);
+        return node.value;
+    }
+
+    /**
+     * @return a copy of the current keys, e.g. to remove a selection of them
+     */
+    public synchronized List<K> keys() {
+        return new ArrayList<>(map.keySet());
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        lru.clear();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(map.size(), lru.getWeight(), lru.getMaxWeight(),
+                hitCount, missCount, lru.getEvictionCount());
+    }
+
+    private static class Node<K, V> extends SegmentedLru.Entry {
+        final K key;
+        V value;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+}
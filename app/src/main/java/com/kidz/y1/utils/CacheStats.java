@@ -0,0 +1,77 @@
+package com.kidz.y1.utils;
+
+/**
+ * Point-in-time statistics of a bounded cache.
+ *
+ * Sizes are estimates in bytes of the heap retained by the cached keys and values.
+ *
+ * Compatible with API 17+.
+ */
+public class CacheStats {
+    private final int entryCount;
+    private final long size;
+    private final long maxSize;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    public CacheStats(int entryCount, long size, long maxSize, long hitCount, long missCount,
+            long evictionCount) {
+        this.entryCount = entryCount;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return the estimated size of the cached entries, in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the size above which entries are evicted, in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the fraction of lookups that were hits, or 0 if there were none
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "entries=" + entryCount +
+                ", size=" + size +
+                ", maxSize=" + maxSize +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                ", evictions=" + evictionCount +
+                '}';
+    }
+}
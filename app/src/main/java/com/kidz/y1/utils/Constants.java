@@ -18,16 +18,54 @@ public class Constants {
     public static final long PROGRESS_UPDATE_INTERVAL_MS = 100;
     public static final int SCROLL_ANIMATION_DURATION_MS = 400;
     public static final int SEEK_STEP_SECONDS = 30;
+    public static final long TYPE_AHEAD_TIMEOUT_MS = 1000;
+    public static final long WATCH_DEBOUNCE_MS = 1000;
+    public static final long WATCH_MAX_DELAY_MS = 10000;
+    public static final long BACKGROUND_REINDEX_INTERVAL_MS = 3 * 60 * 60 * 1000L;
+    public static final long BACKGROUND_REINDEX_MIN_GAP_MS = 12 * 60 * 60 * 1000L;
+    public static final long BACKGROUND_REINDEX_TIMEOUT_MS = 30 * 60 * 1000L;
+    // Phases of a pass; together they end before the pass's wake lock times out
+    public static final long BACKGROUND_REINDEX_VALIDATE_TIMEOUT_MS = 20 * 60 * 1000L;
+    public static final long BACKGROUND_REINDEX_PRELOAD_TIMEOUT_MS = 8 * 60 * 1000L;
 
     // Directory and File Constants
     public static final String KIDZ_DIRECTORY_NAME = "Kidz";
     public static final String ID3_PREFIX = "id3:";
-    public static final String MP3_EXTENSION = ".mp3";
     public static final String HIDDEN_FILE_PREFIX = "._";
+    public static final String LIBRARY_INDEX_FILE_NAME = "library.idx";
+    public static final int MAX_WATCHED_DIRECTORIES = 128;
+    public static final int MAX_SCAN_THREADS = 4;
+    public static final long SCAN_THREAD_KEEP_ALIVE_MS = 30000;
+    // Cache Sizes (estimated heap bytes)
+    public static final long SCAN_CACHE_MAX_BYTES = 2 * 1024 * 1024L;
+    public static final long IMAGE_PATH_CACHE_MAX_BYTES = 256 * 1024L;
+    public static final long PLAYLIST_CACHE_MAX_BYTES = 512 * 1024L;
+    public static final long NAME_INDEX_CACHE_MAX_BYTES = 256 * 1024L;
+    public static final long SNIFF_CACHE_MAX_BYTES = 128 * 1024L;
+    public static final float CACHE_PROTECTED_RATIO = 0.8f;
 
     // Image Extensions
     public static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg", ".PNG", ".JPG", ".JPEG"};
 
+    // Extensions of files that are neither tracks nor images, skipped without a stat (lowercase)
+    public static final String[] IGNORED_FILE_EXTENSIONS = {
+            ".txt", ".nfo", ".ini", ".db", ".log", ".pdf", ".cue", ".lrc",
+            ".wma", ".gif", ".bmp", ".zip", ".ds_store"};
+
+    // Playlist Extensions (lowercase); playlists in a profile directory are albums
+    public static final String[] PLAYLIST_EXTENSIONS = {".m3u", ".m3u8", ".pls"};
+    public static final int MAX_PLAYLIST_ENTRIES = 4096;
+
+    // Scan Exclusions (see ExclusionRules); patterns are matched ignoring case
+    public static final String NOMEDIA_FILE_NAME = ".nomedia";
+    public static final String EXCLUDE_FILE_NAME = ".kidzignore";
+    public static final String[] DEFAULT_EXCLUDE_PATTERNS = {
+            HIDDEN_FILE_PREFIX + "*", NOMEDIA_FILE_NAME, EXCLUDE_FILE_NAME,
+            ".Trashes", ".Trash-*", ".Spotlight-V100", ".fseventsd", ".TemporaryItems",
+            ".DocumentRevisions-V100", "System Volume Information", "$RECYCLE.BIN", "RECYCLER",
+            "LOST.DIR", "FOUND.???", "*.bak", "*~"};
+    public static final int MAX_EXCLUDE_PATTERNS = 256;
+
     // Battery Level Thresholds
     public static final int BATTERY_CRITICAL_THRESHOLD = 5;
     public static final int BATTERY_LOW_THRESHOLD = 33;
@@ -56,6 +94,8 @@ public class Constants {
     public static final float COVER_ROTATION_MULTIPLIER = 45f;
     public static final int COVER_PRELOAD_RANGE = 2;
     public static final int COVER_VISIBILITY_THRESHOLD = 1;
+    public static final int TRACK_PAGE_SIZE = 64;
+    public static final int TRACK_PAGE_MARGIN = 16;
 
     // UI Constants
     public static final float CORNER_RADIUS_DP = 16f;
@@ -64,6 +104,12 @@ public class Constants {
 
     // Media Player Constants
     public static final String WAKE_LOCK_TAG = "KidzY1:MusicPlayer";
+    public static final String REINDEX_WAKE_LOCK_TAG = "KidzY1:BackgroundReindex";
+
+    // Background Re-indexing
+    public static final String ACTION_BACKGROUND_REINDEX = "com.kidz.y1.action.BACKGROUND_REINDEX";
+    public static final String PREFS_NAME = "kidz";
+    public static final String PREF_LAST_BACKGROUND_REINDEX = "last_background_reindex";
     public static final int PROGRESS_BAR_MAX = 1000;
 
     private Constants() {
@@ -0,0 +1,90 @@
+package com.kidz.y1.utils;
+
+import android.content.Context;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.bitmap.RoundedCorners;
+import com.bumptech.glide.request.RequestOptions;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Loads cover images into Glide's caches ahead of display.
+ *
+ * Covers are requested at the size and with the transformation CoverFlowView uses, so
+ * the transformed bitmaps land in Glide's disk cache under the keys the cover flow looks
+ * up later.
+ *
+ * Threading:
+ * - preload() blocks until the image is cached; call it from background threads
+ *
+ * Compatible with API 17+.
+ */
+public class CoverPreloader {
+    private final Context context;
+    private final int coverSize;
+    private final RequestOptions options;
+
+    public CoverPreloader(Context context) {
+        this.context = context;
+        this.coverSize = calculateCoverSize(context);
+        int cornerRadius = (int) TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_DIP,
+                Constants.CORNER_RADIUS_DP,
+                context.getResources().getDisplayMetrics());
+        this.options = GlideOptionsCache.getBaseOptions(context, null, coverSize, coverSize)
+                .transform(new RoundedCorners(cornerRadius));
+    }
+
+    /**
+     * Loads one cover reference (an image path or an ID3 reference) into the caches.
+     * Blocking - must be called from a background thread.
+     *
+     * @param imagePath the cover reference
+     * @return true if the image was loaded, false if it is missing or failed to load
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public boolean preload(String imagePath) throws InterruptedException {
+        if (imagePath == null || imagePath.isEmpty()) {
+            return false;
+        }
+        Future<?> future;
+        if (imagePath.startsWith(Constants.ID3_PREFIX)) {
+            future = Glide.with(context)
+                    .load(imagePath)
+                    .apply(options)
+                    .submit(coverSize, coverSize);
+        } else {
+            File imageFile = new File(imagePath);
+            if (!imageFile.exists()) {
+                return false;
+            }
+            future = Glide.with(context)
+                    .load(imageFile)
+                    .apply(options)
+                    .submit(coverSize, coverSize);
+        }
+        try {
+            future.get();
+            return true;
+        } catch (ExecutionException e) {
+            Logger.w("CoverPreloader", "Error loading image: " + imagePath, e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Calculates the cover size used by the cover flow screens.
+     */
+    public static int calculateCoverSize(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int textSpace = (int) (Constants.TEXT_SPACE_DP * metrics.density);
+        int availableHeight = metrics.heightPixels - textSpace;
+        int maxWidth = (int) (metrics.widthPixels * Constants.COVER_MAX_WIDTH_RATIO);
+        return Math.min(maxWidth, availableHeight);
+    }
+}
@@ -0,0 +1,289 @@
+package com.kidz.y1.utils;
+
+import com.kidz.y1.models.DirectorySignature;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One listing of a directory, shared by everything that needs its entries.
+ *
+ * Reading the listing costs one stat and one directory read. Entries are classified
+ * into sub-directories, tracks and images lazily, on first access, by name:
+ * - Names excluded by the ExclusionRules of the directory's library root are skipped first,
+ *   so excluded subtrees are never stat'ed or listed; a directory holding a .nomedia marker
+ *   lists no entries at all (see ScanExclusions)
+ * - Names ending in an AudioFormat extension are tracks and names ending in an image
+ *   extension are images, without a stat (a directory named like a track is listed as a track)
+ * - Names ending in one of Constants.PLAYLIST_EXTENSIONS are playlists, without a stat
+ * - Names ending in one of Constants.IGNORED_FILE_EXTENSIONS are skipped without a stat
+ * - Only the remaining, ambiguous names are stat'ed to find the sub-directories; ambiguous
+ *   files are sniffed with AudioFormat.sniff() from the same stat, so mis-named audio files
+ *   are still tracks
+ * A typical album folder of tracks and covers is therefore classified without any stat.
+ * Calls are counted in SyscallCounter.
+ * Listings can also be created already classified, e.g. from MediaStore rows; excluded
+ * entries are dropped from them as well.
+ *
+ * Threading:
+ * - Performs file I/O and should be used from background threads
+ * - Instances may be shared between threads; classification runs once, under the instance lock
+ *
+ * Compatible with API 17+.
+ */
+public class DirectoryContents {
+    private static final int OBJECT_OVERHEAD_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int AVERAGE_NAME_LENGTH = 24;
+
+    private final File directory;
+    private final String[] names;
+    private final DirectorySignature signature;
+    private List<File> directories;
+    private List<File> tracks;
+    private List<File> playlists;
+    private Map<String, File> images;
+
+    private DirectoryContents(File directory, String[] names, long lastModified) {
+        this.directory = directory;
+        this.names = names;
+        this.signature = new DirectorySignature(lastModified, names.length);
+    }
+
+    private DirectoryContents(File directory, DirectorySignature signature) {
+        this.directory = directory;
+        this.names = null;
+        this.signature = signature;
+    }
+
+    /**
+     * Reads the entry names of a directory.
+     *
+     * @param directory the directory to list
+     * @return the listing, or null if the directory does not exist or cannot be read
+     */
+    public static DirectoryContents read(File directory) {
+        if (directory == null) {
+            return null;
+        }
+        StorageBackend storage = Storage.get();
+        long lastModified = storage.lastModified(directory);
+        SyscallCounter.countStat();
+        String[] names = storage.list(directory);
+        SyscallCounter.countDirectoryRead();
+        if (names == null) {
+            return null;
+        }
+        return new DirectoryContents(directory, names, lastModified);
+    }
+
+    /**
+     * Creates a listing whose entries are already classified, without touching the filesystem.
+     *
+     * @param directory the listed directory
+     * @param signature the signature to record for the directory
+     * @param directories the sub-directories, in any order
+     * @param tracks the tracks, in any order
+     * @param images the image files
+     * @return the listing
+     */
+    public static DirectoryContents of(File directory, DirectorySignature signature,
+            List<File> directories, List<File> tracks, List<File> images) {
+        return of(directory, signature, directories, tracks, images, Collections.<File>emptyList());
+    }
+
+    /**
+     * Creates a listing whose entries are already classified, without touching the filesystem.
+     *
+     * @param directory the listed directory
+     * @param signature the signature to record for the directory
+     * @param directories the sub-directories, in any order
+     * @param tracks the tracks, in any order
+     * @param images the image files
+     * @param playlists the playlist files, in any order
+     * @return the listing
+     */
+    public static DirectoryContents of(File directory, DirectorySignature signature,
+            List<File> directories, List<File> tracks, List<File> images, List<File> playlists) {
+        DirectoryContents contents = new DirectoryContents(directory, signature);
+        ExclusionRules rules = ScanExclusions.getRules(directory);
+        String relativePath = rules.getRelativePath(directory);
+        List<File> dirs = getIncluded(directories, rules, relativePath);
+        List<File> trackFiles = getIncluded(tracks, rules, relativePath);
+        List<File> playlistFiles = getIncluded(playlists, rules, relativePath);
+        MusicFileScanner.sortByName(dirs);
+        MusicFileScanner.sortByName(trackFiles);
+        MusicFileScanner.sortByName(playlistFiles);
+        Map<String, File> imageFiles = new HashMap<>();
+        for (File image : getIncluded(images, rules, relativePath)) {
+            imageFiles.put(image.getName().toLowerCase(), image);
+        }
+        contents.directories = Collections.unmodifiableList(dirs);
+        contents.tracks = Collections.unmodifiableList(trackFiles);
+        contents.playlists = Collections.unmodifiableList(playlistFiles);
+        contents.images = imageFiles;
+        return contents;
+    }
+
+    private static List<File> getIncluded(List<File> files, ExclusionRules rules, String relativePath) {
+        List<File> included = new ArrayList<>(files.size());
+        for (File file : files) {
+            if (!rules.isExcluded(relativePath, file.getName())) {
+                included.add(file);
+            }
+        }
+        return included;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public DirectorySignature getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return the visible sub-directories, sorted by name
+     */
+    public synchronized List<File> getDirectories() {
+        classify();
+        return directories;
+    }
+
+    /**
+     * @return the visible tracks, sorted by name
+     */
+    public synchronized List<File> getTracks() {
+        classify();
+        return tracks;
+    }
+
+    /**
+     * @return the playlist files, sorted by name
+     */
+    public synchronized List<File> getPlaylists() {
+        classify();
+        return playlists;
+    }
+
+    /**
+     * Finds the image named after an entry, trying Constants.IMAGE_EXTENSIONS in order.
+     * Matching ignores case, like the FAT filesystems used on the device.
+     *
+     * @param baseName the entry name without extension
+     * @return the image file, or null if there is none
+     */
+    public synchronized File findImage(String baseName) {
+        classify();
+        if (images.isEmpty()) {
+            return null;
+        }
+        String key = baseName.toLowerCase();
+        for (String ext : Constants.IMAGE_EXTENSIONS) {
+            File image = images.get(key + ext.toLowerCase());
+            if (image != null) {
+                return image;
+            }
+        }
+        return null;
+    }
+
+    private void classify() {
+        if (directories != null) {
+            return;
+        }
+        List<File> dirs = new ArrayList<>();
+        List<File> trackFiles = new ArrayList<>();
+        List<File> playlistFiles = new ArrayList<>();
+        Map<String, File> imageFiles = new HashMap<>();
+        ExclusionRules rules = ScanExclusions.getRules(directory);
+        String relativePath = rules.getRelativePath(directory);
+        // Library roots ignore .nomedia, which may be there to hide the library from other players
+        boolean hidden = !"".equals(relativePath) && ScanExclusions.hasNoMediaMarker(names);
+        for (String name : hidden ? new String[0] : names) {
+            if (name == null || rules.isExcluded(relativePath, name)) {
+                continue;
+            }
+            String lowerName = name.toLowerCase();
+            if (AudioFormat.fromName(lowerName) != null) {
+                trackFiles.add(new File(directory, name));
+            } else if (isImageName(lowerName)) {
+                imageFiles.put(lowerName, new File(directory, name));
+            } else if (hasExtension(lowerName, Constants.PLAYLIST_EXTENSIONS)) {
+                playlistFiles.add(new File(directory, name));
+            } else if (!hasExtension(lowerName, Constants.IGNORED_FILE_EXTENSIONS)) {
+                File file = new File(directory, name);
+                FileAttributes attributes = Storage.get().stat(file);
+                SyscallCounter.countStat();
+                if (attributes.isDirectory()) {
+                    dirs.add(file);
+                } else if (AudioFormat.sniff(file, attributes) != null) {
+                    trackFiles.add(file);
+                }
+            }
+        }
+        MusicFileScanner.sortByName(dirs);
+        MusicFileScanner.sortByName(trackFiles);
+        MusicFileScanner.sortByName(playlistFiles);
+        directories = Collections.unmodifiableList(dirs);
+        tracks = Collections.unmodifiableList(trackFiles);
+        playlists = Collections.unmodifiableList(playlistFiles);
+        images = imageFiles;
+    }
+
+    /**
+     * Estimates the heap footprint of the listing, for caches bounded by size.
+     * Counts the entry names and the File objects holding the entry paths; an unclassified
+     * listing is counted as if every name became a File, so its weight does not grow later.
+     *
+     * @return the estimated size in bytes
+     */
+    public synchronized long estimateSize() {
+        long size = OBJECT_OVERHEAD_BYTES + estimateStringSize(directory.getPath().length());
+        int pathLength = directory.getPath().length() + 1;
+        if (names != null) {
+            for (String name : names) {
+                if (name != null) {
+                    size += REFERENCE_BYTES + estimateStringSize(name.length());
+                }
+            }
+        }
+        if (directories == null) {
+            size += estimateFilesSize(names.length, pathLength);
+        } else {
+            size += estimateFilesSize(directories.size() + tracks.size() + playlists.size() + images.size(),
+                    pathLength);
+            size += images.size() * OBJECT_OVERHEAD_BYTES;
+        }
+        return size;
+    }
+
+    private static long estimateFilesSize(int count, int pathLength) {
+        // A File and its path; the name part of the path is assumed to be a short entry name
+        return count * (REFERENCE_BYTES + OBJECT_OVERHEAD_BYTES
+                + estimateStringSize(pathLength + AVERAGE_NAME_LENGTH));
+    }
+
+    private static long estimateStringSize(int length) {
+        // String object plus its UTF-16 char array
+        return 2 * OBJECT_OVERHEAD_BYTES + 2L * length;
+    }
+
+    private static boolean isImageName(String lowerName) {
+        return hasExtension(lowerName, Constants.IMAGE_EXTENSIONS);
+    }
+
+    private static boolean hasExtension(String lowerName, String[] extensions) {
+        for (String ext : extensions) {
+            if (lowerName.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,24 @@
+package com.kidz.y1.utils;
+
+import java.io.File;
+
+/**
+ * Provides directory listings to LibraryWalker.
+ *
+ * FILESYSTEM reads directories from disk; other sources (see MediaStoreScanBackend) may
+ * answer from an existing index and read from disk only what they do not know.
+ *
+ * Threading:
+ * - read() is called concurrently from LibraryWalker's scan pool and must be thread-safe
+ *
+ * Compatible with API 17+.
+ */
+public interface DirectorySource {
+    DirectorySource FILESYSTEM = DirectoryContents::read;
+
+    /**
+     * @param directory the directory to list
+     * @return the listing, or null if the directory does not exist or cannot be read
+     */
+    DirectoryContents read(File directory);
+}
@@ -0,0 +1,240 @@
+package com.kidz.y1.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Patterns of library entries that are never listed: an excluded directory is pruned with
+ * everything below it, before it is stat'ed or listed.
+ *
+ * Patterns:
+ * - Constants.DEFAULT_EXCLUDE_PATTERNS always apply: "._" files, the trash, index and
+ *   recovery folders that macOS, Windows and Android leave on a card, and backup files
+ * - A library root may add patterns in its Constants.EXCLUDE_FILE_NAME file, one per line;
+ *   blank lines and lines starting with "#" are ignored
+ * - "*" matches any characters and "?" one character of a name; matching ignores case,
+ *   like the FAT filesystems used on the device
+ * - A pattern without "/" matches entry names at any depth, e.g. "Backup*"
+ * - A pattern with "/" matches the entry's path relative to the library root, e.g.
+ *   "Bob/Old Stories" or "/Bob"; a "**" segment matches any number of directories, so
+ *   "Bob/**" prunes the profile Bob and everything below it
+ * - A trailing "/" is ignored: entries are matched before it is known whether they are directories
+ *
+ * Threading:
+ * - Immutable; safe to share between threads
+ *
+ * Compatible with API 17+.
+ */
+public final class ExclusionRules {
+    /**
+     * The default patterns, for directories outside every library root.
+     */
+    public static final ExclusionRules DEFAULT = new ExclusionRules(null, Arrays.asList(Constants.DEFAULT_EXCLUDE_PATTERNS));
+
+    private static final String ANY_DIRECTORIES = "**";
+
+    private final String rootPath;
+    private final Set<String> names = new HashSet<>();
+    private final List<String> nameGlobs = new ArrayList<>();
+    private final List<String[]> pathGlobs = new ArrayList<>();
+    private final int fingerprint;
+
+    private ExclusionRules(String rootPath, List<String> patterns) {
+        this.rootPath = rootPath;
+        List<String> normalized = new ArrayList<>();
+        for (String line : patterns) {
+            String pattern = normalize(line);
+            if (pattern == null) {
+                continue;
+            }
+            normalized.add(pattern);
+            if (pattern.indexOf('/') >= 0) {
+                pathGlobs.add((pattern.startsWith("/") ? pattern.substring(1) : pattern).split("/"));
+            } else if (pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0) {
+                nameGlobs.add(pattern);
+            } else {
+                names.add(pattern);
+            }
+        }
+        this.fingerprint = normalized.hashCode();
+    }
+
+    /**
+     * Creates the rules of a library root: the default patterns and the patterns of its exclude file.
+     *
+     * @param root the Kidz directory of the root
+     * @param lines the lines of the root's exclude file; empty if it has none
+     * @return the rules
+     */
+    public static ExclusionRules forRoot(File root, List<String> lines) {
+        List<String> patterns = new ArrayList<>(Arrays.asList(Constants.DEFAULT_EXCLUDE_PATTERNS));
+        int count = 0;
+        for (String line : lines) {
+            if (normalize(line) != null && count++ < Constants.MAX_EXCLUDE_PATTERNS) {
+                patterns.add(line);
+            }
+        }
+        return new ExclusionRules(root.getAbsolutePath(), patterns);
+    }
+
+    /**
+     * @return the lowercase pattern of a line, starting with "/" if it only matches entries of
+     *         the root, or null for blank lines and comments
+     */
+    private static String normalize(String line) {
+        String pattern = line.trim().replace('\\', '/');
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return null;
+        }
+        boolean anchored = pattern.startsWith("/");
+        while (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        while (pattern.endsWith("/")) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        if (pattern.isEmpty()) {
+            return null;
+        }
+        pattern = pattern.toLowerCase();
+        return anchored ? "/" + pattern : pattern;
+    }
+
+    /**
+     * @return identifies the patterns; rules with the same patterns have the same fingerprint
+     */
+    public int getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param directory a directory
+     * @return the path of the directory relative to the library root of these rules ("" for
+     *         the root itself), or null if it is outside the root
+     */
+    public String getRelativePath(File directory) {
+        if (rootPath == null) {
+            return null;
+        }
+        String path = directory.getAbsolutePath();
+        if (path.equals(rootPath)) {
+            return "";
+        }
+        if (path.startsWith(rootPath) && path.charAt(rootPath.length()) == File.separatorChar) {
+            return path.substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+        }
+        return null;
+    }
+
+    /**
+     * @param relativeParent the relative path of the entry's directory (see getRelativePath()),
+     *                       or null if it is outside the root, in which case only name patterns apply
+     * @param name the entry name
+     * @return true if the entry is excluded
+     */
+    public boolean isExcluded(String relativeParent, String name) {
+        String lowerName = name.toLowerCase();
+        if (names.contains(lowerName)) {
+            return true;
+        }
+        for (String glob : nameGlobs) {
+            if (matchesName(glob, lowerName)) {
+                return true;
+            }
+        }
+        if (pathGlobs.isEmpty() || relativeParent == null) {
+            return false;
+        }
+        String relativePath = relativeParent.isEmpty() ? lowerName : relativeParent.toLowerCase() + "/" + lowerName;
+        String[] segments = relativePath.split("/");
+        for (String[] glob : pathGlobs) {
+            if (matchesPath(glob, 0, segments, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks every path segment of a file below the root, e.g. for files known without
+     * listing their directories.
+     *
+     * @param file a file or directory
+     * @return true if the file or one of its directories below the root is excluded
+     */
+    public boolean isExcludedPath(File file) {
+        File parent = file.getParentFile();
+        String relativeParent = parent != null ? getRelativePath(parent) : null;
+        if (relativeParent == null) {
+            return isExcluded(null, file.getName());
+        }
+        String relative = "";
+        for (String segment : (relativeParent.isEmpty() ? file.getName()
+                : relativeParent + "/" + file.getName()).split("/")) {
+            if (isExcluded(relative, segment)) {
+                return true;
+            }
+            relative = relative.isEmpty() ? segment : relative + "/" + segment;
+        }
+        return false;
+    }
+
+    /**
+     * Matches a name against a glob of "*" and "?" wildcards, in linear time for typical
+     * patterns (backtracking to the last "*" only).
+     */
+    private static boolean matchesName(String glob, String name) {
+        int g = 0;
+        int n = 0;
+        int star = -1;
+        int mark = 0;
+        while (n < name.length()) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == name.charAt(n))) {
+                g++;
+                n++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                star = g++;
+                mark = n;
+            } else if (star >= 0) {
+                g = star + 1;
+                n = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+
+    private static boolean matchesPath(String[] glob, int g, String[] segments, int s) {
+        if (g == glob.length) {
+            return s == segments.length;
+        }
+        if (glob[g].equals(ANY_DIRECTORIES)) {
+            for (int i = s; i <= segments.length; i++) {
+                if (matchesPath(glob, g + 1, segments, i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return s < segments.length && matchesName(glob[g], segments[s])
+                && matchesPath(glob, g + 1, segments, s + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "ExclusionRules{" +
+                "rootPath='" + rootPath + '\'' +
+                ", names=" + names.size() +
+                ", nameGlobs=" + nameGlobs.size() +
+                ", pathGlobs=" + pathGlobs.size() +
+                '}';
+    }
+}
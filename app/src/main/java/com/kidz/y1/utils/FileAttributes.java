@@ -0,0 +1,64 @@
+package com.kidz.y1.utils;
+
+/**
+ * The attributes of a file from a single stat (see StorageBackend.stat()).
+ *
+ * Like java.io.File, a missing or unreadable file is MISSING: neither a file nor a
+ * directory, with a modification time and length of 0.
+ *
+ * Threading:
+ * - Immutable; safe to share between threads
+ *
+ * Compatible with API 17+.
+ */
+public final class FileAttributes {
+    public static final FileAttributes MISSING = new FileAttributes(false, false, 0L, 0L);
+
+    private final boolean directory;
+    private final boolean file;
+    private final long lastModified;
+    private final long length;
+
+    public FileAttributes(boolean directory, boolean file, long lastModified, long length) {
+        this.directory = directory;
+        this.file = file;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public boolean isFile() {
+        return file;
+    }
+
+    public boolean exists() {
+        return directory || file;
+    }
+
+    /**
+     * @return the modification time in milliseconds, or 0 if the file does not exist
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the length in bytes, or 0 if the file does not exist or is a directory
+     */
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "FileAttributes{" +
+                "directory=" + directory +
+                ", file=" + file +
+                ", lastModified=" + lastModified +
+                ", length=" + length +
+                '}';
+    }
+}
@@ -0,0 +1,149 @@
+package com.kidz.y1.utils;
+
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Environment;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StorageBackend of the device's filesystem, through java.io.File.
+ *
+ * Storage volumes:
+ * - The primary volume and its music directory come from android.os.Environment
+ * - Secondary volumes are listed in the SECONDARY_STORAGE environment variable; removable
+ *   cards are not exposed through a public API before API 19
+ *
+ * Embedded cover art is detected with MediaMetadataRetriever, which is blocking.
+ * stat() uses a single Os.stat() call on API 21+, and one call per attribute before; its
+ * modification times have whole-second precision.
+ *
+ * Threading:
+ * - Stateless apart from the cached volume directories; safe to call from any thread
+ *
+ * Compatible with API 17+.
+ */
+public class FileStorageBackend implements StorageBackend {
+    private volatile File musicDirectory;
+
+    @Override
+    public File getExternalStorageDirectory() {
+        return Environment.getExternalStorageDirectory();
+    }
+
+    @Override
+    public List<File> getSecondaryStorageDirectories() {
+        String secondaryStorage = System.getenv("SECONDARY_STORAGE");
+        if (secondaryStorage == null) {
+            return Collections.emptyList();
+        }
+        List<File> directories = new ArrayList<>();
+        for (String volume : secondaryStorage.split(File.pathSeparator)) {
+            if (!volume.isEmpty()) {
+                directories.add(new File(volume));
+            }
+        }
+        return directories;
+    }
+
+    @Override
+    public File getMusicDirectory() {
+        File directory = musicDirectory;
+        if (directory == null) {
+            directory = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_MUSIC);
+            musicDirectory = directory;
+        }
+        return directory;
+    }
+
+    @Override
+    public String[] list(File directory) {
+        return directory.list();
+    }
+
+    @Override
+    public boolean isDirectory(File file) {
+        return file.isDirectory();
+    }
+
+    @Override
+    public boolean isFile(File file) {
+        return file.isFile();
+    }
+
+    @Override
+    public boolean exists(File file) {
+        return file.exists();
+    }
+
+    @Override
+    public long lastModified(File file) {
+        return file.lastModified();
+    }
+
+    @Override
+    public long length(File file) {
+        return file.length();
+    }
+
+    @Override
+    public FileAttributes stat(File file) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            if (file.isDirectory()) {
+                return new FileAttributes(true, false, file.lastModified(), 0L);
+            }
+            long lastModified = file.lastModified();
+            return lastModified != 0L
+                    ? new FileAttributes(false, true, lastModified, file.length()) : FileAttributes.MISSING;
+        }
+        try {
+            StructStat stat = Os.stat(file.getAbsolutePath());
+            boolean directory = OsConstants.S_ISDIR(stat.st_mode);
+            return new FileAttributes(directory, OsConstants.S_ISREG(stat.st_mode),
+                    stat.st_mtime * 1000L, directory ? 0L : stat.st_size);
+        } catch (ErrnoException e) {
+            return FileAttributes.MISSING;
+        }
+    }
+
+    @Override
+    public InputStream openInputStream(File file) throws IOException {
+        return new FileInputStream(file);
+    }
+
+    @Override
+    public boolean hasEmbeddedPicture(File track) {
+        MediaMetadataRetriever retriever = null;
+        try {
+            retriever = new MediaMetadataRetriever();
+            retriever.setDataSource(track.getAbsolutePath());
+            byte[] albumArt = retriever.getEmbeddedPicture();
+            return albumArt != null && albumArt.length > 0;
+        } catch (IllegalArgumentException e) {
+            Logger.w("FileStorageBackend", "Invalid audio file: " + track.getAbsolutePath(), e);
+        } catch (RuntimeException e) {
+            Logger.w("FileStorageBackend", "Error reading track metadata: " + track.getAbsolutePath(), e);
+        } catch (Exception e) {
+            Logger.w("FileStorageBackend", "Unexpected error extracting ID3 art: " + track.getAbsolutePath(), e);
+        } finally {
+            if (retriever != null) {
+                try {
+                    retriever.release();
+                } catch (IOException e) {
+                    Logger.w("FileStorageBackend", "Error releasing MediaMetadataRetriever", e);
+                }
+            }
+        }
+        return false;
+    }
+}
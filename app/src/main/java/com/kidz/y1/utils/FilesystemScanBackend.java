@@ -0,0 +1,17 @@
+package com.kidz.y1.utils;
+
+import com.kidz.y1.models.LibraryIndex;
+
+import java.io.File;
+
+/**
+ * Scans the library by walking the Kidz directory on disk.
+ *
+ * Compatible with API 17+.
+ */
+public class FilesystemScanBackend implements ScanBackend {
+    @Override
+    public LibraryIndex scan(File root, LibraryIndex previous) {
+        return LibraryWalker.walk(root, previous, DirectorySource.FILESYSTEM);
+    }
+}
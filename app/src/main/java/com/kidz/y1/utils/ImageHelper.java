@@ -2,13 +2,10 @@ package com.kidz.y1.utils;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.media.MediaMetadataRetriever;
-import android.os.Environment;
 
 import com.kidz.y1.utils.Logger;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -21,15 +18,12 @@ import java.util.List;
  * 
  * Threading:
  * - All methods perform file I/O and should be called from background threads
- * - MediaMetadataRetriever operations are blocking and must run off main thread
+ * - Embedded art lookups (StorageBackend.hasEmbeddedPicture()) are blocking and must run off main thread
  * - This class is typically called from ImageRepository which uses ExecutorService
  * 
  * Compatible with API 17+.
  */
 public class ImageHelper {
-    private static File cachedParentFolder;
-    private static final Object parentFolderLock = new Object();
-
     /**
      * Finds the image path for a given directory or file.
      * 
@@ -42,48 +36,31 @@ public class ImageHelper {
             return null;
         }
         
-        String folderName = directory.getName();
+        // A playlist album's image is named after the playlist without its extension
+        boolean playlist = PlaylistParser.isPlaylist(directory);
+        String folderName = playlist ? PlaylistParser.getBaseName(directory.getName()) : directory.getName();
         File parentFolder = directory.getParentFile();
         
+        StorageBackend storage = Storage.get();
         if (parentFolder == null) {
-            synchronized (parentFolderLock) {
-                if (cachedParentFolder == null) {
-                    cachedParentFolder = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_MUSIC);
-                }
-                parentFolder = cachedParentFolder;
-            }
+            parentFolder = storage.getMusicDirectory();
         }
 
         for (String ext : Constants.IMAGE_EXTENSIONS) {
             File imageFile = new File(parentFolder, folderName + ext);
-            if (imageFile.exists() && imageFile.isFile()) {
+            if (storage.isFile(imageFile)) {
                 return imageFile.getAbsolutePath();
             }
         }
 
-        if (type == ImageType.ALBUM) {
-            List<File> tracks = MusicFileScanner.scanTracks(directory);
-            if (tracks != null && !tracks.isEmpty()) {
-                for (File track : tracks) {
-                    String trackName = track.getName();
-                    if (trackName.toLowerCase().endsWith(Constants.MP3_EXTENSION)) {
-                        trackName = trackName.substring(0, trackName.length() - 4);
-                    }
-                    for (String ext : Constants.IMAGE_EXTENSIONS) {
-                        File imageFile = new File(directory, trackName + ext);
-                        if (imageFile.exists() && imageFile.isFile()) {
-                            return imageFile.getAbsolutePath();
-                        }
-                    }
-                }
-                String id3Path = extractId3ArtPath(tracks.get(0));
-                if (id3Path != null) {
-                    return id3Path;
-                }
+        if (type == ImageType.ALBUM && !playlist) {
+            String albumImagePath = findImageInAlbum(DirectoryContents.read(directory));
+            if (albumImagePath != null) {
+                return albumImagePath;
             }
         }
 
-        if (type == ImageType.TRACK && directory.isFile()) {
+        if (type == ImageType.TRACK && storage.isFile(directory)) {
             String id3Path = extractId3ArtPath(directory);
             if (id3Path != null) {
                 return id3Path;
@@ -94,52 +71,77 @@ public class ImageHelper {
     }
 
     /**
-     * Extract ID3 album art path from MP3 file.
-     * Optimized to check file existence before creating MediaMetadataRetriever.
+     * Finds an album image from directory listings that were already read, without probing
+     * the filesystem: the image named after the album in its profile, then an image named
+     * after one of its tracks, then the ID3 art of its first track.
      * 
-     * Threading: This method uses MediaMetadataRetriever which is a blocking operation.
-     * Must be called from a background thread. Typically called from ImageRepository.
+     * @param profileContents the listing of the album's profile directory, or null if it cannot be read
+     * @param albumContents the listing of the album directory
+     * @return the absolute path to the image file or the ID3 art path, or null if not found
+     */
+    public static String findAlbumImagePath(DirectoryContents profileContents, DirectoryContents albumContents) {
+        File image = profileContents != null
+                ? profileContents.findImage(albumContents.getDirectory().getName()) : null;
+        if (image != null) {
+            return image.getAbsolutePath();
+        }
+        return findImageInAlbum(albumContents);
+    }
+
+    /**
+     * Finds a track image from the listing of its album: the image named after the track,
+     * then the track's ID3 art.
      * 
-     * @param mp3File the MP3 file to extract ID3 art from
-     * @return the ID3 art path string, or null if not found
+     * @param albumContents the listing of the track's album directory
+     * @param track the track file
+     * @return the absolute path to the image file or the ID3 art path, or null if not found
      */
-    private static String extractId3ArtPath(File mp3File) {
-        if (mp3File == null || !mp3File.exists() || !mp3File.isFile()) {
+    public static String findTrackImagePath(DirectoryContents albumContents, File track) {
+        File image = albumContents.findImage(MusicFileScanner.getTrackBaseName(track.getName()));
+        if (image != null) {
+            return image.getAbsolutePath();
+        }
+        return extractId3ArtPath(track);
+    }
+
+    private static String findImageInAlbum(DirectoryContents albumContents) {
+        if (albumContents == null) {
             return null;
         }
-        
-        String fileName = mp3File.getName().toLowerCase();
-        if (!fileName.endsWith(Constants.MP3_EXTENSION)) {
+        List<File> tracks = albumContents.getTracks();
+        if (tracks.isEmpty()) {
             return null;
         }
-        
-        MediaMetadataRetriever retriever = null;
-        try {
-            retriever = new MediaMetadataRetriever();
-            retriever.setDataSource(mp3File.getAbsolutePath());
-            byte[] albumArt = retriever.getEmbeddedPicture();
-            if (albumArt != null && albumArt.length > 0) {
-                StringBuilder sb = new StringBuilder(Constants.ID3_PREFIX.length() + mp3File.getAbsolutePath().length());
-                sb.append(Constants.ID3_PREFIX);
-                sb.append(mp3File.getAbsolutePath());
-                return sb.toString();
-            }
-        } catch (IllegalArgumentException e) {
-            Logger.w("ImageHelper", "Invalid MP3 file: " + mp3File.getAbsolutePath(), e);
-        } catch (RuntimeException e) {
-            Logger.w("ImageHelper", "Error reading MP3 metadata: " + mp3File.getAbsolutePath(), e);
-        } catch (Exception e) {
-            Logger.w("ImageHelper", "Unexpected error extracting ID3 art: " + mp3File.getAbsolutePath(), e);
-        } finally {
-            if (retriever != null) {
-                try {
-                    retriever.release();
-                } catch (IOException e) {
-                    Logger.w("ImageHelper", "Error releasing MediaMetadataRetriever", e);
-                }
+        for (File track : tracks) {
+            File image = albumContents.findImage(MusicFileScanner.getTrackBaseName(track.getName()));
+            if (image != null) {
+                return image.getAbsolutePath();
             }
         }
-        return null;
+        return extractId3ArtPath(tracks.get(0));
+    }
+
+    /**
+     * Extract embedded album art path from a track (ID3 tag, MP4 cover, FLAC/Vorbis picture).
+     * The "id3:" prefix of the returned path is kept for every format.
+     * Callers pass tracks taken from a listing or checked with isFile(), so the file is not
+     * stat'ed again; a track removed in the meantime has no art.
+     * 
+     * Threading: StorageBackend.hasEmbeddedPicture() is a blocking operation.
+     * Must be called from a background thread. Typically called from ImageRepository.
+     * 
+     * @param trackFile the track to extract embedded art from
+     * @return the ID3 art path string, or null if not found
+     */
+    private static String extractId3ArtPath(File trackFile) {
+        if (trackFile == null || !Storage.get().hasEmbeddedPicture(trackFile)) {
+            return null;
+        }
+        String path = trackFile.getAbsolutePath();
+        StringBuilder sb = new StringBuilder(Constants.ID3_PREFIX.length() + path.length());
+        sb.append(Constants.ID3_PREFIX);
+        sb.append(path);
+        return sb.toString();
     }
 
     public enum ImageType {
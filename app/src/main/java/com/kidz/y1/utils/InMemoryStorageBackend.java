@@ -0,0 +1,374 @@
+package com.kidz.y1.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * StorageBackend of a synthetic directory tree held in memory, for running the scanner
+ * off-device (e.g. against a million-entry library on a build machine) and for replaying
+ * slow storage. LibraryWalkerTest walks such trees in plain JVM unit tests.
+ *
+ * Tree:
+ * - Entries are keyed by absolute path; adding an entry creates its missing parent directories
+ * - Adding or removing an entry updates its directory's modification time, like a real
+ *   filesystem, so DirectorySignatures change; modification times never repeat
+ * - Files either hold their content, or only a length and read as zeros, which keeps huge
+ *   trees small (name-based detection does not read the files)
+ * - Embedded cover art is a flag of the file, set with setEmbeddedPicture()
+ *
+ * Latency:
+ * - setLatency() delays every call of an Operation, before the tree is accessed; calls of
+ *   different threads are delayed concurrently, like requests queued on an SD card
+ * - Calls are counted per Operation (getCallCount()), whether delayed or not
+ *
+ * Threading:
+ * - Thread-safe; the tree is guarded by the instance lock
+ *
+ * Compatible with API 17+.
+ */
+public class InMemoryStorageBackend implements StorageBackend {
+    /**
+     * Kinds of storage calls that can be given a latency.
+     */
+    public enum Operation {
+        /** list() */
+        LIST,
+        /** isDirectory(), isFile(), exists(), lastModified(), length() and stat() */
+        STAT,
+        /** openInputStream() and hasEmbeddedPicture() */
+        READ
+    }
+
+    private final File externalStorageDirectory;
+    private final List<File> secondaryStorageDirectories;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final AtomicLongArray latencyNanos = new AtomicLongArray(Operation.values().length);
+    private final AtomicLongArray callCounts = new AtomicLongArray(Operation.values().length);
+    private long clock;
+
+    /**
+     * @param externalStorageDirectory the primary volume, e.g. "/sdcard"
+     * @param secondaryStorageDirectories additional volumes, e.g. a removable card
+     */
+    public InMemoryStorageBackend(File externalStorageDirectory, File... secondaryStorageDirectories) {
+        this.externalStorageDirectory = externalStorageDirectory.getAbsoluteFile();
+        this.secondaryStorageDirectories = Collections.unmodifiableList(Arrays.asList(secondaryStorageDirectories));
+    }
+
+    /**
+     * Sets the delay of every call of an operation.
+     *
+     * @param operation the operation to delay
+     * @param latency the delay, 0 for none
+     * @param unit the unit of the delay
+     */
+    public void setLatency(Operation operation, long latency, TimeUnit unit) {
+        latencyNanos.set(operation.ordinal(), unit.toNanos(Math.max(0, latency)));
+    }
+
+    /**
+     * @return the number of calls of an operation since the backend was created
+     */
+    public long getCallCount(Operation operation) {
+        return callCounts.get(operation.ordinal());
+    }
+
+    /**
+     * Adds a directory and its missing parents; an existing directory is left unchanged.
+     *
+     * @throws IllegalArgumentException if the path or one of its parents is a file
+     */
+    public synchronized void addDirectory(File directory) {
+        String path = directory.getAbsolutePath();
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            if (entry.children == null) {
+                throw new IllegalArgumentException("Not a directory: " + path);
+            }
+            return;
+        }
+        add(directory.getAbsoluteFile(), new Entry(new LinkedHashSet<String>(), null, 0));
+    }
+
+    /**
+     * Adds or replaces a file holding the given content, creating its missing parents.
+     */
+    public synchronized void addFile(File file, byte[] content) {
+        add(file.getAbsoluteFile(), new Entry(null, content.clone(), content.length));
+    }
+
+    /**
+     * Adds or replaces a file of the given length that reads as zeros, creating its missing parents.
+     */
+    public synchronized void addFile(File file, long length) {
+        add(file.getAbsoluteFile(), new Entry(null, null, length));
+    }
+
+    /**
+     * Removes a file, or a directory with everything below it.
+     *
+     * @return true if the entry existed
+     */
+    public synchronized boolean remove(File file) {
+        File absolute = file.getAbsoluteFile();
+        if (!removeTree(absolute.getPath())) {
+            return false;
+        }
+        File parent = absolute.getParentFile();
+        Entry parentEntry = parent != null ? entries.get(parent.getPath()) : null;
+        if (parentEntry != null) {
+            parentEntry.children.remove(absolute.getName());
+            parentEntry.lastModified = tick();
+        }
+        return true;
+    }
+
+    /**
+     * Sets the modification time of an entry, e.g. to replay a tree captured from a device.
+     *
+     * @return true if the entry exists
+     */
+    public synchronized boolean setLastModified(File file, long lastModified) {
+        Entry entry = entries.get(file.getAbsolutePath());
+        if (entry == null) {
+            return false;
+        }
+        entry.lastModified = lastModified;
+        return true;
+    }
+
+    /**
+     * Sets whether a file carries embedded cover art, which ImageHelper reports as an ID3 cover.
+     *
+     * @return true if the file exists
+     */
+    public synchronized boolean setEmbeddedPicture(File file, boolean embeddedPicture) {
+        Entry entry = entries.get(file.getAbsolutePath());
+        if (entry == null || entry.children != null) {
+            return false;
+        }
+        entry.embeddedPicture = embeddedPicture;
+        return true;
+    }
+
+    /**
+     * @return the number of files and directories of the tree
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public File getExternalStorageDirectory() {
+        return externalStorageDirectory;
+    }
+
+    @Override
+    public List<File> getSecondaryStorageDirectories() {
+        return secondaryStorageDirectories;
+    }
+
+    @Override
+    public File getMusicDirectory() {
+        return new File(externalStorageDirectory, "Music");
+    }
+
+    @Override
+    public String[] list(File directory) {
+        delay(Operation.LIST);
+        synchronized (this) {
+            Entry entry = entries.get(directory.getAbsolutePath());
+            if (entry == null || entry.children == null) {
+                return null;
+            }
+            return entry.children.toArray(new String[entry.children.size()]);
+        }
+    }
+
+    @Override
+    public boolean isDirectory(File file) {
+        Entry entry = find(file);
+        return entry != null && entry.children != null;
+    }
+
+    @Override
+    public boolean isFile(File file) {
+        Entry entry = find(file);
+        return entry != null && entry.children == null;
+    }
+
+    @Override
+    public boolean exists(File file) {
+        return find(file) != null;
+    }
+
+    @Override
+    public long lastModified(File file) {
+        Entry entry = find(file);
+        return entry != null ? entry.lastModified : 0L;
+    }
+
+    @Override
+    public long length(File file) {
+        Entry entry = find(file);
+        return entry != null && entry.children == null ? entry.length : 0L;
+    }
+
+    @Override
+    public FileAttributes stat(File file) {
+        Entry entry = find(file);
+        if (entry == null) {
+            return FileAttributes.MISSING;
+        }
+        boolean directory = entry.children != null;
+        return new FileAttributes(directory, !directory, entry.lastModified, directory ? 0L : entry.length);
+    }
+
+    @Override
+    public InputStream openInputStream(File file) throws IOException {
+        delay(Operation.READ);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(file.getAbsolutePath());
+        }
+        if (entry == null || entry.children != null) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        return entry.content != null ? new ByteArrayInputStream(entry.content) : new ZeroInputStream(entry.length);
+    }
+
+    @Override
+    public boolean hasEmbeddedPicture(File track) {
+        delay(Operation.READ);
+        synchronized (this) {
+            Entry entry = entries.get(track.getAbsolutePath());
+            return entry != null && entry.embeddedPicture;
+        }
+    }
+
+    private Entry find(File file) {
+        delay(Operation.STAT);
+        synchronized (this) {
+            return entries.get(file.getAbsolutePath());
+        }
+    }
+
+    private void delay(Operation operation) {
+        callCounts.incrementAndGet(operation.ordinal());
+        long nanos = latencyNanos.get(operation.ordinal());
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Links an entry into its parent directory, creating the missing parents.
+     * Must be called with the lock held.
+     */
+    private void add(File file, Entry entry) {
+        String path = file.getPath();
+        File parent = file.getParentFile();
+        if (parent != null) {
+            Entry parentEntry = entries.get(parent.getPath());
+            if (parentEntry == null) {
+                addDirectory(parent);
+                parentEntry = entries.get(parent.getPath());
+            } else if (parentEntry.children == null) {
+                throw new IllegalArgumentException("Not a directory: " + parent);
+            }
+            parentEntry.children.add(file.getName());
+            parentEntry.lastModified = tick();
+        }
+        Entry replaced = entries.get(path);
+        if (replaced != null && replaced.children != null) {
+            throw new IllegalArgumentException("Is a directory: " + path);
+        }
+        entry.lastModified = tick();
+        entries.put(path, entry);
+    }
+
+    private boolean removeTree(String path) {
+        Entry entry = entries.remove(path);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.children != null) {
+            for (String name : new ArrayList<>(entry.children)) {
+                removeTree(new File(path, name).getPath());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a modification time later than every time handed out before
+     */
+    private long tick() {
+        clock = Math.max(System.currentTimeMillis(), clock + 1);
+        return clock;
+    }
+
+    private static class Entry {
+        // Names of the entries of a directory, in creation order; null for files
+        final Set<String> children;
+        final byte[] content;
+        final long length;
+        long lastModified;
+        boolean embeddedPicture;
+
+        Entry(Set<String> children, byte[] content, long length) {
+            this.children = children;
+            this.content = content;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Content of a file added with a length only.
+     */
+    private static class ZeroInputStream extends InputStream {
+        private long remaining;
+
+        ZeroInputStream(long length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) {
+                return -1;
+            }
+            remaining--;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = (int) Math.min(count, remaining);
+            Arrays.fill(buffer, offset, offset + read, (byte) 0);
+            remaining -= read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.kidz.y1.utils;
+
+import com.kidz.y1.models.DirectorySignature;
+import com.kidz.y1.models.LibraryIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the LibraryIndex to app storage.
+ *
+ * File layout:
+ * - int magic, int format version, int payload length, long CRC32 of the payload
+ * - payload: root path, the fingerprint of the exclusion rules, then profiles, albums and tracks as a tree of names relative
+ *   to their parent, each followed by its cover reference ("" when none); the root,
+ *   profile and album nodes also carry their DirectorySignature
+ *
+ * A file with a wrong magic, an unknown version or a checksum mismatch is treated as
+ * absent, so callers simply rebuild the index. Writes go to a temporary file that is
+ * renamed over the old one, so a crash never leaves a truncated index behind.
+ *
+ * Threading:
+ * - All methods perform file I/O and should be called from background threads
+ *
+ * Compatible with API 17+.
+ */
+public class LibraryIndexStore {
+    private static final int MAGIC = 0x4B49445A; // "KIDZ"
+    private static final int FORMAT_VERSION = 5;
+    private static final int MAX_PAYLOAD_BYTES = 64 * 1024 * 1024;
+
+    private final File file;
+
+    public LibraryIndexStore(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the file holding the index of a library root.
+     * The primary root keeps Constants.LIBRARY_INDEX_FILE_NAME; other roots get a name
+     * derived from their path, so every root is stored and invalidated on its own.
+     *
+     * @param directory the directory holding the index files
+     * @param root the Kidz directory of the root
+     * @param primary whether the root is the primary one
+     * @return the index file
+     */
+    public static File getIndexFile(File directory, File root, boolean primary) {
+        if (primary) {
+            return new File(directory, Constants.LIBRARY_INDEX_FILE_NAME);
+        }
+        String name = Constants.LIBRARY_INDEX_FILE_NAME;
+        int dot = name.lastIndexOf('.');
+        return new File(directory, name.substring(0, dot) + "-"
+                + Integer.toHexString(root.getAbsolutePath().hashCode()) + name.substring(dot));
+    }
+
+    /**
+     * Reads the persisted index.
+     *
+     * @return the index, or null if there is none or it is corrupt or outdated
+     */
+    public LibraryIndex read() {
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+                Logger.w("LibraryIndexStore", "Ignoring index with unknown magic: " + file);
+                return null;
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                Logger.i("LibraryIndexStore", "Ignoring index with format version " + version);
+                return null;
+            }
+            int length = in.readInt();
+            long checksum = in.readLong();
+            if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+                Logger.w("LibraryIndexStore", "Ignoring index with invalid payload length: " + length);
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            if (crc.getValue() != checksum) {
+                Logger.w("LibraryIndexStore", "Ignoring index with checksum mismatch: " + file);
+                return null;
+            }
+            return decode(new DataInputStream(new ByteArrayInputStream(payload)));
+        } catch (IOException e) {
+            Logger.w("LibraryIndexStore", "Error reading library index: " + file, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes the index, replacing any previous one.
+     *
+     * @return true if the index was written
+     */
+    public boolean write(LibraryIndex index) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            Logger.w("LibraryIndexStore", "Cannot create index directory: " + parent);
+            return false;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            encode(index, new DataOutputStream(buffer));
+            byte[] payload = buffer.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(payload.length);
+            out.writeLong(crc.getValue());
+            out.write(payload);
+            out.close();
+            out = null;
+
+            if (!tempFile.renameTo(file)) {
+                Logger.w("LibraryIndexStore", "Cannot replace library index: " + file);
+                tempFile.delete();
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            Logger.w("LibraryIndexStore", "Error writing library index: " + file, e);
+            tempFile.delete();
+            return false;
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Deletes the persisted index.
+     */
+    public void delete() {
+        file.delete();
+    }
+
+    private static void encode(LibraryIndex index, DataOutputStream out) throws IOException {
+        out.writeUTF(index.getRootPath());
+        out.writeInt(index.getExclusionFingerprint());
+        writeSignature(out, index.getSignature(LibraryIndex.ROOT_ID));
+        writeChildren(index, LibraryIndex.ROOT_ID, out);
+        out.flush();
+    }
+
+    private static void writeChildren(LibraryIndex index, int parent, DataOutputStream out) throws IOException {
+        int count = index.getChildCount(parent);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            int child = index.getChild(parent, i);
+            out.writeUTF(index.getName(child));
+            writeCover(out, index.getCover(child));
+            if (!index.isTrack(child)) {
+                writeSignature(out, index.getSignature(child));
+                writeChildren(index, child, out);
+            }
+        }
+    }
+
+    private static LibraryIndex decode(DataInputStream in) throws IOException {
+        String rootPath = in.readUTF();
+        int exclusionFingerprint = in.readInt();
+        Map<String, DirectorySignature> signatures = new HashMap<>();
+        readSignature(in, rootPath, signatures);
+        List<String> profilePaths = new ArrayList<>();
+        Map<String, List<String>> albumPaths = new HashMap<>();
+        Map<String, List<String>> trackPaths = new HashMap<>();
+        Map<String, String> profileCovers = new HashMap<>();
+        Map<String, String> albumCovers = new HashMap<>();
+        Map<String, String> trackCovers = new HashMap<>();
+
+        int profileCount = in.readInt();
+        for (int p = 0; p < profileCount; p++) {
+            String profilePath = childPath(rootPath, in.readUTF());
+            profilePaths.add(profilePath);
+            readCover(in, profilePath, profileCovers);
+            readSignature(in, profilePath, signatures);
+
+            int albumCount = in.readInt();
+            List<String> albums = new ArrayList<>(albumCount);
+            for (int a = 0; a < albumCount; a++) {
+                String albumPath = childPath(profilePath, in.readUTF());
+                albums.add(albumPath);
+                readCover(in, albumPath, albumCovers);
+                readSignature(in, albumPath, signatures);
+
+                int trackCount = in.readInt();
+                List<String> tracks = new ArrayList<>(trackCount);
+                for (int t = 0; t < trackCount; t++) {
+                    String trackPath = childPath(albumPath, in.readUTF());
+                    tracks.add(trackPath);
+                    readCover(in, trackPath, trackCovers);
+                }
+                trackPaths.put(albumPath, tracks);
+            }
+            albumPaths.put(profilePath, albums);
+        }
+        return new LibraryIndex(rootPath, profilePaths, albumPaths, trackPaths,
+                profileCovers, albumCovers, trackCovers, signatures, exclusionFingerprint);
+    }
+
+    private static void writeCover(DataOutputStream out, String cover) throws IOException {
+        out.writeUTF(cover != null ? cover : "");
+    }
+
+    private static void readCover(DataInputStream in, String path, Map<String, String> covers) throws IOException {
+        String cover = in.readUTF();
+        if (!cover.isEmpty()) {
+            covers.put(path, cover);
+        }
+    }
+
+    private static void writeSignature(DataOutputStream out, DirectorySignature signature) throws IOException {
+        out.writeLong(signature != null ? signature.getLastModified() : 0L);
+        out.writeInt(signature != null ? signature.getChildCount() : -1);
+    }
+
+    private static void readSignature(DataInputStream in, String path,
+            Map<String, DirectorySignature> signatures) throws IOException {
+        long lastModified = in.readLong();
+        int childCount = in.readInt();
+        if (childCount >= 0 || childCount == DirectorySignature.UNKNOWN_CHILD_COUNT) {
+            signatures.put(path, new DirectorySignature(lastModified, childCount));
+        }
+    }
+
+    private static String childPath(String parentPath, String name) {
+        return new File(parentPath, name).getAbsolutePath();
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Logger.w("LibraryIndexStore", "Error closing library index stream", e);
+        }
+    }
+}
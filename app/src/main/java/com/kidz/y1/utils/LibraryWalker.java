@@ -0,0 +1,480 @@
+package com.kidz.y1.utils;
+
+import com.kidz.y1.models.DirectorySignature;
+import com.kidz.y1.models.LibraryIndex;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks a Kidz directory once and builds a LibraryIndex: the full profile, album and
+ * track tree together with the cover of every node. Each library root gets its own index.
+ *
+ * Each directory is read at most once, through a DirectorySource (the filesystem by default). Its signature,
+ * children and cover candidates all come from that single listing: a profile cover is
+ * looked up in the root listing, an album cover in the profile and album listings, and a
+ * track cover in the album listing. Only ID3 art still needs to open a file.
+ * A track without its own image falls back to the cover of its album, like ImageRepository.
+ *
+ * Playlists in a profile directory are indexed as albums without tracks: their entries
+ * live anywhere in the library and are resolved on demand through PlaylistCache. Their
+ * signature is the file's modification time, and their cover is the image named after the
+ * playlist in the profile directory.
+ *
+ * Incremental mode:
+ * - Every directory's DirectorySignature is recorded in the index
+ * - walk() stats each known directory first and, if its modification time did not change,
+ *   reuses its previous children without listing it
+ * - Covers live next to the folder they belong to, so a changed directory also
+ *   re-resolves the covers of its children; an album is listed again when its profile
+ *   changed, and a profile is listed on demand when one of its albums changed
+ * - Entries excluded by ScanExclusions are never stat'ed or listed; the index records the
+ *   fingerprint of the rules, and a walk under different rules starts from scratch
+ *
+ * Parallel mode:
+ * - On multi-core devices profiles, then albums, are scanned as independent tasks on a
+ *   bounded pool of at most Constants.MAX_SCAN_THREADS threads, overlapping the stat
+ *   latency of the SD card
+ * - Results are merged by position, so the index is identical to a sequential walk
+ * - Single-core devices walk sequentially on the calling thread
+ *
+ * Threading:
+ * - All methods perform file I/O and MediaMetadataRetriever calls
+ * - Must be called from background threads
+ *
+ * Compatible with API 17+.
+ */
+public class LibraryWalker {
+    private static ThreadPoolExecutor scanPool;
+
+    /**
+     * Brings the index of one library root up to date, reading directories through a DirectorySource.
+     * Directories whose modification time matches the previous index keep their previous
+     * children and covers without being listed, so apart from one stat per directory the
+     * cost is proportional to what changed.
+     *
+     * @param rootDir the Kidz directory to walk
+     * @param previous the index of the same root to refresh, or null to build from scratch
+     * @param source the source of directory listings
+     * @return the index of the root (empty if the directory is missing)
+     */
+    public static LibraryIndex walk(File rootDir, LibraryIndex previous, DirectorySource source) {
+        long directoryReadsBefore = SyscallCounter.getDirectoryReads();
+        long statsBefore = SyscallCounter.getStats();
+        long fileReadsBefore = SyscallCounter.getFileReads();
+        String rootPath = rootDir.getAbsolutePath();
+        if (previous != null && !rootPath.equals(previous.getRootPath())) {
+            previous = null;
+        }
+        int exclusionFingerprint = ScanExclusions.refresh(rootDir).getFingerprint();
+        if (previous != null && previous.getExclusionFingerprint() != exclusionFingerprint) {
+            // Unchanged directories may now list more or fewer entries
+            Logger.i("LibraryWalker", "Exclusion rules changed, walking " + rootPath + " from scratch");
+            previous = null;
+        }
+
+        List<String> profilePaths = new ArrayList<>();
+        Map<String, List<String>> albumPaths = new HashMap<>();
+        Map<String, List<String>> trackPaths = new HashMap<>();
+        Map<String, String> profileCovers = new HashMap<>();
+        Map<String, String> albumCovers = new HashMap<>();
+        Map<String, String> trackCovers = new HashMap<>();
+        Map<String, DirectorySignature> signatures = new HashMap<>();
+
+        DirectoryContents root = null;
+        DirectorySignature rootSignature = findUnchangedSignature(previous, LibraryIndex.ROOT_ID, rootDir);
+        boolean rootChanged = rootSignature == null;
+        if (rootChanged) {
+            root = source.read(rootDir);
+            if (root == null) {
+                return new LibraryIndex(rootPath, profilePaths, albumPaths, trackPaths,
+                        profileCovers, albumCovers, trackCovers, signatures, exclusionFingerprint);
+            }
+            rootSignature = root.getSignature();
+            rootChanged = isChanged(previous, rootPath, rootSignature);
+        }
+        signatures.put(rootPath, rootSignature);
+        List<File> profileDirs = rootChanged
+                ? root.getDirectories() : toFiles(previous.getProfilePaths());
+
+        ThreadPoolExecutor pool = getScanPool();
+
+        List<Callable<ProfileScan>> profileTasks = new ArrayList<>(profileDirs.size());
+        for (File profileDir : profileDirs) {
+            profileTasks.add(new ProfileTask(profileDir, previous, source));
+        }
+        List<ProfileScan> profiles = runAll(pool, profileTasks);
+
+        // Albums of all profiles form one task list so a large profile does not serialize the walk
+        List<Callable<AlbumScan>> albumTasks = new ArrayList<>();
+        for (ProfileScan profile : profiles) {
+            if (profile == null) {
+                continue;
+            }
+            for (File albumDir : profile.albumDirs) {
+                albumTasks.add(new AlbumTask(albumDir, profile, previous, source));
+            }
+        }
+        List<AlbumScan> albums = runAll(pool, albumTasks);
+
+        int listed = 1;
+        int changed = rootChanged ? 1 : 0;
+        int albumIndex = 0;
+        for (ProfileScan profile : profiles) {
+            if (profile == null) {
+                // Removed since the previous index
+                continue;
+            }
+            listed++;
+            if (profile.changed) {
+                changed++;
+            }
+            signatures.put(profile.path, profile.signature);
+            profilePaths.add(profile.path);
+            if (rootChanged) {
+                File image = root.findImage(new File(profile.path).getName());
+                putCover(profileCovers, profile.path, image != null ? image.getAbsolutePath() : null);
+            } else {
+                putCover(profileCovers, profile.path, previous.getProfileCover(profile.path));
+            }
+
+            List<String> albumList = new ArrayList<>(profile.albumDirs.size());
+            for (int i = 0; i < profile.albumDirs.size(); i++) {
+                AlbumScan album = albums.get(albumIndex++);
+                if (album == null) {
+                    continue;
+                }
+                listed++;
+                if (album.changed) {
+                    changed++;
+                }
+                signatures.put(album.path, album.signature);
+                albumList.add(album.path);
+                trackPaths.put(album.path, album.tracks);
+                putCover(albumCovers, album.path, album.cover);
+                trackCovers.putAll(album.trackCovers);
+            }
+            albumPaths.put(profile.path, albumList);
+        }
+
+        Logger.d("LibraryWalker", "Walked " + listed + " directories" + (pool != null ? " in parallel, " : ", ")
+                + changed + (previous != null ? " changed since the previous index" : " new")
+                + " (" + SyscallCounter.describeSince(directoryReadsBefore, statsBefore, fileReadsBefore) + ")");
+        return new LibraryIndex(rootPath, profilePaths, albumPaths, trackPaths,
+                profileCovers, albumCovers, trackCovers, signatures, exclusionFingerprint);
+    }
+
+    /**
+     * Reads one profile directory and decides which albums to scan.
+     */
+    private static class ProfileTask implements Callable<ProfileScan> {
+        private final File profileDir;
+        private final LibraryIndex previous;
+        private final DirectorySource source;
+
+        ProfileTask(File profileDir, LibraryIndex previous, DirectorySource source) {
+            this.profileDir = profileDir;
+            this.previous = previous;
+            this.source = source;
+        }
+
+        @Override
+        public ProfileScan call() {
+            String path = profileDir.getAbsolutePath();
+            int previousId = previous != null ? previous.findNode(path) : LibraryIndex.NO_NODE;
+            DirectorySignature signature = findUnchangedSignature(previous, previousId, profileDir);
+            if (signature != null) {
+                return new ProfileScan(profileDir, signature, null, false,
+                        toFiles(previous.getAlbumPaths(path)), source);
+            }
+            DirectoryContents contents = source.read(profileDir);
+            if (contents == null) {
+                return null;
+            }
+            boolean changed = isChanged(previous, path, contents.getSignature());
+            List<File> albumDirs = changed
+                    ? MusicFileScanner.getAlbumFiles(contents) : toFiles(previous.getAlbumPaths(path));
+            return new ProfileScan(profileDir, contents.getSignature(), contents, changed, albumDirs, source);
+        }
+    }
+
+    /**
+     * Reads one album directory and resolves its tracks and covers.
+     */
+    private static class AlbumTask implements Callable<AlbumScan> {
+        private final File albumDir;
+        private final ProfileScan profile;
+        private final LibraryIndex previous;
+        private final DirectorySource source;
+
+        AlbumTask(File albumDir, ProfileScan profile, LibraryIndex previous, DirectorySource source) {
+            this.albumDir = albumDir;
+            this.profile = profile;
+            this.previous = previous;
+            this.source = source;
+        }
+
+        @Override
+        public AlbumScan call() {
+            if (PlaylistParser.isPlaylist(albumDir)) {
+                return scanPlaylist();
+            }
+            String path = albumDir.getAbsolutePath();
+            int previousId = previous != null ? previous.findNode(path) : LibraryIndex.NO_NODE;
+            if (!profile.changed) {
+                // Neither the album nor the profile holding its cover candidates changed
+                DirectorySignature signature = findUnchangedSignature(previous, previousId, albumDir);
+                if (signature != null) {
+                    String cover = previous.getCover(previousId);
+                    Map<String, String> trackCovers = new HashMap<>();
+                    List<String> tracks = reuseTracks(path, previousId, null, cover, trackCovers);
+                    return new AlbumScan(path, signature, false, tracks, cover, trackCovers);
+                }
+            }
+            DirectoryContents album = source.read(albumDir);
+            if (album == null) {
+                return null;
+            }
+            boolean changed = previousId == LibraryIndex.NO_NODE
+                    || !album.getSignature().matches(previous.getSignature(previousId));
+
+            String cover;
+            if (profile.changed || changed) {
+                cover = ImageHelper.findAlbumImagePath(profile.getContents(), album);
+            } else {
+                cover = previous.getCover(previousId);
+            }
+
+            List<String> tracks;
+            Map<String, String> trackCovers = new HashMap<>();
+            if (!changed) {
+                tracks = reuseTracks(path, previousId, album, cover, trackCovers);
+            } else {
+                List<File> trackFiles = album.getTracks();
+                tracks = new ArrayList<>(trackFiles.size());
+                for (File trackFile : trackFiles) {
+                    String trackPath = trackFile.getAbsolutePath();
+                    tracks.add(trackPath);
+                    String trackCover = ImageHelper.findTrackImagePath(album, trackFile);
+                    putCover(trackCovers, trackPath, trackCover != null ? trackCover : cover);
+                }
+            }
+            return new AlbumScan(path, album.getSignature(), changed, tracks, cover, trackCovers);
+        }
+
+        /**
+         * Rebuilds the tracks of an unchanged album from the previous index. Track covers are
+         * reused when the album cover they fall back to is unchanged, and re-resolved from
+         * the album listing otherwise.
+         *
+         * @param album the album listing, or null if the album was not listed
+         */
+        private List<String> reuseTracks(String path, int previousId, DirectoryContents album, String cover,
+                Map<String, String> trackCovers) {
+            boolean reuseTrackCovers = album == null || equalsOrBothNull(cover, previous.getCover(previousId));
+            int count = previous.getChildCount(previousId);
+            List<String> tracks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int trackId = previous.getChild(previousId, i);
+                String trackPath = path + File.separator + previous.getName(trackId);
+                tracks.add(trackPath);
+                if (reuseTrackCovers) {
+                    putCover(trackCovers, trackPath, previous.getCover(trackId));
+                } else {
+                    String trackCover = ImageHelper.findTrackImagePath(album, new File(trackPath));
+                    putCover(trackCovers, trackPath, trackCover != null ? trackCover : cover);
+                }
+            }
+            return tracks;
+        }
+
+        private AlbumScan scanPlaylist() {
+            long lastModified = Storage.get().lastModified(albumDir);
+            SyscallCounter.countStat();
+            if (lastModified == 0L) {
+                return null;
+            }
+            String path = albumDir.getAbsolutePath();
+            DirectorySignature signature = new DirectorySignature(lastModified, 0);
+            int previousId = previous != null ? previous.findNode(path) : LibraryIndex.NO_NODE;
+            boolean changed = previousId == LibraryIndex.NO_NODE
+                    || !signature.matches(previous.getSignature(previousId));
+            String cover;
+            if (profile.changed || changed) {
+                DirectoryContents profileContents = profile.getContents();
+                File image = profileContents != null
+                        ? profileContents.findImage(PlaylistParser.getBaseName(albumDir.getName())) : null;
+                cover = image != null ? image.getAbsolutePath() : null;
+            } else {
+                cover = previous.getCover(previousId);
+            }
+            return new AlbumScan(path, signature, changed, new ArrayList<String>(), cover,
+                    new HashMap<String, String>());
+        }
+    }
+
+    private static class ProfileScan {
+        final String path;
+        final DirectorySignature signature;
+        final boolean changed;
+        final List<File> albumDirs;
+        private final File directory;
+        private final DirectorySource source;
+        private DirectoryContents contents;
+
+        ProfileScan(File directory, DirectorySignature signature, DirectoryContents contents, boolean changed,
+                List<File> albumDirs, DirectorySource source) {
+            this.path = directory.getAbsolutePath();
+            this.signature = signature;
+            this.changed = changed;
+            this.albumDirs = albumDirs;
+            this.directory = directory;
+            this.source = source;
+            this.contents = contents;
+        }
+
+        /**
+         * @return the profile listing, read on first use by a changed album if the profile
+         *         itself was not listed, or null if it can no longer be read
+         */
+        synchronized DirectoryContents getContents() {
+            if (contents == null) {
+                contents = source.read(directory);
+            }
+            return contents;
+        }
+    }
+
+    private static class AlbumScan {
+        final String path;
+        final DirectorySignature signature;
+        final boolean changed;
+        final List<String> tracks;
+        final String cover;
+        final Map<String, String> trackCovers;
+
+        AlbumScan(String path, DirectorySignature signature, boolean changed, List<String> tracks,
+                String cover, Map<String, String> trackCovers) {
+            this.path = path;
+            this.signature = signature;
+            this.changed = changed;
+            this.tracks = tracks;
+            this.cover = cover;
+            this.trackCovers = trackCovers;
+        }
+    }
+
+    /**
+     * Runs tasks on the pool, or inline when there is none, and returns their results in
+     * task order.
+     */
+    private static <T> List<T> runAll(ThreadPoolExecutor pool, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (pool == null || tasks.size() < 2) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException("Library walk failed", e);
+                }
+            }
+            return results;
+        }
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Library walk interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                // Keeps SecurityException visible to the repositories
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Library walk failed", cause);
+        }
+    }
+
+    /**
+     * @return the shared scan pool, or null on single-core devices
+     */
+    private static synchronized ThreadPoolExecutor getScanPool() {
+        if (scanPool == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            if (cores < 2) {
+                return null;
+            }
+            int threads = Math.min(cores * 2, Constants.MAX_SCAN_THREADS);
+            scanPool = new ThreadPoolExecutor(threads, threads,
+                    Constants.SCAN_THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ScanThreadFactory());
+            scanPool.allowCoreThreadTimeOut(true);
+        }
+        return scanPool;
+    }
+
+    private static class ScanThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "LibraryWalker-" + count.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+
+    /**
+     * Stats a directory known to the previous index.
+     *
+     * @return the previous signature if the directory's modification time did not change,
+     *         so its previous children can be reused without listing it, or null if it must be listed
+     */
+    private static DirectorySignature findUnchangedSignature(LibraryIndex previous, int previousId, File directory) {
+        DirectorySignature signature = previous != null ? previous.getSignature(previousId) : null;
+        if (signature == null) {
+            return null;
+        }
+        long lastModified = Storage.get().lastModified(directory);
+        SyscallCounter.countStat();
+        return lastModified != 0L && lastModified == signature.getLastModified() ? signature : null;
+    }
+
+    private static boolean isChanged(LibraryIndex previous, String directoryPath, DirectorySignature signature) {
+        return previous == null || !signature.matches(previous.getSignature(directoryPath));
+    }
+
+    private static boolean equalsOrBothNull(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static List<File> toFiles(List<String> paths) {
+        List<File> files = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            files.add(new File(path));
+        }
+        return files;
+    }
+
+    private static void putCover(Map<String, String> covers, String path, String cover) {
+        if (cover != null) {
+            covers.put(path, cover);
+        }
+    }
+}
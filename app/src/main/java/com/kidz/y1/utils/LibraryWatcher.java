@@ -0,0 +1,271 @@
+package com.kidz.y1.utils;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.kidz.y1.models.LibraryIndex;
+import com.kidz.y1.repositories.ImageRepository;
+import com.kidz.y1.repositories.MusicRepository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches the Kidz library for changes and invalidates the repository caches.
+ *
+ * One FileObserver is registered per watched directory, at most
+ * Constants.MAX_WATCHED_DIRECTORIES across all library roots. Each root is watched from
+ * its own LibraryIndex and refreshed on its own, and gets an equal share of the bound,
+ * filled with the root itself, its profiles and then its albums in library order; the share
+ * a small root leaves unused goes to the larger ones. Every root's share is recomputed
+ * whenever a root's index is watched or replaced.
+ * Directories beyond the bound are still covered by the library index validation at the
+ * next startup, and albums by the refresh that follows any change in their profile.
+ *
+ * Events are debounced: changes are collected until the library has been quiet for
+ * Constants.WATCH_DEBOUNCE_MS (or at most Constants.WATCH_MAX_DELAY_MS), then every
+ * touched directory is invalidated once and a single incremental refresh runs per touched root.
+ * Copying 200 files therefore costs one refresh instead of 200. Writes are reported when
+ * the file is closed as well, so a large file still being copied at the first refresh is
+ * rescanned once it is complete, although its directory's signature does not change then.
+ *
+ * Threading:
+ * - FileObserver events arrive on the observer thread
+ * - Invalidations and the refresh request run on the main thread; the refresh itself
+ *   runs on MusicRepository's executor
+ *
+ * Compatible with API 17+.
+ */
+public class LibraryWatcher {
+    private static final int EVENT_MASK = FileObserver.CREATE | FileObserver.CLOSE_WRITE
+            | FileObserver.DELETE | FileObserver.MOVED_FROM | FileObserver.MOVED_TO
+            | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    private final MusicRepository musicRepository;
+    private final ImageRepository imageRepository;
+    private final Handler handler;
+    private final Runnable flushRunnable = this::flushPendingChanges;
+
+    private final Object lock = new Object();
+    private final Map<String, LibraryIndex> watchedIndexes = new HashMap<>();
+    private final Map<String, DirectoryObserver> observers = new HashMap<>();
+    private final Map<File, Set<String>> pendingChanges = new HashMap<>();
+    private long firstPendingChangeAt;
+
+    public LibraryWatcher(MusicRepository musicRepository, ImageRepository imageRepository) {
+        this.musicRepository = musicRepository;
+        this.imageRepository = imageRepository;
+        this.handler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Watches the directories of a library root's index, replacing the previous index of
+     * that root, and re-apportions the watched directories between all roots. Directories
+     * that are no longer part of the watch set stop being watched.
+     *
+     * @param index the library index to watch
+     */
+    public void watchLibrary(LibraryIndex index) {
+        synchronized (lock) {
+            watchedIndexes.put(index.getRootPath(), index);
+
+            List<List<String>> candidates = new ArrayList<>(watchedIndexes.size());
+            for (LibraryIndex watched : watchedIndexes.values()) {
+                candidates.add(getWatchCandidates(watched));
+            }
+            // Smallest roots first, so the share they leave unused goes to the larger ones
+            Collections.sort(candidates, new Comparator<List<String>>() {
+                @Override
+                public int compare(List<String> a, List<String> b) {
+                    return a.size() < b.size() ? -1 : (a.size() == b.size() ? 0 : 1);
+                }
+            });
+            Set<String> watched = new HashSet<>();
+            int remaining = Constants.MAX_WATCHED_DIRECTORIES;
+            for (int i = 0; i < candidates.size(); i++) {
+                List<String> paths = candidates.get(i);
+                int share = Math.min(paths.size(), remaining / (candidates.size() - i));
+                watched.addAll(paths.subList(0, share));
+                remaining -= share;
+            }
+
+            // Stop first, so the number of observers never exceeds the bound
+            Iterator<Map.Entry<String, DirectoryObserver>> iterator = observers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, DirectoryObserver> entry = iterator.next();
+                if (!watched.contains(entry.getKey())) {
+                    stopQuietly(entry.getValue());
+                    iterator.remove();
+                }
+            }
+            for (String path : watched) {
+                if (!observers.containsKey(path)) {
+                    DirectoryObserver observer = startObserver(new File(path));
+                    if (observer != null) {
+                        observers.put(path, observer);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops watching every directory and drops pending changes.
+     */
+    public void stop() {
+        synchronized (lock) {
+            for (DirectoryObserver observer : observers.values()) {
+                stopQuietly(observer);
+            }
+            observers.clear();
+            watchedIndexes.clear();
+            pendingChanges.clear();
+        }
+        handler.removeCallbacks(flushRunnable);
+    }
+
+    private void onDirectoryEvent(DirectoryObserver observer, int event, String name) {
+        int type = event & FileObserver.ALL_EVENTS;
+        if ((type & EVENT_MASK) == 0) {
+            return;
+        }
+        // The marker files are excluded from listings, but adding one changes what is listed
+        if (name != null && !Constants.NOMEDIA_FILE_NAME.equalsIgnoreCase(name)
+                && !Constants.EXCLUDE_FILE_NAME.equalsIgnoreCase(name)
+                && ScanExclusions.isExcluded(observer.directory, name)) {
+            return;
+        }
+        long delay;
+        synchronized (lock) {
+            if ((type & (FileObserver.DELETE_SELF | FileObserver.MOVE_SELF)) != 0) {
+                // The parent's observer reports the entry itself; just release this one
+                forget(observer);
+                return;
+            }
+            long now = SystemClock.uptimeMillis();
+            if (pendingChanges.isEmpty()) {
+                firstPendingChangeAt = now;
+            }
+            Set<String> names = pendingChanges.get(observer.directory);
+            if (names == null) {
+                names = new HashSet<>();
+                pendingChanges.put(observer.directory, names);
+            }
+            if (name != null) {
+                names.add(name);
+            }
+            long deadline = firstPendingChangeAt + Constants.WATCH_MAX_DELAY_MS;
+            delay = Math.max(0, Math.min(Constants.WATCH_DEBOUNCE_MS, deadline - now));
+        }
+        handler.removeCallbacks(flushRunnable);
+        handler.postDelayed(flushRunnable, delay);
+    }
+
+    private void flushPendingChanges() {
+        Map<File, Set<String>> changes;
+        Set<File> changedRoots = new HashSet<>();
+        synchronized (lock) {
+            if (pendingChanges.isEmpty()) {
+                return;
+            }
+            changes = new HashMap<>(pendingChanges);
+            pendingChanges.clear();
+            for (File directory : changes.keySet()) {
+                String path = directory.getAbsolutePath();
+                for (String rootPath : watchedIndexes.keySet()) {
+                    if (isInRoot(path, rootPath)) {
+                        changedRoots.add(new File(rootPath));
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<File, Set<String>> entry : changes.entrySet()) {
+            File directory = entry.getKey();
+            musicRepository.invalidateCache(directory);
+            for (String name : entry.getValue()) {
+                imageRepository.invalidateDirectoryEntry(directory, name);
+            }
+            imageRepository.invalidateDirectoryEntry(directory, null);
+        }
+        Logger.d("LibraryWatcher", "Invalidated " + changes.size() + " changed directories");
+
+        MusicRepository.RepositoryCallback<LibraryIndex> callback = new MusicRepository.RepositoryCallback<LibraryIndex>() {
+            @Override
+            public void onSuccess(LibraryIndex result) {
+                // The refresh validated every directory of the root, even if its index did not change
+                imageRepository.onLibraryIndexValidated(result);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Logger.w("LibraryWatcher", "Library refresh after change failed", error);
+            }
+        };
+        for (File root : changedRoots) {
+            musicRepository.refreshLibraryIndex(root, callback);
+        }
+    }
+
+    private DirectoryObserver startObserver(File directory) {
+        if (!directory.isDirectory()) {
+            return null;
+        }
+        DirectoryObserver observer = new DirectoryObserver(directory);
+        observer.startWatching();
+        return observer;
+    }
+
+    private void forget(DirectoryObserver observer) {
+        stopQuietly(observer);
+        observers.values().remove(observer);
+    }
+
+    /**
+     * @return the directories of a root in watch order: the root, its profiles, then its albums
+     */
+    private static List<String> getWatchCandidates(LibraryIndex index) {
+        List<String> paths = new ArrayList<>();
+        paths.add(index.getRootPath());
+        List<String> profilePaths = index.getProfilePaths();
+        paths.addAll(profilePaths);
+        for (String profilePath : profilePaths) {
+            paths.addAll(index.getAlbumPaths(profilePath));
+        }
+        return paths;
+    }
+
+    private static boolean isInRoot(String path, String rootPath) {
+        return path.equals(rootPath) || path.startsWith(rootPath + File.separator);
+    }
+
+    private static void stopQuietly(DirectoryObserver observer) {
+        if (observer != null) {
+            observer.stopWatching();
+        }
+    }
+
+    private class DirectoryObserver extends FileObserver {
+        final File directory;
+
+        DirectoryObserver(File directory) {
+            super(directory.getAbsolutePath(), EVENT_MASK);
+            this.directory = directory;
+        }
+
+        @Override
+        public void onEvent(int event, String path) {
+            onDirectoryEvent(this, event, path);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.kidz.y1.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import com.kidz.y1.models.DirectorySignature;
+import com.kidz.y1.models.LibraryIndex;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scans the library from the system media scanner's index instead of listing directories.
+ *
+ * Three cursor queries, on MediaStore.Audio, MediaStore.Audio.Playlists and MediaStore.Images,
+ * return every indexed file below the Kidz directory being scanned. They are grouped into per-folder listings that
+ * LibraryWalker consumes like directory reads, so cover resolution and incremental
+ * refresh work exactly as with the filesystem walker.
+ *
+ * Fallback:
+ * - A folder MediaStore knows nothing about is listed from disk
+ * - A folder whose last modification is newer than the newest MediaStore row below it
+ *   has changed since the media scanner saw it, and is listed from disk as well
+ * - Checking a known folder costs one stat instead of a directory read plus one stat per entry
+ * - MediaStore does not know a folder's other entries, so the signature of a folder served
+ *   from it has an unknown child count and is matched on its modification time; it stays
+ *   comparable with a signature taken from disk (e.g. by MusicRepository revalidation)
+ * - If the queries fail, the whole library is walked from disk
+ * - Rows below a directory excluded by the root's ExclusionRules are dropped, so pruned
+ *   subtrees stay pruned although MediaStore indexed them
+ *
+ * Not the default backend: folders written from a PC over USB carry FAT modification times
+ * in local time with 2 s granularity, which can be older than the newest row below them
+ * although the media scanner has not seen the new files yet. Install it explicitly with
+ * MusicRepository.setScanBackend() where the media scanner is known to keep up.
+ *
+ * Threading:
+ * - scan() performs ContentResolver queries and file I/O; call it from background threads
+ *
+ * Compatible with API 17+.
+ */
+public class MediaStoreScanBackend implements ScanBackend {
+    private static final String[] PROJECTION = {
+            MediaStore.MediaColumns.DATA,
+            MediaStore.MediaColumns.DATE_ADDED
+    };
+
+    private final ContentResolver contentResolver;
+
+    public MediaStoreScanBackend(Context context) {
+        this.contentResolver = context.getApplicationContext().getContentResolver();
+    }
+
+    @Override
+    public LibraryIndex scan(File root, LibraryIndex previous) {
+        String rootPath = root.getAbsolutePath();
+        MediaStoreSource source = new MediaStoreSource(rootPath, ScanExclusions.refresh(root));
+        try {
+            query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, rootPath, source, false);
+            query(MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI, rootPath, source, false);
+            query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, rootPath, source, true);
+        } catch (RuntimeException e) {
+            // SecurityException, or a provider that is unavailable while storage is busy
+            Logger.w("MediaStoreScanBackend", "MediaStore query failed, walking the filesystem", e);
+            return LibraryWalker.walk(root, previous, DirectorySource.FILESYSTEM);
+        }
+        LibraryIndex index = LibraryWalker.walk(root, previous, source);
+        Logger.d("MediaStoreScanBackend", "Served " + source.served.get() + " folders from MediaStore, listed "
+                + source.listed.get() + " from disk");
+        return index;
+    }
+
+    private void query(Uri uri, String rootPath, MediaStoreSource source, boolean images) {
+        Cursor cursor = null;
+        try {
+            cursor = contentResolver.query(uri, PROJECTION,
+                    MediaStore.MediaColumns.DATA + " LIKE ?",
+                    new String[] {rootPath + File.separator + "%"}, null);
+            if (cursor == null) {
+                return;
+            }
+            int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA);
+            int dateColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_ADDED);
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(dataColumn);
+                if (path != null) {
+                    source.add(path, cursor.getLong(dateColumn), images);
+                }
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Folder listings built from MediaStore rows.
+     * Filled before the walk starts and only read during it, so read() is thread-safe.
+     */
+    static class MediaStoreSource implements DirectorySource {
+        private final String rootPath;
+        private final ExclusionRules rules;
+        private final Map<String, Folder> folders = new HashMap<>();
+        final AtomicInteger served = new AtomicInteger();
+        final AtomicInteger listed = new AtomicInteger();
+
+        MediaStoreSource(String rootPath, ExclusionRules rules) {
+            this.rootPath = rootPath;
+            this.rules = rules;
+        }
+
+        /**
+         * Adds one MediaStore row.
+         *
+         * @param path the absolute path of the file
+         * @param dateAddedSeconds when the media scanner added the row, in seconds
+         * @param image true for image rows, false for audio and playlist rows
+         */
+        void add(String path, long dateAddedSeconds, boolean image) {
+            // LIKE is case-insensitive and treats '_' as a wildcard, so check the prefix again
+            if (!path.startsWith(rootPath + File.separator)) {
+                return;
+            }
+            File file = new File(path);
+            String name = file.getName();
+            if (rules.isExcludedPath(file)) {
+                return;
+            }
+            Folder folder = getFolder(file.getParent());
+            if (image) {
+                folder.images.add(file);
+            } else if (PlaylistParser.isPlaylistName(name)) {
+                folder.playlists.add(file);
+            } else if (AudioFormat.detect(file) != null) {
+                folder.tracks.add(file);
+            }
+
+            // Register the folder chain up to the root and its newest row
+            String childPath = file.getParent();
+            while (true) {
+                Folder child = getFolder(childPath);
+                child.newestRowSeconds = Math.max(child.newestRowSeconds, dateAddedSeconds);
+                if (childPath.equals(rootPath)) {
+                    break;
+                }
+                File childDir = new File(childPath);
+                String parentPath = childDir.getParent();
+                if (parentPath == null) {
+                    break;
+                }
+                getFolder(parentPath).directories.add(childDir);
+                childPath = parentPath;
+            }
+        }
+
+        private Folder getFolder(String path) {
+            Folder folder = folders.get(path);
+            if (folder == null) {
+                folder = new Folder();
+                folders.put(path, folder);
+            }
+            return folder;
+        }
+
+        @Override
+        public DirectoryContents read(File directory) {
+            Folder folder = folders.get(directory.getAbsolutePath());
+            if (folder != null) {
+                long lastModified = Storage.get().lastModified(directory);
+                SyscallCounter.countStat();
+                if (lastModified == 0L) {
+                    return null;
+                }
+                if (lastModified / 1000 <= folder.newestRowSeconds) {
+                    served.incrementAndGet();
+                    // MediaStore knows the media rows only, not every entry of the folder
+                    DirectorySignature signature =
+                            new DirectorySignature(lastModified, DirectorySignature.UNKNOWN_CHILD_COUNT);
+                    return DirectoryContents.of(directory, signature,
+                            new ArrayList<>(folder.directories), folder.tracks, folder.images,
+                            folder.playlists);
+                }
+            }
+            listed.incrementAndGet();
+            return DirectoryContents.read(directory);
+        }
+    }
+
+    private static class Folder {
+        final Set<File> directories = new LinkedHashSet<>();
+        final List<File> tracks = new ArrayList<>();
+        final List<File> images = new ArrayList<>();
+        final List<File> playlists = new ArrayList<>();
+        long newestRowSeconds;
+    }
+}
@@ -1,7 +1,5 @@
 package com.kidz.y1.utils;
 
-import android.os.Environment;
-
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -11,134 +9,139 @@ import java.util.List;
  * Utility class for scanning music files and directories.
  * 
  * Provides methods to:
- * - Check if Kidz directory exists
- * - Scan for profile directories
- * - Scan for album directories within a profile
- * - Scan for track files within an album
+ * - Resolve the library roots and check if a Kidz directory exists
+ * - Get the albums of a profile listing: sub-directories, followed by playlists (see PlaylistParser)
+ * - Derive track names and sort files in natural order
+ * 
+ * Directories themselves are listed by LibraryWalker and MusicRepository through
+ * DirectoryContents, from the StorageBackend returned by Storage.get().
+ * 
+ * Library roots:
+ * - The library may span several Kidz directories, e.g. on internal flash and on a
+ *   removable card; their profiles are merged into one profile/album tree
+ * - By default these are the Kidz directory of the primary external storage, followed by
+ *   the Kidz directory of every secondary volume of the StorageBackend
+ * - setKidzDirectories() overrides the default
  * 
  * Threading:
- * - All methods perform file I/O and should be called from background threads
+ * - Resolving and checking the library roots performs file I/O; call it from background threads
  * - This class is typically called from MusicRepository which uses ExecutorService
- * - Results are sorted alphabetically (case-insensitive)
+ * - Results are sorted in natural order (case-insensitive, "Chapter 2" before "Chapter 10")
  * 
  * Compatible with API 17+.
  */
 public class MusicFileScanner {
+    private static volatile List<File> kidzDirectories;
+    // Default roots, and the backend they were found on
+    private static volatile List<File> defaultKidzDirectories;
+    private static volatile StorageBackend defaultKidzDirectoriesBackend;
+
     /**
-     * Checks if the Kidz music directory exists on external storage.
+     * Checks if a Kidz music directory exists on any library root.
      * 
      * @return true if the directory exists, false otherwise
      */
     public static boolean isKidzDirectoryExists() {
-        File musicFolder = new File(Environment.getExternalStorageDirectory(), Constants.KIDZ_DIRECTORY_NAME);
-        return musicFolder.exists() && musicFolder.isDirectory();
+        for (File musicFolder : getKidzDirectories()) {
+            if (Storage.get().isDirectory(musicFolder)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Scans for profile directories in the Kidz folder.
+     * Gets the Kidz music directory on external storage.
+     * The directory may not exist.
      * 
-     * @return a sorted list of profile directories, or empty list if none found
+     * @return the Kidz directory
      */
-    public static List<File> scanMusicDirectories() {
-        List<File> directories = new ArrayList<>();
-        File musicFolder = new File(Environment.getExternalStorageDirectory(), Constants.KIDZ_DIRECTORY_NAME);
-        if (!musicFolder.exists() || !musicFolder.isDirectory()) {
-            return directories;
-        }
-        
-        File[] files = musicFolder.listFiles();
-        if (files == null) {
+    public static File getKidzDirectory() {
+        return new File(Storage.get().getExternalStorageDirectory(), Constants.KIDZ_DIRECTORY_NAME);
+    }
+
+    /**
+     * Gets the Kidz directories of all library roots, primary first.
+     * The directories may not exist, e.g. while a removable card is absent.
+     * 
+     * @return the library roots, never empty
+     */
+    public static List<File> getKidzDirectories() {
+        List<File> directories = kidzDirectories;
+        if (directories != null) {
             return directories;
         }
-
-        for (File file : files) {
-            if (file != null && file.isDirectory() && !file.getName().startsWith(Constants.HIDDEN_FILE_PREFIX)) {
-                directories.add(file);
-            }
+        StorageBackend backend = Storage.get();
+        directories = defaultKidzDirectories;
+        if (directories == null || defaultKidzDirectoriesBackend != backend) {
+            directories = findKidzDirectories(backend);
+            defaultKidzDirectories = directories;
+            defaultKidzDirectoriesBackend = backend;
         }
-
-        Collections.sort(directories, new java.util.Comparator<File>() {
-            @Override
-            public int compare(File f1, File f2) {
-                if (f1 == null || f2 == null) {
-                    return 0;
-                }
-                return f1.getName().compareToIgnoreCase(f2.getName());
-            }
-        });
         return directories;
     }
 
     /**
-     * Scans for album directories within a profile directory.
+     * Configures the library roots, replacing the default ones.
+     * Must be called before the library is first loaded, typically from Application.onCreate().
      * 
-     * @param profileDir the profile directory to scan
-     * @return a sorted list of album directories, or empty list if none found
+     * @param directories the Kidz directories to merge, in priority order; null restores the default
      */
-    public static List<File> scanProfileDirectories(File profileDir) {
-        List<File> directories = new ArrayList<>();
-        if (profileDir == null || !profileDir.exists() || !profileDir.isDirectory()) {
-            return directories;
-        }
-        
-        File[] files = profileDir.listFiles();
-        if (files == null) {
-            return directories;
-        }
+    public static void setKidzDirectories(List<File> directories) {
+        kidzDirectories = directories == null || directories.isEmpty()
+                ? null : Collections.unmodifiableList(new ArrayList<>(directories));
+    }
 
-        for (File file : files) {
-            if (file != null && file.isDirectory() && !file.getName().startsWith(Constants.HIDDEN_FILE_PREFIX)) {
-                directories.add(file);
+    private static List<File> findKidzDirectories(StorageBackend backend) {
+        List<File> directories = new ArrayList<>();
+        File primary = new File(backend.getExternalStorageDirectory(), Constants.KIDZ_DIRECTORY_NAME);
+        directories.add(primary);
+        for (File volume : backend.getSecondaryStorageDirectories()) {
+            File directory = new File(volume, Constants.KIDZ_DIRECTORY_NAME);
+            if (!directory.equals(primary) && !directories.contains(directory)) {
+                directories.add(directory);
             }
         }
-
-        Collections.sort(directories, new java.util.Comparator<File>() {
-            @Override
-            public int compare(File f1, File f2) {
-                if (f1 == null || f2 == null) {
-                    return 0;
-                }
-                return f1.getName().compareToIgnoreCase(f2.getName());
-            }
-        });
-        return directories;
+        return Collections.unmodifiableList(directories);
     }
 
     /**
-     * Scans for MP3 track files within an album directory.
+     * Gets the albums of a profile listing: its sub-directories, followed by its playlists.
+     * A playlist album lists the tracks the playlist references, wherever they are stored.
      * 
-     * @param albumDir the album directory to scan
-     * @return a sorted list of MP3 track files, or empty list if none found
+     * @param profileContents the listing of a profile directory
+     * @return the album directories and playlist files, each sorted by name
      */
-    public static List<File> scanTracks(File albumDir) {
-        List<File> tracks = new ArrayList<>();
-        if (albumDir == null || !albumDir.exists() || !albumDir.isDirectory()) {
-            return tracks;
-        }
-        
-        File[] files = albumDir.listFiles();
-        if (files == null) {
-            return tracks;
-        }
+    public static List<File> getAlbumFiles(DirectoryContents profileContents) {
+        List<File> directories = profileContents.getDirectories();
+        List<File> playlists = profileContents.getPlaylists();
+        List<File> albums = new ArrayList<>(directories.size() + playlists.size());
+        albums.addAll(directories);
+        albums.addAll(playlists);
+        return albums;
+    }
 
-        for (File file : files) {
-            if (file != null && file.isFile() && !file.getName().startsWith(Constants.HIDDEN_FILE_PREFIX)) {
-                String fileName = file.getName().toLowerCase();
-                if (fileName.endsWith(Constants.MP3_EXTENSION)) {
-                    tracks.add(file);
-                }
-            }
+    /**
+     * Strips the audio extension from a file name.
+     * Names of tracks detected from their content keep their extension.
+     * 
+     * @param fileName the track file name
+     * @return the name without its audio extension
+     */
+    public static String getTrackBaseName(String fileName) {
+        AudioFormat format = AudioFormat.fromName(fileName);
+        if (format != null) {
+            return fileName.substring(0, fileName.length() - format.getExtension().length());
         }
+        return fileName;
+    }
 
-        Collections.sort(tracks, new java.util.Comparator<File>() {
-            @Override
-            public int compare(File f1, File f2) {
-                if (f1 == null || f2 == null) {
-                    return 0;
-                }
-                return f1.getName().compareToIgnoreCase(f2.getName());
-            }
-        });
-        return tracks;
+    /**
+     * Sorts files by name in natural order (case-insensitive, numbers by value).
+     * 
+     * @param files the files to sort in place
+     */
+    public static void sortByName(List<File> files) {
+        NaturalOrder.sortFiles(files);
     }
 }
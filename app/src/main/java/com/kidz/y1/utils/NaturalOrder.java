@@ -0,0 +1,144 @@
+package com.kidz.y1.utils;
+
+import com.kidz.y1.models.LibraryNode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Natural sort order for file names: case-insensitive, with digit runs compared by
+ * numeric value, so "Chapter 2" sorts before "Chapter 10".
+ *
+ * Each name is turned into a sort key once; sorting then compares keys with plain
+ * String.compareTo instead of folding case on every comparison.
+ *
+ * Key layout:
+ * - Characters are case-folded like String.compareToIgnoreCase
+ * - A digit run becomes NUMBER_MARKER, its length without leading zeros, then its
+ *   significant digits, so shorter numbers sort first and numbers sort before letters
+ * - The original name follows NAME_SEPARATOR as a tie-breaker, keeping the order
+ *   deterministic for names that differ only in case or leading zeros
+ *
+ * Threading:
+ * - Stateless; safe to call from any thread
+ *
+ * Compatible with API 17+.
+ */
+public class NaturalOrder {
+    private static final char NAME_SEPARATOR = '\u0000';
+    private static final char NUMBER_MARKER = '\u0001';
+
+    private static final Comparator<SortEntry> KEY_ORDER = new Comparator<SortEntry>() {
+        @Override
+        public int compare(SortEntry e1, SortEntry e2) {
+            return e1.key.compareTo(e2.key);
+        }
+    };
+
+    /**
+     * Computes the natural-order sort key of a name.
+     *
+     * @param name the name to compute a key for
+     * @return a key whose String order is the natural order of the names
+     */
+    public static String sortKey(String name) {
+        int length = name.length();
+        StringBuilder key = new StringBuilder(length * 2 + 1);
+        int i = 0;
+        while (i < length) {
+            char c = name.charAt(i);
+            if (!isDigit(c)) {
+                key.append(Character.toLowerCase(Character.toUpperCase(c)));
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isDigit(name.charAt(i))) {
+                i++;
+            }
+            int significant = start;
+            while (significant < i - 1 && name.charAt(significant) == '0') {
+                significant++;
+            }
+            key.append(NUMBER_MARKER);
+            key.append((char) (i - significant));
+            key.append(name, significant, i);
+        }
+        key.append(NAME_SEPARATOR);
+        key.append(name);
+        return key.toString();
+    }
+
+    /**
+     * Sorts files by name in natural order, computing each sort key once.
+     *
+     * @param files the files to sort in place
+     */
+    public static void sortFiles(List<File> files) {
+        int size = files.size();
+        if (size < 2) {
+            return;
+        }
+        SortEntry[] entries = new SortEntry[size];
+        for (int i = 0; i < size; i++) {
+            File file = files.get(i);
+            entries[i] = new SortEntry(sortKey(file.getName()), file);
+        }
+        Arrays.sort(entries, KEY_ORDER);
+        for (int i = 0; i < size; i++) {
+            files.set(i, entries[i].file);
+        }
+    }
+
+    /**
+     * Sorts library nodes by the name of their file in natural order, like sortFiles().
+     * Used to merge the listings of several library roots.
+     *
+     * @param nodes the nodes to sort in place
+     */
+    public static <T extends LibraryNode> void sortNodes(List<T> nodes) {
+        int size = nodes.size();
+        if (size < 2) {
+            return;
+        }
+        List<SortEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String path = nodes.get(i).getPath();
+            entries.add(new SortEntry(sortKey(path.substring(path.lastIndexOf(File.separatorChar) + 1)), i));
+        }
+        Collections.sort(entries, KEY_ORDER);
+        List<T> sorted = new ArrayList<>(size);
+        for (SortEntry entry : entries) {
+            sorted.add(nodes.get(entry.position));
+        }
+        for (int i = 0; i < size; i++) {
+            nodes.set(i, sorted.get(i));
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static class SortEntry {
+        final String key;
+        final File file;
+        final int position;
+
+        SortEntry(String key, File file) {
+            this.key = key;
+            this.file = file;
+            this.position = -1;
+        }
+
+        SortEntry(String key, int position) {
+            this.key = key;
+            this.file = null;
+            this.position = position;
+        }
+    }
+}
@@ -136,7 +136,7 @@ public class NavigationHelper {
         }
         
         File file = new File(path);
-        if (file.exists() && file.isDirectory()) {
+        if (Storage.get().isDirectory(file)) {
             return file;
         }
         
@@ -147,7 +147,8 @@ public class NavigationHelper {
      * Extracts the album directory from an intent.
      * 
      * @param intent the intent containing the album directory path
-     * @return the File representing the album directory, or null if not found or invalid
+     * @return the File representing the album directory or playlist file, or null if not found
+     *         or invalid
      */
     public static File getAlbumDirectory(Intent intent) {
         String path = intent.getStringExtra(Constants.EXTRA_ALBUM_DIRECTORY);
@@ -156,7 +157,8 @@ public class NavigationHelper {
         }
         
         File file = new File(path);
-        if (file.exists() && file.isDirectory()) {
+        StorageBackend storage = Storage.get();
+        if (storage.isDirectory(file) || (PlaylistParser.isPlaylist(file) && storage.isFile(file))) {
             return file;
         }
         
@@ -176,7 +178,7 @@ public class NavigationHelper {
         }
         
         File file = new File(path);
-        if (file.exists() && file.isFile()) {
+        if (Storage.get().isFile(file)) {
             return file;
         }
         
@@ -0,0 +1,250 @@
+package com.kidz.y1.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map from absolute paths to values, stored as a tree of path segments.
+ *
+ * Lookups, insertions and ancestor checks cost O(depth). Removing a directory's subtree
+ * costs O(depth + subtree size) and only ever touches that subtree: "/Kidz/Alice" never
+ * matches "/Kidz/Alice2".
+ *
+ * A trie created with a maximum size is a bounded cache: values are weighed when they are
+ * put, and once their estimated total exceeds the maximum, values are evicted in
+ * SegmentedLru order. get() counts hits and misses (see getStats()).
+ *
+ * Threading:
+ * - All methods are synchronized; instances can be shared between threads
+ *
+ * Compatible with API 17+.
+ */
+public class PathTrie<V> {
+    private final Node<V> root = new Node<>(null, null);
+    private final SegmentedLru<Node<V>> lru;
+    private final BoundedCache.Weigher<String, V> weigher;
+    private int size;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Creates an unbounded trie.
+     */
+    public PathTrie() {
+        this(Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Creates a trie bounded by the estimated size of its values.
+     *
+     * @param maxSize the estimated size above which values are evicted, in bytes
+     * @param weigher estimates the size of each path and value, or null to weigh nothing
+     */
+    public PathTrie(long maxSize, BoundedCache.Weigher<String, V> weigher) {
+        this.lru = new SegmentedLru<>(maxSize);
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(String path) {
+        Node<V> node = find(path);
+        if (node == null || node.value == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        lru.access(node);
+        return node.value;
+    }
+
+    public synchronized void put(String path, V value) {
+        Node<V> node = root;
+        for (String segment : split(path)) {
+            Node<V> child = node.children != null ? node.children.get(segment) : null;
+            if (child == null) {
+                child = new Node<>(node, segment);
+                if (node.children == null) {
+                    node.children = new HashMap<>();
+                }
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        if (node.value == null) {
+            size++;
+        } else {
+            lru.remove(node);
+        }
+        node.value = value;
+        lru.add(node, weigher != null ? weigher.weigh(path, value) : 0L);
+        Node<V> victim;
+        while ((victim = lru.evict()) != null) {
+            victim.value = null;
+            size--;
+            prune(victim);
+        }
+    }
+
+    /**
+     * Removes the value of a path if it is still the given one.
+     *
+     * @return true if the value was removed
+     */
+    public synchronized boolean remove(String path, V value) {
+        Node<V> node = find(path);
+        if (node == null || node.value == null || !node.value.equals(value)) {
+            return false;
+        }
+        node.value = null;
+        size--;
+        lru.remove(node);
+        prune(node);
+        return true;
+    }
+
+    /**
+     * Removes the value of a path and the values of every path below it.
+     *
+     * @return the number of values removed
+     */
+    public synchronized int removeSubtree(String path) {
+        Node<V> node = find(path);
+        if (node == null) {
+            return 0;
+        }
+        int removed = detach(node);
+        size -= removed;
+        if (node == root) {
+            root.value = null;
+            root.children = null;
+        } else {
+            node.parent.children.remove(node.segment);
+            prune(node.parent);
+        }
+        return removed;
+    }
+
+    /**
+     * @return true if the path or one of its ancestors has a value
+     */
+    public synchronized boolean containsSelfOrAncestor(String path) {
+        Node<V> node = root;
+        if (node.value != null) {
+            return true;
+        }
+        for (String segment : split(path)) {
+            node = node.children != null ? node.children.get(segment) : null;
+            if (node == null) {
+                return false;
+            }
+            if (node.value != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a copy of every path and its value
+     */
+    public synchronized Map<String, V> toMap() {
+        Map<String, V> map = new HashMap<>();
+        collect(root, "", map);
+        return map;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        root.value = null;
+        root.children = null;
+        size = 0;
+        lru.clear();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(size, lru.getWeight(), lru.getMaxWeight(),
+                hitCount, missCount, lru.getEvictionCount());
+    }
+
+    private Node<V> find(String path) {
+        Node<V> node = root;
+        for (String segment : split(path)) {
+            node = node.children != null ? node.children.get(segment) : null;
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private void prune(Node<V> node) {
+        while (node != root && node.value == null && (node.children == null || node.children.isEmpty())) {
+            node.parent.children.remove(node.segment);
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Unlinks the values of a subtree from the eviction order.
+     *
+     * @return the number of values in the subtree
+     */
+    private int detach(Node<V> node) {
+        int count = 0;
+        if (node.value != null) {
+            lru.remove(node);
+            count++;
+        }
+        if (node.children != null) {
+            for (Node<V> child : node.children.values()) {
+                count += detach(child);
+            }
+        }
+        return count;
+    }
+
+    private static <V> void collect(Node<V> node, String path, Map<String, V> map) {
+        if (node.value != null) {
+            map.put(path.isEmpty() ? File.separator : path, node.value);
+        }
+        if (node.children != null) {
+            for (Node<V> child : node.children.values()) {
+                collect(child, path + File.separatorChar + child.segment, map);
+            }
+        }
+    }
+
+    private static List<String> split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf(File.separatorChar, start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static class Node<V> extends SegmentedLru.Entry {
+        final Node<V> parent;
+        final String segment;
+        Map<String, Node<V>> children;
+        V value;
+
+        Node(Node<V> parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+    }
+}
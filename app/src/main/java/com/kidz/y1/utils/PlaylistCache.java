@@ -0,0 +1,92 @@
+package com.kidz.y1.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolved entries of playlist albums, cached by playlist path.
+ *
+ * A cached playlist is revalidated with the file's modification time and size, so a
+ * large playlist costs one stat per request and is only parsed again after it changed.
+ * Concurrent requests for the same playlist share one parse (SingleFlight).
+ * Entries are bounded by their estimated size (Constants.PLAYLIST_CACHE_MAX_BYTES).
+ *
+ * Threading:
+ * - getEntries() performs file I/O and should be called from background threads
+ * - Instances can be shared between threads
+ *
+ * Compatible with API 17+.
+ */
+public class PlaylistCache {
+    private final BoundedCache<String, Playlist> cache = new BoundedCache<>(
+            Constants.PLAYLIST_CACHE_MAX_BYTES, (path, playlist) -> playlist.estimateSize());
+    private final SingleFlight<String, Playlist> parseFlight = new SingleFlight<>();
+
+    /**
+     * Gets the track files of a playlist, parsing it if it is not cached or changed.
+     *
+     * @param playlist the playlist file
+     * @return the track files, in playlist order; empty if the playlist does not exist
+     * @throws Exception if the playlist cannot be read
+     */
+    public List<File> getEntries(File playlist) throws Exception {
+        String path = playlist.getAbsolutePath();
+        FileAttributes attributes = Storage.get().stat(playlist);
+        SyscallCounter.countStat();
+        long lastModified = attributes.getLastModified();
+        long size = attributes.getLength();
+        if (!attributes.isFile()) {
+            cache.remove(path);
+            return Collections.emptyList();
+        }
+        Playlist cached = cache.get(path);
+        if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+            return cached.entries;
+        }
+        return parseFlight.run(path, () -> {
+            List<File> entries = PlaylistParser.parse(playlist);
+            Playlist parsed = new Playlist(lastModified, size, Collections.unmodifiableList(entries));
+            cache.put(path, parsed);
+            Logger.d("PlaylistCache", "Parsed " + entries.size() + " entries of " + path);
+            return parsed;
+        }).entries;
+    }
+
+    /**
+     * Drops the cached entries of a playlist, e.g. after it was deleted.
+     */
+    public void invalidate(File playlist) {
+        cache.remove(playlist.getAbsolutePath());
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    private static class Playlist {
+        final long lastModified;
+        final long size;
+        final List<File> entries;
+
+        Playlist(long lastModified, long size, List<File> entries) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.entries = entries;
+        }
+
+        long estimateSize() {
+            // A File and its path String (object headers plus UTF-16 chars) per entry
+            long bytes = 64;
+            for (File entry : entries) {
+                bytes += 56 + 2L * entry.getPath().length();
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.kidz.y1.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads M3U, M3U8 and PLS playlists into the track files they reference.
+ *
+ * Entries:
+ * - M3U/M3U8: every line that is not blank and not a "#" directive (#EXTM3U, #EXTINF, ...)
+ * - PLS: the values of the "FileN=" keys, in file order
+ * - Relative paths are resolved against the playlist's directory; "\" separators of
+ *   playlists made on Windows are accepted, and "file://" prefixes are stripped
+ * - URLs, drive-letter paths, missing files and files that are not tracks (see AudioFormat)
+ *   are skipped; at most Constants.MAX_PLAYLIST_ENTRIES entries are kept
+ *
+ * Files are read as UTF-8 (a byte order mark is ignored), which also covers plain ASCII M3U.
+ *
+ * Threading:
+ * - parse() performs file I/O and should be called from background threads
+ *
+ * Compatible with API 17+.
+ */
+public class PlaylistParser {
+    private static final String PLS_EXTENSION = ".pls";
+    private static final String PLS_FILE_KEY = "file";
+    private static final String FILE_URL_PREFIX = "file://";
+
+    /**
+     * @param name a file name
+     * @return true if the name ends in one of Constants.PLAYLIST_EXTENSIONS
+     */
+    public static boolean isPlaylistName(String name) {
+        String lowerName = name.toLowerCase();
+        for (String ext : Constants.PLAYLIST_EXTENSIONS) {
+            if (lowerName.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param file a file or directory
+     * @return true if the file is named like a playlist; the file is not accessed
+     */
+    public static boolean isPlaylist(File file) {
+        return file != null && isPlaylistName(file.getName());
+    }
+
+    /**
+     * Strips the playlist extension from a file name.
+     *
+     * @param fileName the playlist file name
+     * @return the name without its playlist extension
+     */
+    public static String getBaseName(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        for (String ext : Constants.PLAYLIST_EXTENSIONS) {
+            if (lowerName.endsWith(ext)) {
+                return fileName.substring(0, fileName.length() - ext.length());
+            }
+        }
+        return fileName;
+    }
+
+    /**
+     * Reads a playlist and resolves its entries.
+     *
+     * @param playlist the playlist file
+     * @return the track files of the playlist, in playlist order
+     * @throws IOException if the playlist cannot be read
+     */
+    public static List<File> parse(File playlist) throws IOException {
+        boolean pls = playlist.getName().toLowerCase().endsWith(PLS_EXTENSION);
+        File directory = playlist.getAbsoluteFile().getParentFile();
+        List<File> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Storage.get().openInputStream(playlist), "UTF-8"));
+        SyscallCounter.countFileRead();
+        try {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null && entries.size() < Constants.MAX_PLAYLIST_ENTRIES) {
+                if (first && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                    line = line.substring(1);
+                }
+                first = false;
+                String entry = pls ? getPlsEntry(line.trim()) : getM3uEntry(line.trim());
+                File file = entry != null ? resolve(directory, entry) : null;
+                if (file != null) {
+                    entries.add(file);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+
+    private static String getM3uEntry(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        return line;
+    }
+
+    private static String getPlsEntry(String line) {
+        int separator = line.indexOf('=');
+        if (separator <= PLS_FILE_KEY.length()
+                || !line.regionMatches(true, 0, PLS_FILE_KEY, 0, PLS_FILE_KEY.length())) {
+            return null;
+        }
+        String value = line.substring(separator + 1).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * @return the track file of an entry, or null if it is not a local track
+     */
+    private static File resolve(File directory, String entry) {
+        String path = entry;
+        if (path.regionMatches(true, 0, FILE_URL_PREFIX, 0, FILE_URL_PREFIX.length())) {
+            path = path.substring(FILE_URL_PREFIX.length());
+        } else if (path.contains("://")) {
+            return null;
+        }
+        if (path.length() > 1 && path.charAt(1) == ':') {
+            // Drive letter of a playlist made on Windows
+            return null;
+        }
+        path = path.replace('\\', File.separatorChar);
+        File file = normalize(path.startsWith(File.separator) ? new File(path) : new File(directory, path));
+        SyscallCounter.countStat();
+        if (!Storage.get().isFile(file) || AudioFormat.detect(file) == null) {
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Removes "." and ".." segments without touching the filesystem, so entries such as
+     * "../Shared/Song.mp3" get the same path as the track in its own album.
+     */
+    private static File normalize(File file) {
+        String path = file.getPath();
+        if (!path.contains(File.separator + ".")) {
+            return file;
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split(File.separator)) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+            } else {
+                segments.add(segment);
+            }
+        }
+        StringBuilder normalized = new StringBuilder();
+        for (String segment : segments) {
+            normalized.append(File.separatorChar).append(segment);
+        }
+        return new File(normalized.length() > 0 ? normalized.toString() : File.separator);
+    }
+}
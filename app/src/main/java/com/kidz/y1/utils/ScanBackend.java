@@ -0,0 +1,24 @@
+package com.kidz.y1.utils;
+
+import com.kidz.y1.models.LibraryIndex;
+
+import java.io.File;
+
+/**
+ * Strategy used by MusicRepository to build and refresh the index of each library root.
+ *
+ * Threading:
+ * - scan() performs I/O and must be called from background threads
+ *
+ * Compatible with API 17+.
+ */
+public interface ScanBackend {
+    /**
+     * Builds the index of one library root.
+     *
+     * @param root the Kidz directory to index
+     * @param previous the index of the same root to refresh incrementally, or null to build from scratch
+     * @return the index of the root
+     */
+    LibraryIndex scan(File root, LibraryIndex previous);
+}
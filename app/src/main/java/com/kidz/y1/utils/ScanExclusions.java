@@ -0,0 +1,150 @@
+package com.kidz.y1.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ExclusionRules of each library root, and the .nomedia convention.
+ *
+ * Rules:
+ * - The rules of a root are read from its Constants.EXCLUDE_FILE_NAME file on first use and
+ *   re-read by refresh() when the file's modification time or size changed; LibraryWalker
+ *   refreshes them at the start of every walk, so a walk costs one extra stat
+ * - Directories outside every root (e.g. those of playlist entries) get ExclusionRules.DEFAULT
+ *
+ * .nomedia:
+ * - A directory holding a Constants.NOMEDIA_FILE_NAME file is listed as empty, so neither
+ *   its tracks nor its sub-directories are scanned
+ * - Library roots themselves are exempt: a .nomedia file in the Kidz directory only hides
+ *   the library from other media players
+ *
+ * Threading:
+ * - All methods may be called from any thread; refresh() and the first use of a root
+ *   perform file I/O and should run on background threads
+ *
+ * Compatible with API 17+.
+ */
+public class ScanExclusions {
+    private static final ConcurrentHashMap<String, RootRules> rootRules = new ConcurrentHashMap<>();
+
+    private ScanExclusions() {
+    }
+
+    /**
+     * Gets the rules that apply to the entries of a directory.
+     *
+     * @param directory a directory of the library
+     * @return the rules of the root containing the directory, or ExclusionRules.DEFAULT
+     */
+    public static ExclusionRules getRules(File directory) {
+        String path = directory.getAbsolutePath();
+        for (File root : MusicFileScanner.getKidzDirectories()) {
+            String rootPath = root.getAbsolutePath();
+            if (path.startsWith(rootPath)
+                    && (path.length() == rootPath.length() || path.charAt(rootPath.length()) == File.separatorChar)) {
+                RootRules cached = rootRules.get(rootPath);
+                return cached != null ? cached.rules : refresh(root);
+            }
+        }
+        return ExclusionRules.DEFAULT;
+    }
+
+    /**
+     * @param directory a directory of the library
+     * @param name the name of one of its entries
+     * @return true if the entry is excluded by the rules of the directory
+     */
+    public static boolean isExcluded(File directory, String name) {
+        ExclusionRules rules = getRules(directory);
+        return rules.isExcluded(rules.getRelativePath(directory), name);
+    }
+
+    /**
+     * @param names the entry names of a directory
+     * @return true if the names include the .nomedia marker
+     */
+    public static boolean hasNoMediaMarker(String[] names) {
+        for (String name : names) {
+            if (Constants.NOMEDIA_FILE_NAME.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Re-reads the exclude file of a library root if it changed since it was last read.
+     *
+     * @param root the Kidz directory of the root
+     * @return the current rules of the root
+     */
+    public static ExclusionRules refresh(File root) {
+        String rootPath = root.getAbsolutePath();
+        File file = new File(root, Constants.EXCLUDE_FILE_NAME);
+        StorageBackend storage = Storage.get();
+        long lastModified = storage.lastModified(file);
+        long length = storage.length(file);
+        SyscallCounter.countStat();
+        SyscallCounter.countStat();
+        RootRules cached = rootRules.get(rootPath);
+        if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+            return cached.rules;
+        }
+        List<String> lines = lastModified != 0L ? readLines(file) : Collections.<String>emptyList();
+        ExclusionRules rules = ExclusionRules.forRoot(root, lines);
+        rootRules.put(rootPath, new RootRules(lastModified, length, rules));
+        if (cached != null || !lines.isEmpty()) {
+            Logger.i("ScanExclusions", "Exclusion rules of " + rootPath + ": " + rules);
+        }
+        return rules;
+    }
+
+    /**
+     * Forgets the rules of all roots, e.g. after the storage backend changed.
+     */
+    public static void clear() {
+        rootRules.clear();
+    }
+
+    private static List<String> readLines(File file) {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(Storage.get().openInputStream(file), "UTF-8"));
+            SyscallCounter.countFileRead();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } catch (IOException e) {
+            Logger.w("ScanExclusions", "Cannot read exclude file: " + file, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Logger.w("ScanExclusions", "Error closing exclude file: " + file, e);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static class RootRules {
+        final long lastModified;
+        final long length;
+        final ExclusionRules rules;
+
+        RootRules(long lastModified, long length, ExclusionRules rules) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.rules = rules;
+        }
+    }
+}
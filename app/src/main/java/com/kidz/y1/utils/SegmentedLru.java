@@ -0,0 +1,145 @@
+package com.kidz.y1.utils;
+
+/**
+ * Eviction order of a weighted cache: a segmented LRU.
+ *
+ * - New entries enter the probation segment
+ * - An entry hit while in probation is promoted to the protected segment, so entries used
+ *   more than once survive a burst of entries used once (e.g. browsing through many albums)
+ * - The protected segment holds at most Constants.CACHE_PROTECTED_RATIO of the maximum
+ *   weight; its least recently used entries are demoted back to probation
+ * - Victims are taken from the least recently used end of probation, then of protected
+ *
+ * Entries are linked intrusively, so every operation is O(1) and allocation-free.
+ *
+ * Threading:
+ * - Not thread-safe; the owning cache calls it under its own lock
+ *
+ * Compatible with API 17+.
+ */
+class SegmentedLru<E extends SegmentedLru.Entry> {
+    /**
+     * Base of the entries of a cache using this order.
+     */
+    static class Entry {
+        Entry prev;
+        Entry next;
+        long weight;
+        boolean inProtected;
+        boolean linked;
+    }
+
+    private final Entry probation = new Entry();
+    private final Entry protectedSegment = new Entry();
+    private final long maxWeight;
+    private final long maxProtectedWeight;
+    private long weight;
+    private long protectedWeight;
+    private long evictionCount;
+
+    SegmentedLru(long maxWeight) {
+        this.maxWeight = maxWeight;
+        this.maxProtectedWeight = (long) (maxWeight * Constants.CACHE_PROTECTED_RATIO);
+        clear();
+    }
+
+    /**
+     * Links a new entry at the most recently used end of probation.
+     */
+    void add(E entry, long entryWeight) {
+        entry.weight = entryWeight;
+        entry.inProtected = false;
+        entry.linked = true;
+        linkFirst(probation, entry);
+        weight += entryWeight;
+    }
+
+    /**
+     * Records a hit: promotes a probation entry, or moves a protected entry to the front.
+     */
+    void access(E entry) {
+        if (!entry.linked) {
+            return;
+        }
+        unlink(entry);
+        if (!entry.inProtected) {
+            entry.inProtected = true;
+            protectedWeight += entry.weight;
+        }
+        linkFirst(protectedSegment, entry);
+        while (protectedWeight > maxProtectedWeight && protectedSegment.prev != entry) {
+            Entry demoted = protectedSegment.prev;
+            unlink(demoted);
+            demoted.inProtected = false;
+            protectedWeight -= demoted.weight;
+            linkFirst(probation, demoted);
+        }
+    }
+
+    void remove(E entry) {
+        if (!entry.linked) {
+            return;
+        }
+        unlink(entry);
+        entry.linked = false;
+        weight -= entry.weight;
+        if (entry.inProtected) {
+            entry.inProtected = false;
+            protectedWeight -= entry.weight;
+        }
+    }
+
+    /**
+     * Unlinks and returns the next entry to evict while the total weight exceeds the maximum.
+     *
+     * @return the victim, or null if the cache is within its maximum weight
+     */
+    @SuppressWarnings("unchecked")
+    E evict() {
+        if (weight <= maxWeight) {
+            return null;
+        }
+        Entry victim = probation.prev != probation ? probation.prev : protectedSegment.prev;
+        if (victim == protectedSegment) {
+            return null;
+        }
+        remove((E) victim);
+        evictionCount++;
+        return (E) victim;
+    }
+
+    void clear() {
+        probation.prev = probation;
+        probation.next = probation;
+        protectedSegment.prev = protectedSegment;
+        protectedSegment.next = protectedSegment;
+        weight = 0;
+        protectedWeight = 0;
+    }
+
+    long getWeight() {
+        return weight;
+    }
+
+    long getMaxWeight() {
+        return maxWeight;
+    }
+
+    long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private static void linkFirst(Entry head, Entry entry) {
+        entry.prev = head;
+        entry.next = head.next;
+        head.next.prev = entry;
+        head.next = entry;
+    }
+
+    private static void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+}
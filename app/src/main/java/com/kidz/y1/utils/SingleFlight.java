@@ -0,0 +1,64 @@
+package com.kidz.y1.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Coalesces concurrent computations of the same key.
+ *
+ * The first caller for a key runs the work; callers arriving while it is in flight wait
+ * for it and receive the same result, or the same exception. Once the work completes the
+ * key is released, so later callers compute again (callers are expected to cache results
+ * themselves).
+ *
+ * Threading:
+ * - run() blocks while another thread computes the same key; call it from background threads
+ *
+ * Compatible with API 17+.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, Call<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the work for a key, or joins the computation already in flight for it.
+     *
+     * @param key the key identifying the computation
+     * @param work the computation to run if none is in flight
+     * @return the result of the shared computation
+     * @throws Exception the exception thrown by the shared computation
+     */
+    public V run(K key, Callable<V> work) throws Exception {
+        Call<V> call = new Call<>();
+        Call<V> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            return inFlight.await();
+        }
+        try {
+            call.result = work.call();
+        } catch (Exception e) {
+            call.error = e;
+        } finally {
+            calls.remove(key, call);
+            call.done.countDown();
+        }
+        if (call.error != null) {
+            throw call.error;
+        }
+        return call.result;
+    }
+
+    private static class Call<V> {
+        final CountDownLatch done = new CountDownLatch(1);
+        V result;
+        Exception error;
+
+        V await() throws Exception {
+            done.await();
+            if (error != null) {
+                throw error;
+            }
+            return result;
+        }
+    }
+}
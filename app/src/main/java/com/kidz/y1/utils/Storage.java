@@ -0,0 +1,31 @@
+package com.kidz.y1.utils;
+
+/**
+ * Holds the StorageBackend used by the static scanning and image helpers.
+ *
+ * Defaults to the device's filesystem (FileStorageBackend). Replace it before the library
+ * is first loaded, e.g. through MusicRepository.setStorageBackend() to scan an
+ * InMemoryStorageBackend off-device.
+ *
+ * Threading:
+ * - get() and set() may be called from any thread
+ *
+ * Compatible with API 17+.
+ */
+public final class Storage {
+    private static volatile StorageBackend backend = new FileStorageBackend();
+
+    private Storage() {
+    }
+
+    public static StorageBackend get() {
+        return backend;
+    }
+
+    /**
+     * @param storageBackend the backend to use; null restores the filesystem
+     */
+    public static void set(StorageBackend storageBackend) {
+        backend = storageBackend != null ? storageBackend : new FileStorageBackend();
+    }
+}
@@ -0,0 +1,91 @@
+package com.kidz.y1.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The storage the library is read from: directory listings, file attributes and contents.
+ *
+ * The scanner, the image resolver, the playlist reader and the repositories access the
+ * library only through the backend returned by Storage.get(), so a scan can run against
+ * an in-memory tree (see InMemoryStorageBackend) instead of the device's filesystem; even
+ * embedded cover art is looked up through the backend, so a scan needs no media framework.
+ * Files are plain paths; creating a File does not touch the backend.
+ *
+ * Attribute methods follow java.io.File: a missing or unreadable file is not a file or
+ * directory, and has a modification time and length of 0.
+ *
+ * Threading:
+ * - All methods may perform I/O and should be called from background threads
+ * - Implementations must be thread-safe; the scan pool calls them concurrently
+ *
+ * Compatible with API 17+.
+ */
+public interface StorageBackend {
+    /**
+     * @return the primary external storage directory, which may not exist
+     */
+    File getExternalStorageDirectory();
+
+    /**
+     * @return the directories of additional storage volumes, e.g. a removable card; may be empty
+     */
+    List<File> getSecondaryStorageDirectories();
+
+    /**
+     * @return the public music directory of the primary external storage, which may not exist
+     */
+    File getMusicDirectory();
+
+    /**
+     * @param directory the directory to list
+     * @return the names of the directory's entries, in no particular order, or null if the
+     *         directory does not exist or cannot be read
+     */
+    String[] list(File directory);
+
+    boolean isDirectory(File file);
+
+    boolean isFile(File file);
+
+    boolean exists(File file);
+
+    /**
+     * @return the modification time in milliseconds, or 0 if the file does not exist
+     */
+    long lastModified(File file);
+
+    /**
+     * @return the length in bytes, or 0 if the file does not exist
+     */
+    long length(File file);
+
+    /**
+     * Reads a file's type, modification time and length together, with one stat where the
+     * platform allows it. Compare its modification times with those of other stat() calls
+     * only: they may be less precise than lastModified().
+     *
+     * @return the attributes, or FileAttributes.MISSING if the file does not exist
+     */
+    FileAttributes stat(File file);
+
+    /**
+     * Opens a file for reading; the caller closes the stream.
+     *
+     * @param file the file to read
+     * @return a stream of the file's content
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    InputStream openInputStream(File file) throws IOException;
+
+    /**
+     * Checks an audio file for embedded cover art (ID3 picture, MP4 cover, FLAC/Vorbis picture).
+     * Blocking; may parse the file's metadata.
+     *
+     * @param track the audio file
+     * @return true if the file carries cover art, false if it has none or cannot be read
+     */
+    boolean hasEmbeddedPicture(File track);
+}
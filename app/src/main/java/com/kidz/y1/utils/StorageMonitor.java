@@ -0,0 +1,120 @@
+package com.kidz.y1.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Environment;
+
+import com.kidz.y1.models.LibraryIndex;
+import com.kidz.y1.repositories.ImageRepository;
+import com.kidz.y1.repositories.MusicRepository;
+
+/**
+ * Follows the state of external storage and keeps the repositories in step with it.
+ *
+ * - Unmounted (e.g. shared over USB with a PC, ejected or removed): file access in the
+ *   repositories is suspended and the LibraryWatcher stops, so no I/O queues up on the
+ *   executors while the files are gone
+ * - Mounted again: file access resumes and the library index is refreshed incrementally,
+ *   re-listing only the directories whose signature changed while the device was connected
+ * - Media scanner finished: the index is refreshed the same way, picking up changes the
+ *   directory watches may have missed
+ * - Other volumes mounted or removed: the indexes are refreshed, so library roots on a
+ *   removable card appear and disappear with it
+ *
+ * Suspension is always decided from Environment.getExternalStorageState(), so broadcasts
+ * for other volumes never suspend the primary library root.
+ *
+ * Threading:
+ * - Broadcasts are received on the main thread; refreshes run on MusicRepository's executor
+ *
+ * Compatible with API 17+.
+ */
+public class StorageMonitor {
+    private final Context context;
+    private final MusicRepository musicRepository;
+    private final ImageRepository imageRepository;
+    private final LibraryWatcher libraryWatcher;
+    private BroadcastReceiver receiver;
+
+    public StorageMonitor(Context context, MusicRepository musicRepository, ImageRepository imageRepository,
+            LibraryWatcher libraryWatcher) {
+        this.context = context.getApplicationContext();
+        this.musicRepository = musicRepository;
+        this.imageRepository = imageRepository;
+        this.libraryWatcher = libraryWatcher;
+    }
+
+    /**
+     * Applies the current storage state and starts receiving storage broadcasts.
+     */
+    public void start() {
+        if (receiver != null) {
+            return;
+        }
+        setStorageAvailable(isStorageMounted());
+
+        receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onStorageBroadcast(intent.getAction());
+            }
+        };
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_MEDIA_MOUNTED);
+        filter.addAction(Intent.ACTION_MEDIA_UNMOUNTED);
+        filter.addAction(Intent.ACTION_MEDIA_SHARED);
+        filter.addAction(Intent.ACTION_MEDIA_EJECT);
+        filter.addAction(Intent.ACTION_MEDIA_REMOVED);
+        filter.addAction(Intent.ACTION_MEDIA_BAD_REMOVAL);
+        filter.addAction(Intent.ACTION_MEDIA_SCANNER_FINISHED);
+        // Media broadcasts carry the volume as a file:// Uri and only match filters with that scheme
+        filter.addDataScheme("file");
+        context.registerReceiver(receiver, filter);
+    }
+
+    public void stop() {
+        if (receiver != null) {
+            context.unregisterReceiver(receiver);
+            receiver = null;
+        }
+    }
+
+    private void onStorageBroadcast(String action) {
+        boolean mounted = isStorageMounted() && !Intent.ACTION_MEDIA_EJECT.equals(action);
+        Logger.d("StorageMonitor", "Storage broadcast " + action + ", mounted: " + mounted);
+        setStorageAvailable(mounted);
+        if (!mounted) {
+            libraryWatcher.stop();
+            return;
+        }
+        refreshLibrary();
+    }
+
+    private void setStorageAvailable(boolean available) {
+        musicRepository.setStorageAvailable(available);
+        imageRepository.setStorageAvailable(available);
+    }
+
+    private void refreshLibrary() {
+        musicRepository.refreshLibraryIndexes(new MusicRepository.RepositoryCallback<LibraryIndex>() {
+            @Override
+            public void onSuccess(LibraryIndex result) {
+                // Listeners only run when the index changed; the watches were dropped either way
+                imageRepository.onLibraryIndexValidated(result);
+                libraryWatcher.watchLibrary(result);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Logger.w("StorageMonitor", "Library refresh after storage change failed", error);
+            }
+        });
+    }
+
+    private static boolean isStorageMounted() {
+        String state = Environment.getExternalStorageState();
+        return Environment.MEDIA_MOUNTED.equals(state) || Environment.MEDIA_MOUNTED_READ_ONLY.equals(state);
+    }
+}
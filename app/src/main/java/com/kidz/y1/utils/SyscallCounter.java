@@ -0,0 +1,63 @@
+package com.kidz.y1.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters of the filesystem calls made while listing the library.
+ *
+ * Each directory read (File.list()), each stat (lastModified(), isDirectory(), ...) and
+ * each file opened to sniff its content is a separate syscall on the SD card; on
+ * FAT-formatted cards the stats dominate large album folders. Callers take a snapshot before an operation and log the difference
+ * afterwards, e.g. LibraryWalker after each walk.
+ *
+ * Threading:
+ * - All methods are thread-safe; concurrent operations are counted together
+ *
+ * Compatible with API 17+.
+ */
+public class SyscallCounter {
+    private static final AtomicLong directoryReads = new AtomicLong();
+    private static final AtomicLong stats = new AtomicLong();
+    private static final AtomicLong fileReads = new AtomicLong();
+
+    private SyscallCounter() {
+    }
+
+    public static void countDirectoryRead() {
+        directoryReads.incrementAndGet();
+    }
+
+    public static void countStat() {
+        stats.incrementAndGet();
+    }
+
+    public static void countFileRead() {
+        fileReads.incrementAndGet();
+    }
+
+    public static long getDirectoryReads() {
+        return directoryReads.get();
+    }
+
+    public static long getStats() {
+        return stats.get();
+    }
+
+    public static long getFileReads() {
+        return fileReads.get();
+    }
+
+    /**
+     * Describes the calls made since a snapshot.
+     *
+     * @param directoryReadsBefore getDirectoryReads() at the snapshot
+     * @param statsBefore getStats() at the snapshot
+     * @param fileReadsBefore getFileReads() at the snapshot
+     * @return e.g. "12 directory reads, 14 stats, 0 file reads"
+     */
+    public static String describeSince(long directoryReadsBefore, long statsBefore, long fileReadsBefore) {
+        return (getDirectoryReads() - directoryReadsBefore) + " directory reads, "
+                + (getStats() - statsBefore) + " stats, "
+                + (getFileReads() - fileReadsBefore) + " file reads";
+    }
+}
@@ -6,6 +6,8 @@ import androidx.lifecycle.ViewModel;
 
 import com.kidz.y1.di.DependencyProvider;
 import com.kidz.y1.models.Album;
+import com.kidz.y1.models.LibraryDiff;
+import com.kidz.y1.models.NameIndex;
 import com.kidz.y1.models.Profile;
 import com.kidz.y1.repositories.MusicRepository;
 
@@ -14,12 +16,17 @@ import java.util.List;
 /**
  * ViewModel for AlbumsActivity.
  * Manages album data for a specific profile.
+ * Albums are published as they are discovered; isLoading turns false once the listing is complete.
+ * Each published listing is followed by its diff from the previous one (getAlbumChanges()),
+ * and its NameIndex is built before the diff is posted (getAlbumNames()).
  */
 public class AlbumsViewModel extends ViewModel {
     private final MusicRepository musicRepository;
     private final MutableLiveData<List<Album>> albums = new MutableLiveData<>();
+    private final MutableLiveData<LibraryDiff<Album>> albumChanges = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
+    private final ListingNames<Album> albumNames = new ListingNames<>(Album::getName);
     private Profile profile;
 
     public AlbumsViewModel() {
@@ -54,13 +61,24 @@ public class AlbumsViewModel extends ViewModel {
         isLoading.setValue(true);
         errorMessage.setValue(null);
 
-        musicRepository.getAlbums(profile, new MusicRepository.RepositoryCallback<List<Album>>() {
+        musicRepository.getAlbums(profile, new MusicRepository.ChangeCallback<Album>() {
+            @Override
+            public void onPartial(List<Album> discovered) {
+                albums.postValue(discovered);
+            }
+
             @Override
             public void onSuccess(List<Album> result) {
                 albums.postValue(result);
                 isLoading.postValue(false);
             }
 
+            @Override
+            public void onChanged(LibraryDiff<Album> diff) {
+                albumNames.update(diff.getCurrent());
+                albumChanges.postValue(diff);
+            }
+
             @Override
             public void onError(Exception error) {
                 errorMessage.postValue("Failed to load albums: " + error.getMessage());
@@ -73,6 +91,22 @@ public class AlbumsViewModel extends ViewModel {
         return albums;
     }
 
+    /**
+     * Diffs between the listings published by getAlbums(). Intermediate diffs may be
+     * skipped by LiveData; compare getPrevious() with the listing on screen before applying one.
+     */
+    public LiveData<LibraryDiff<Album>> getAlbumChanges() {
+        return albumChanges;
+    }
+
+    /**
+     * @param listing a listing published by getAlbums() or getAlbumChanges()
+     * @return the NameIndex of that listing, or null if it is not the latest one
+     */
+    public NameIndex getAlbumNames(List<Album> listing) {
+        return albumNames.get(listing);
+    }
+
     public LiveData<Boolean> getIsLoading() {
         return isLoading;
     }
@@ -0,0 +1,74 @@
+package com.kidz.y1.viewmodels;
+
+import com.kidz.y1.models.LibraryNode;
+import com.kidz.y1.models.NameIndex;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * The NameIndex of the latest listing a ViewModel published.
+ *
+ * The index is built by update() on the background thread that delivers the listing, before
+ * the listing is posted, so a screen that received the listing finds its index ready and
+ * never builds one on the main thread.
+ *
+ * Threading:
+ * - update() is called from repository callbacks, get() from the main thread
+ *
+ * Compatible with API 17+.
+ */
+final class ListingNames<T extends LibraryNode> {
+    private final Namer<T> namer;
+    private volatile Entry<T> latest;
+
+    /**
+     * Names the nodes of a listing as the screen displays them.
+     */
+    interface Namer<T> {
+        String getName(T node);
+    }
+
+    ListingNames(Namer<T> namer) {
+        this.namer = namer;
+    }
+
+    /**
+     * Builds the index of a listing about to be published, in O(n log n).
+     *
+     * @param listing the listing, in display order
+     */
+    void update(List<T> listing) {
+        NameIndex names = NameIndex.build(new AbstractList<String>() {
+            @Override
+            public String get(int position) {
+                return namer.getName(listing.get(position));
+            }
+
+            @Override
+            public int size() {
+                return listing.size();
+            }
+        });
+        latest = new Entry<>(listing, names);
+    }
+
+    /**
+     * @param listing a listing published by the ViewModel
+     * @return the index of that listing, or null if a newer listing replaced it
+     */
+    NameIndex get(List<T> listing) {
+        Entry<T> entry = latest;
+        return entry != null && entry.listing == listing ? entry.names : null;
+    }
+
+    private static class Entry<T> {
+        final List<T> listing;
+        final NameIndex names;
+
+        Entry(List<T> listing, NameIndex names) {
+            this.listing = listing;
+            this.names = names;
+        }
+    }
+}
@@ -6,6 +6,8 @@ import androidx.lifecycle.SavedStateHandle;
 import androidx.lifecycle.ViewModel;
 
 import com.kidz.y1.di.DependencyProvider;
+import com.kidz.y1.models.LibraryDiff;
+import com.kidz.y1.models.NameIndex;
 import com.kidz.y1.models.Profile;
 import com.kidz.y1.repositories.MusicRepository;
 import com.kidz.y1.utils.Constants;
@@ -15,15 +17,20 @@ import java.util.List;
 /**
  * ViewModel for MainActivity.
  * Manages profile data and state.
+ * Profiles are published as they are discovered; isLoading turns false once the listing is complete.
+ * Each published listing is followed by its diff from the previous one (getProfileChanges()),
+ * and its NameIndex is built before the diff is posted (getProfileNames()).
  * Uses SavedStateHandle to survive process death (API 17+ compatible).
  */
 public class MainViewModel extends ViewModel {
     private final MusicRepository musicRepository;
     private final SavedStateHandle savedStateHandle;
     private final MutableLiveData<List<Profile>> profiles = new MutableLiveData<>();
+    private final MutableLiveData<LibraryDiff<Profile>> profileChanges = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isKidzDirectoryExists = new MutableLiveData<>();
+    private final ListingNames<Profile> profileNames = new ListingNames<>(Profile::getName);
 
     public MainViewModel() {
         this(DependencyProvider.getMusicRepository(), null);
@@ -51,13 +58,24 @@ public class MainViewModel extends ViewModel {
         isLoading.setValue(true);
         errorMessage.setValue(null);
 
-        musicRepository.getProfiles(new MusicRepository.RepositoryCallback<List<Profile>>() {
+        musicRepository.getProfiles(new MusicRepository.ChangeCallback<Profile>() {
+            @Override
+            public void onPartial(List<Profile> discovered) {
+                profiles.postValue(discovered);
+            }
+
             @Override
             public void onSuccess(List<Profile> result) {
                 profiles.postValue(result);
                 isLoading.postValue(false);
             }
 
+            @Override
+            public void onChanged(LibraryDiff<Profile> diff) {
+                profileNames.update(diff.getCurrent());
+                profileChanges.postValue(diff);
+            }
+
             @Override
             public void onError(Exception error) {
                 errorMessage.postValue("Failed to load profiles: " + error.getMessage());
@@ -70,6 +88,22 @@ public class MainViewModel extends ViewModel {
         return profiles;
     }
 
+    /**
+     * Diffs between the listings published by getProfiles(). Intermediate diffs may be
+     * skipped by LiveData; compare getPrevious() with the listing on screen before applying one.
+     */
+    public LiveData<LibraryDiff<Profile>> getProfileChanges() {
+        return profileChanges;
+    }
+
+    /**
+     * @param listing a listing published by getProfiles() or getProfileChanges()
+     * @return the NameIndex of that listing, or null if it is not the latest one
+     */
+    public NameIndex getProfileNames(List<Profile> listing) {
+        return profileNames.get(listing);
+    }
+
     public LiveData<Boolean> getIsLoading() {
         return isLoading;
     }
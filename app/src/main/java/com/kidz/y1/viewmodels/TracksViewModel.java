@@ -6,21 +6,35 @@ import androidx.lifecycle.ViewModel;
 
 import com.kidz.y1.di.DependencyProvider;
 import com.kidz.y1.models.Album;
-import com.kidz.y1.models.Track;
+import com.kidz.y1.models.NameIndex;
+import com.kidz.y1.models.TrackPage;
 import com.kidz.y1.repositories.MusicRepository;
+import com.kidz.y1.utils.Constants;
 
-import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ViewModel for TracksActivity.
  * Manages track data for a specific album.
+ * 
+ * Tracks are loaded in windows of Constants.TRACK_PAGE_SIZE around the selected position;
+ * a new window is requested when the selection comes within Constants.TRACK_PAGE_MARGIN of
+ * the edge of the current one. Only the latest requested window is published.
+ * The NameIndex of the whole album is loaded separately, on the first jump or type-ahead
+ * (loadTrackNames()), so opening an album never pays for indexing it.
  */
 public class TracksViewModel extends ViewModel {
     private final MusicRepository musicRepository;
-    private final MutableLiveData<List<Track>> tracks = new MutableLiveData<>();
+    private final MutableLiveData<TrackPage> trackPage = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
+    private final MutableLiveData<NameIndex> trackNames = new MutableLiveData<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger namesRequestCount = new AtomicInteger();
+    private final AtomicBoolean loadingTrackNames = new AtomicBoolean();
     private Album album;
+    private int requestedOffset = -1;
 
     public TracksViewModel() {
         this(DependencyProvider.getMusicRepository());
@@ -31,46 +45,114 @@ public class TracksViewModel extends ViewModel {
     }
 
     /**
-     * Set the album and load tracks.
+     * Set the album and load the tracks around a position.
+     * 
+     * @param album the album to list
+     * @param selectedIndex the position the listing opens at
      */
-    public void setAlbum(Album album) {
+    public void setAlbum(Album album, int selectedIndex) {
         this.album = album;
-        loadTracks();
+        this.requestedOffset = -1;
+        clearTrackNames();
+        loadTracks(selectedIndex);
     }
 
     /**
-     * Load tracks for the current album.
+     * Load the NameIndex of all tracks of the album, unless it is loaded or loading.
      */
-    public void loadTracks() {
+    public void loadTrackNames() {
+        if (album == null || trackNames.getValue() != null || !loadingTrackNames.compareAndSet(false, true)) {
+            return;
+        }
+        int request = namesRequestCount.incrementAndGet();
+        musicRepository.getTrackNames(album, new MusicRepository.RepositoryCallback<NameIndex>() {
+            @Override
+            public void onSuccess(NameIndex result) {
+                if (request == namesRequestCount.get()) {
+                    trackNames.postValue(result);
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                if (request == namesRequestCount.get()) {
+                    loadingTrackNames.set(false);
+                    errorMessage.postValue("Failed to index tracks: " + error.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop the NameIndex, e.g. after the album listing changed; the next jump loads it again.
+     */
+    public void clearTrackNames() {
+        namesRequestCount.incrementAndGet();
+        loadingTrackNames.set(false);
+        trackNames.setValue(null);
+    }
+
+    /**
+     * Load the window of tracks around a position, unless the current window already
+     * covers the tracks within Constants.TRACK_PAGE_MARGIN of it.
+     * 
+     * @param index the position to load tracks around
+     */
+    public void loadTracks(int index) {
         if (album == null) {
             errorMessage.setValue("No album selected");
             return;
         }
 
-        if (isLoading.getValue() != null && isLoading.getValue()) {
+        TrackPage current = trackPage.getValue();
+        if (current != null && coversMargin(current, index)) {
+            return;
+        }
+        int offset = Math.max(0, index - Constants.TRACK_PAGE_SIZE / 2);
+        if (offset == requestedOffset) {
             return; // Already loading
         }
+        requestedOffset = offset;
 
         isLoading.setValue(true);
         errorMessage.setValue(null);
 
-        musicRepository.getTracks(album, new MusicRepository.RepositoryCallback<List<Track>>() {
+        int request = requestCount.incrementAndGet();
+        musicRepository.getTracks(album, offset, Constants.TRACK_PAGE_SIZE,
+                new MusicRepository.RepositoryCallback<TrackPage>() {
             @Override
-            public void onSuccess(List<Track> result) {
-                tracks.postValue(result);
-                isLoading.postValue(false);
+            public void onSuccess(TrackPage result) {
+                if (request == requestCount.get()) {
+                    trackPage.postValue(result);
+                    isLoading.postValue(false);
+                }
             }
 
             @Override
             public void onError(Exception error) {
-                errorMessage.postValue("Failed to load tracks: " + error.getMessage());
-                isLoading.postValue(false);
+                if (request == requestCount.get()) {
+                    errorMessage.postValue("Failed to load tracks: " + error.getMessage());
+                    isLoading.postValue(false);
+                }
             }
         });
     }
 
-    public LiveData<List<Track>> getTracks() {
-        return tracks;
+    private static boolean coversMargin(TrackPage page, int index) {
+        int first = Math.max(0, index - Constants.TRACK_PAGE_MARGIN);
+        int last = Math.min(page.getTotalCount() - 1, index + Constants.TRACK_PAGE_MARGIN);
+        return last < first || (page.contains(first) && page.contains(last));
+    }
+
+    public LiveData<TrackPage> getTrackPage() {
+        return trackPage;
+    }
+
+    /**
+     * @return the NameIndex of all tracks of the album, by album position; null until loaded
+     */
+    public LiveData<NameIndex> getTrackNames() {
+        return trackNames;
     }
 
     public LiveData<Boolean> getIsLoading() {
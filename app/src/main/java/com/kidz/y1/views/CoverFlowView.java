@@ -25,8 +25,29 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Horizontal 3D carousel of covers.
+ *
+ * Items are addressed by position; their data sources come from a CoverSource, which may
+ * not know every position yet (e.g. a track listing loaded in windows). Only the covers
+ * around the scroll position are bound, to a fixed pool of ImageViews, so the cost of
+ * showing a list does not depend on its length. notifyCoversChanged() rebinds the pool
+ * after the source learned new positions, and applyChanges() moves the bound covers after
+ * items were added, removed or moved, reloading only the covers of new items.
+ *
+ * Threading:
+ * - All methods must be called on the main thread
+ *
+ * Compatible with API 17+.
+ */
 public class CoverFlowView extends ViewGroup {
-    private List<CoverItem> covers = new ArrayList<>();
+    // Covers bound on each side of the center cover, visible or preloaded
+    private static final int BOUND_RANGE = Math.max(Constants.COVER_PRELOAD_RANGE,
+            Constants.COVER_VISIBILITY_THRESHOLD + 1);
+
+    private final List<CoverItem> covers = new ArrayList<>();
+    private int itemCount = 0;
+    private CoverSource coverSource;
     private int selectedIndex = 0;
     private int coverSize;
     private int spacing;
@@ -45,8 +66,33 @@ public class CoverFlowView extends ViewGroup {
         void onCoverSelected(int index);
     }
 
+    /**
+     * Provides the data sources of the covers.
+     */
+    public interface CoverSource {
+        /**
+         * @param index the position of the cover
+         * @return the file to find the cover image of, or null if it is not known yet
+         */
+        File getCover(int index);
+    }
+
+    /**
+     * Maps the positions of a source to its positions after a structural change.
+     */
+    public interface PositionMap {
+        /**
+         * @param oldPosition a position before the change
+         * @return the position of the same item after the change, or -1 if it was removed
+         *         or is not known
+         */
+        int getNewPosition(int oldPosition);
+    }
+
     private static class CoverItem {
         ImageView imageView;
+        // Position the view is bound to, or -1 if it is free
+        int index = -1;
         File dataSource;
         String imagePath;
     }
@@ -80,60 +126,166 @@ public class CoverFlowView extends ViewGroup {
     }
 
     public void setCoversFromSources(List<File> dataSources, ImageHelper.ImageType imageType, int coverSize) {
+        if (dataSources == null) {
+            setCovers(0, null, imageType, coverSize);
+        } else {
+            setCovers(dataSources.size(), dataSources::get, imageType, coverSize);
+        }
+    }
+
+    /**
+     * Shows itemCount covers, whose data sources are requested from the source as they are bound.
+     */
+    public void setCovers(int itemCount, CoverSource source, ImageHelper.ImageType imageType, int coverSize) {
         for (CoverItem item : covers) {
-            if (item.imageView != null) {
-                Glide.with(getContext()).clear(item.imageView);
-            }
+            unbindCover(item);
         }
-        removeAllViews();
-        covers.clear();
+        this.itemCount = source != null ? itemCount : 0;
+        this.coverSource = source;
         this.imageType = imageType;
         this.coverSize = coverSize;
         this.spacing = (int) (coverSize * Constants.COVER_SPACING_RATIO);
         requestOptionsInitialized = false;
 
-        if (dataSources == null || dataSources.isEmpty()) {
+        if (this.itemCount == 0) {
             return;
         }
 
-        for (File dataSource : dataSources) {
-            CoverItem item = new CoverItem();
-            item.dataSource = dataSource;
-            item.imagePath = ImageHelper.findImagePath(dataSource, imageType);
-            ImageView imageView = new ImageView(getContext());
-            imageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
-            imageView.setBackgroundColor(0xFF000000);
-            imageView.setImageDrawable(null);
-            imageView.setLayoutParams(new LayoutParams(coverSize, coverSize));
-            item.imageView = imageView;
-            covers.add(item);
-            addView(imageView);
+        if (covers.isEmpty()) {
+            for (int i = 0; i < 2 * BOUND_RANGE + 1; i++) {
+                CoverItem item = new CoverItem();
+                ImageView imageView = new ImageView(getContext());
+                imageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
+                imageView.setBackgroundColor(0xFF000000);
+                imageView.setImageDrawable(null);
+                imageView.setVisibility(View.INVISIBLE);
+                item.imageView = imageView;
+                covers.add(item);
+                addView(imageView);
+            }
+        }
+        for (CoverItem item : covers) {
+            item.imageView.setLayoutParams(new LayoutParams(coverSize, coverSize));
         }
 
-        selectedIndex = Math.max(0, Math.min(selectedIndex, covers.size() - 1));
+        selectedIndex = Math.max(0, Math.min(selectedIndex, this.itemCount - 1));
         scrollOffset = selectedIndex;
         requestLayout();
         invalidate();
         loadVisibleCovers();
     }
 
+    /**
+     * Rebinds the covers whose data source changed, e.g. after the source loaded more positions.
+     */
+    public void notifyCoversChanged() {
+        if (coverSource == null) {
+            return;
+        }
+        for (CoverItem item : covers) {
+            if (item.index >= 0) {
+                File dataSource = coverSource.getCover(item.index);
+                if (dataSource != null && !dataSource.equals(item.dataSource)) {
+                    bindCover(item, item.index, dataSource);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a structural change of the source without reloading the covers of items that
+     * are still listed: their views keep their image and only move to the new position.
+     * Covers of removed items are unbound and positions that became visible are bound.
+     *
+     * @param itemCount the number of items after the change
+     * @param positions maps the positions before the change to the positions after it
+     * @param selectedIndex the position to select after the change
+     */
+    public void applyChanges(int itemCount, PositionMap positions, int selectedIndex) {
+        if (coverSource == null || this.itemCount == 0 || itemCount == 0) {
+            setCovers(itemCount, coverSource, imageType, coverSize);
+            setSelectedIndexWithoutAnimation(selectedIndex);
+            return;
+        }
+        for (CoverItem item : covers) {
+            if (item.index >= 0) {
+                int index = positions.getNewPosition(item.index);
+                if (index < 0 || index >= itemCount) {
+                    unbindCover(item);
+                } else {
+                    item.index = index;
+                }
+            }
+        }
+        this.itemCount = itemCount;
+        this.selectedIndex = Math.max(0, Math.min(selectedIndex, itemCount - 1));
+        scroller.forceFinished(true);
+        isScrolling = false;
+        scrollOffset = this.selectedIndex;
+        loadVisibleCovers();
+        notifyCoversChanged();
+        requestLayout();
+        invalidate();
+    }
+
     private void loadVisibleCovers() {
-        // Load covers that are currently visible (center ± 2 for smooth scrolling)
+        // Bind covers that are currently visible (center ± BOUND_RANGE for smooth scrolling)
         int centerIndex = Math.round(scrollOffset);
-        int startIndex = Math.max(0, centerIndex - 2);
-        int endIndex = Math.min(covers.size() - 1, centerIndex + 2);
+        int startIndex = Math.max(0, centerIndex - BOUND_RANGE);
+        int endIndex = Math.min(itemCount - 1, centerIndex + BOUND_RANGE);
 
+        for (CoverItem item : covers) {
+            if (item.index >= 0 && (item.index < startIndex || item.index > endIndex)) {
+                unbindCover(item);
+            }
+        }
         for (int i = startIndex; i <= endIndex; i++) {
-            loadCover(i);
+            if (findCover(i) == null) {
+                CoverItem item = findCover(-1);
+                if (item == null) {
+                    break;
+                }
+                bindCover(item, i, coverSource.getCover(i));
+            }
         }
     }
 
-    private void loadCover(int index) {
-        if (index < 0 || index >= covers.size()) {
+    private CoverItem findCover(int index) {
+        for (CoverItem item : covers) {
+            if (item.index == index) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private void bindCover(CoverItem item, int index, File dataSource) {
+        item.index = index;
+        item.dataSource = dataSource;
+        if (dataSource == null) {
+            // Not loaded yet: keep the cover blank until notifyCoversChanged()
+            item.imagePath = null;
+            Glide.with(getContext()).clear(item.imageView);
+            item.imageView.setImageDrawable(null);
             return;
         }
+        item.imagePath = ImageHelper.findImagePath(dataSource, imageType);
+        loadCover(item);
+    }
 
-        CoverItem item = covers.get(index);
+    private void unbindCover(CoverItem item) {
+        if (item.index < 0) {
+            return;
+        }
+        item.index = -1;
+        item.dataSource = null;
+        item.imagePath = null;
+        Glide.with(getContext()).clear(item.imageView);
+        item.imageView.setImageDrawable(null);
+        item.imageView.setVisibility(View.INVISIBLE);
+    }
+
+    private void loadCover(CoverItem item) {
         if (item.imagePath == null) {
             // Load null to trigger error fallback (ic_no_cover)
             RequestOptions options = getRequestOptions();
@@ -199,10 +351,10 @@ public class CoverFlowView extends ViewGroup {
     }
 
     public void setSelectedIndexWithoutAnimation(int index) {
-        if (covers.isEmpty()) {
+        if (itemCount == 0) {
             return;
         }
-        selectedIndex = Math.max(0, Math.min(index, covers.size() - 1));
+        selectedIndex = Math.max(0, Math.min(index, itemCount - 1));
         scrollOffset = selectedIndex;
         loadVisibleCovers();
         requestLayout();
@@ -252,11 +404,11 @@ public class CoverFlowView extends ViewGroup {
      */
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        if (covers.isEmpty() || coverSize == 0) {
+        if (itemCount == 0 || coverSize == 0) {
             return;
         }
         
-        // Load covers when layout changes (scroll offset changed)
+        // Bind covers when layout changes (scroll offset changed)
         loadVisibleCovers();
         
         int centerX = getWidth() / 2;
@@ -271,12 +423,11 @@ public class CoverFlowView extends ViewGroup {
      * @param centerY center Y coordinate
      */
     private void layoutVisibleCovers(int centerX, int centerY) {
-        for (int i = 0; i < covers.size(); i++) {
-            CoverItem item = covers.get(i);
-            float position = i - scrollOffset;
+        for (CoverItem item : covers) {
+            float position = item.index - scrollOffset;
             float absPosition = Math.abs(position);
 
-            if (absPosition > Constants.COVER_VISIBILITY_THRESHOLD + 0.5f) {
+            if (item.index < 0 || absPosition > Constants.COVER_VISIBILITY_THRESHOLD + 0.5f) {
                 item.imageView.setVisibility(View.INVISIBLE);
                 continue;
             }
@@ -387,10 +538,10 @@ public class CoverFlowView extends ViewGroup {
     }
 
     public void scrollToNext() {
-        if (covers.isEmpty()) {
+        if (itemCount == 0) {
             return;
         }
-        if (selectedIndex < covers.size() - 1) {
+        if (selectedIndex < itemCount - 1) {
             int newIndex = selectedIndex + 1;
             selectedIndex = newIndex;
             if (listener != null) {
@@ -400,8 +551,30 @@ public class CoverFlowView extends ViewGroup {
         }
     }
 
+    /**
+     * Selects a cover without animating through the covers in between, e.g. to jump to the
+     * next letter of a long listing. Notifies the listener like scrollToNext().
+     *
+     * @param index the position to select
+     */
+    public void jumpToIndex(int index) {
+        if (itemCount == 0) {
+            return;
+        }
+        int newIndex = Math.max(0, Math.min(index, itemCount - 1));
+        if (newIndex == selectedIndex) {
+            return;
+        }
+        scroller.forceFinished(true);
+        isScrolling = false;
+        setSelectedIndexWithoutAnimation(newIndex);
+        if (listener != null) {
+            listener.onCoverSelected(newIndex);
+        }
+    }
+
     public void scrollToPrevious() {
-        if (covers.isEmpty()) {
+        if (itemCount == 0) {
             return;
         }
         if (selectedIndex > 0) {
@@ -0,0 +1,93 @@
+package com.kidz.y1.models;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LibraryDiffTest {
+
+    @Test
+    public void identicalListingsHaveNoChanges() {
+        LibraryDiff<Profile> diff = LibraryDiff.between(profiles("A", "B", "C"), profiles("A", "B", "C"));
+
+        assertTrue(diff.isEmpty());
+        assertEquals(2, diff.getNewPosition(2));
+    }
+
+    @Test
+    public void firstListingIsAllAdded() {
+        LibraryDiff<Profile> diff = LibraryDiff.between(null, profiles("A", "B"));
+
+        assertArrayEquals(new int[] {0, 1}, diff.getAdded());
+        assertArrayEquals(new int[0], diff.getRemoved());
+        assertEquals(0, diff.getPrevious().size());
+    }
+
+    @Test
+    public void shiftedNodesAreNeitherAddedNorMoved() {
+        LibraryDiff<Profile> diff = LibraryDiff.between(profiles("A", "B", "C", "D"), profiles("A", "X", "B", "D"));
+
+        assertArrayEquals(new int[] {1}, diff.getAdded());
+        assertArrayEquals(new int[] {2}, diff.getRemoved());
+        assertArrayEquals(new int[0], diff.getMoved());
+        assertEquals(2, diff.getNewPosition(1));
+        assertEquals(-1, diff.getNewPosition(2));
+        assertEquals(-1, diff.getOldPosition(1));
+        assertEquals(3, diff.getOldPosition(3));
+    }
+
+    @Test
+    public void reportsTheFewestMovedNodes() {
+        // E moved to the front; A-D keep their relative order
+        LibraryDiff<Profile> diff = LibraryDiff.between(profiles("A", "B", "C", "D", "E"),
+                profiles("E", "A", "B", "C", "D"));
+
+        assertArrayEquals(new int[] {0}, diff.getMoved());
+        assertFalse(diff.isEmpty());
+        assertEquals(0, diff.getNewPosition(4));
+    }
+
+    @Test
+    public void swapMovesOneNode() {
+        LibraryDiff<Profile> diff = LibraryDiff.between(profiles("A", "B", "C"), profiles("A", "C", "B"));
+
+        assertEquals(1, diff.getMoved().length);
+        assertArrayEquals(new int[0], diff.getAdded());
+        assertArrayEquals(new int[0], diff.getRemoved());
+    }
+
+    @Test
+    public void reversalKeepsOneNodeInOrder() {
+        LibraryDiff<Profile> diff = LibraryDiff.between(profiles("A", "B", "C", "D"), profiles("D", "C", "B", "A"));
+
+        assertEquals(3, diff.getMoved().length);
+    }
+
+    @Test
+    public void nodesAreMatchedByPath() {
+        List<Profile> previous = profiles("A", "B");
+        List<Profile> current = profiles("A", "B");
+
+        LibraryDiff<Profile> diff = LibraryDiff.between(previous, current);
+
+        assertTrue(diff.isEmpty());
+        assertSame(current, diff.getCurrent());
+        assertSame(previous, diff.getPrevious());
+    }
+
+    private static List<Profile> profiles(String... names) {
+        List<Profile> profiles = new ArrayList<>();
+        for (String name : names) {
+            profiles.add(new Profile(new File("/Kidz", name)));
+        }
+        return profiles;
+    }
+}
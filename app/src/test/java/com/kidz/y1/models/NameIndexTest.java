@@ -0,0 +1,73 @@
+package com.kidz.y1.models;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class NameIndexTest {
+    private static final NameIndex NAMES = NameIndex.build(Arrays.asList(
+            "1 Little Duck", "Abba", "apples", "Bingo", "Bluey", "Bluey Live", "Cocomelon"));
+
+    @Test
+    public void groupsRunsOfNamesByFirstLetter() {
+        assertEquals(7, NAMES.size());
+        assertEquals(NameIndex.OTHER_KEY, NAMES.getGroupKey(0));
+        assertEquals('A', NAMES.getGroupKey(2));
+        assertEquals('B', NAMES.getGroupKey(3));
+        assertEquals('C', NAMES.getGroupKey(6));
+    }
+
+    @Test
+    public void findsTheNextGroup() {
+        assertEquals(1, NAMES.getNextGroupStart(0));
+        assertEquals(3, NAMES.getNextGroupStart(1));
+        assertEquals(3, NAMES.getNextGroupStart(2));
+        assertEquals(6, NAMES.getNextGroupStart(4));
+        assertEquals(-1, NAMES.getNextGroupStart(6));
+    }
+
+    @Test
+    public void findsTheStartOfTheCurrentThenThePreviousGroup() {
+        assertEquals(3, NAMES.getPreviousGroupStart(5));
+        assertEquals(1, NAMES.getPreviousGroupStart(3));
+        assertEquals(0, NAMES.getPreviousGroupStart(1));
+        assertEquals(-1, NAMES.getPreviousGroupStart(0));
+    }
+
+    @Test
+    public void findsTheFirstNameWithAPrefixInAnyCase() {
+        assertEquals(4, NAMES.findPrefix("blu"));
+        assertEquals(5, NAMES.findPrefix("BLUEY L"));
+        assertEquals(2, NAMES.findPrefix("app"));
+        assertEquals(0, NAMES.findPrefix("1"));
+        assertEquals(-1, NAMES.findPrefix("z"));
+    }
+
+    @Test
+    public void groupKeySkipsLeadingPunctuation() {
+        assertEquals('P', NameIndex.getGroupKey("(Peppa)"));
+        assertEquals(NameIndex.OTHER_KEY, NameIndex.getGroupKey("42"));
+        assertEquals(NameIndex.OTHER_KEY, NameIndex.getGroupKey("--"));
+    }
+
+    @Test
+    public void mixedListingsMayHaveSeveralGroupsPerKey() {
+        NameIndex names = NameIndex.build(Arrays.asList("Alpha", "Beta", "Anthem"));
+
+        assertEquals(1, names.getNextGroupStart(0));
+        assertEquals(2, names.getNextGroupStart(1));
+        assertEquals(0, names.findPrefix("a"));
+        assertEquals(2, names.findPrefix("an"));
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        NameIndex names = NameIndex.build(Collections.<String>emptyList());
+
+        assertEquals(0, names.size());
+        assertEquals(-1, names.findPrefix("a"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.kidz.y1.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Sniffs synthetic files held in an InMemoryStorageBackend. Every test uses its own file
+ * names, since sniff results are cached by path.
+ */
+public class AudioFormatTest {
+    private static final File SDCARD = new File("/mem/sdcard");
+    private static final byte[] MDAT = box("mdat", new byte[4096]);
+
+    private InMemoryStorageBackend storage;
+
+    @Before
+    public void setUp() {
+        storage = new InMemoryStorageBackend(SDCARD);
+        Storage.set(storage);
+    }
+
+    @After
+    public void tearDown() {
+        Storage.set(null);
+    }
+
+    @Test
+    public void detectsFormatsByExtensionWithoutReadingTheFile() {
+        long fileReads = SyscallCounter.getFileReads();
+
+        assertEquals(AudioFormat.FLAC, AudioFormat.detect(new File(SDCARD, "missing.FLAC")));
+        assertEquals(AudioFormat.M4A, AudioFormat.fromName("song.m4a"));
+        assertNull(AudioFormat.fromName("cover.jpg"));
+        assertEquals(fileReads, SyscallCounter.getFileReads());
+    }
+
+    @Test
+    public void sniffsMagicBytes() {
+        assertEquals(AudioFormat.MP3, sniff("id3", concat(bytes("ID3"), new byte[20])));
+        assertEquals(AudioFormat.MP3, sniff("frame", new byte[] {(byte) 0xFF, (byte) 0xFB, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}));
+        assertEquals(AudioFormat.AAC, sniff("adts", new byte[] {(byte) 0xFF, (byte) 0xF1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}));
+        assertEquals(AudioFormat.OGG, sniff("ogg", concat(bytes("OggS"), new byte[20])));
+        assertEquals(AudioFormat.FLAC, sniff("flac", concat(bytes("fLaC"), new byte[20])));
+        assertEquals(AudioFormat.WAV, sniff("wav", concat(bytes("RIFF"), new byte[4], bytes("WAVE"), new byte[8])));
+        assertNull(sniff("text", bytes("just some notes")));
+        assertNull(sniff("short", bytes("ID")));
+    }
+
+    @Test
+    public void audioBrandsAreTracks() {
+        assertEquals(AudioFormat.M4A, sniff("audiobook", ftyp("M4B ", "M4B ", "mp42")));
+        assertEquals(AudioFormat.M4A, sniff("compatible", ftyp("mp42", "isom", "M4A ")));
+    }
+
+    @Test
+    public void imageAndVideoBrandsAreNotTracks() {
+        assertNull(sniff("photo", ftyp("heic", "mif1", "heic")));
+        assertNull(sniff("movie", concat(ftyp("qt  ", "qt  "), MDAT, box("moov", trak("soun")))));
+        assertNull(sniff("phone", concat(ftyp("3gp4", "isom", "3gp4"), box("moov", trak("soun")))));
+    }
+
+    @Test
+    public void genericBrandsAreTracksOnlyWithSoundTracksOnly() {
+        byte[] header = ftyp("isom", "isom", "iso2", "mp41");
+
+        assertEquals(AudioFormat.M4A, sniff("sound",
+                concat(header, MDAT, box("moov", box("mvhd", new byte[100]), trak("soun")))));
+        assertNull(sniff("video", concat(header, box("moov", trak("vide"), trak("soun")), MDAT)));
+        assertNull(sniff("nomoov", concat(header, MDAT)));
+    }
+
+    @Test
+    public void truncatedAndOversizedBoxesAreNotTracks() {
+        byte[] header = ftyp("mp42", "mp42");
+
+        assertNull(sniff("truncated", concat(header, new byte[] {0, 0, 0, 50, 'm', 'o', 'o', 'v', 0, 0})));
+        assertNull(sniff("oversized", concat(header, new byte[] {0, 0, 0, 1, 'm', 'o', 'o', 'v',
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0, 0, 0}, trak("soun"))));
+    }
+
+    @Test
+    public void largeBoxSizesAreSkipped() {
+        // A 64-bit mdat size, then the moov box behind it
+        byte[] largeMdat = concat(new byte[] {0, 0, 0, 1, 'm', 'd', 'a', 't', 0, 0, 0, 0, 0, 0, 0, 24}, new byte[8]);
+
+        assertEquals(AudioFormat.M4A, sniff("large",
+                concat(ftyp("isom", "isom"), largeMdat, box("moov", trak("soun")))));
+    }
+
+    @Test
+    public void cachedResultCostsOneStatUntilTheFileChanges() {
+        File file = new File(SDCARD, "cached");
+        storage.addFile(file, concat(ftyp("isom", "isom"), box("moov", trak("soun"))));
+        assertEquals(AudioFormat.M4A, AudioFormat.sniff(file));
+
+        long stats = SyscallCounter.getStats();
+        long fileReads = SyscallCounter.getFileReads();
+        assertEquals(AudioFormat.M4A, AudioFormat.sniff(file));
+        assertEquals(stats + 1, SyscallCounter.getStats());
+        assertEquals(fileReads, SyscallCounter.getFileReads());
+
+        storage.addFile(file, concat(ftyp("isom", "isom"), box("moov", trak("vide"))));
+        assertNull(AudioFormat.sniff(file));
+    }
+
+    @Test
+    public void missingFilesAndDirectoriesAreNotSniffed() {
+        storage.addDirectory(new File(SDCARD, "folder"));
+
+        assertNull(AudioFormat.sniff(new File(SDCARD, "absent")));
+        assertNull(AudioFormat.sniff(new File(SDCARD, "folder")));
+    }
+
+    private AudioFormat sniff(String name, byte[] content) {
+        File file = new File(SDCARD, name);
+        storage.addFile(file, content);
+        return AudioFormat.sniff(file);
+    }
+
+    private static byte[] ftyp(String majorBrand, String... compatibleBrands) {
+        byte[] body = concat(bytes(majorBrand), new byte[4]);
+        for (String brand : compatibleBrands) {
+            body = concat(body, bytes(brand));
+        }
+        return box("ftyp", body);
+    }
+
+    private static byte[] trak(String handlerType) {
+        return box("trak", box("tkhd", new byte[84]), box("mdia", box("mdhd", new byte[24]),
+                box("hdlr", new byte[8], bytes(handlerType), new byte[13])));
+    }
+
+    private static byte[] box(String type, byte[]... bodies) {
+        byte[] body = concat(bodies);
+        int size = 8 + body.length;
+        byte[] header = {(byte) (size >>> 24), (byte) (size >>> 16), (byte) (size >>> 8), (byte) size};
+        return concat(header, bytes(type), body);
+    }
+
+    private static byte[] bytes(String text) {
+        try {
+            return text.getBytes("ISO-8859-1");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
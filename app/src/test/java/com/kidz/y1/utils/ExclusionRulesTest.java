@@ -0,0 +1,116 @@
+package com.kidz.y1.utils;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExclusionRulesTest {
+    private static final File ROOT = new File("/mnt/sdcard/Kidz");
+
+    @Test
+    public void defaultPatternsIgnoreCase() {
+        ExclusionRules rules = ExclusionRules.DEFAULT;
+
+        assertTrue(rules.isExcluded(null, "._Track 1.mp3"));
+        assertTrue(rules.isExcluded(null, "lost.dir"));
+        assertTrue(rules.isExcluded(null, "FOUND.000"));
+        assertFalse(rules.isExcluded(null, "FOUND.0000"));
+        assertTrue(rules.isExcluded(null, ".Trash-1000"));
+        assertTrue(rules.isExcluded(null, "Track 1.mp3.BAK"));
+        assertTrue(rules.isExcluded(null, "Track 1.mp3~"));
+        assertFalse(rules.isExcluded(null, "Track 1.mp3"));
+    }
+
+    @Test
+    public void nameGlobsMatchAtAnyDepth() {
+        ExclusionRules rules = rules("Backup*", "*demo?");
+
+        assertTrue(rules.isExcluded("", "Backups"));
+        assertTrue(rules.isExcluded("Alice/Songs", "backup 2"));
+        assertTrue(rules.isExcluded("Alice", "Song Demo1"));
+        assertFalse(rules.isExcluded("Alice", "Song Demo"));
+        assertFalse(rules.isExcluded("Alice", "My Backup"));
+    }
+
+    @Test
+    public void pathGlobsMatchFromTheRoot() {
+        ExclusionRules rules = rules("Bob/Old Stories", "/Carol", "*/Drafts");
+
+        assertTrue(rules.isExcluded("Bob", "old stories"));
+        assertFalse(rules.isExcluded("Alice", "Old Stories"));
+        assertTrue(rules.isExcluded("", "Carol"));
+        assertFalse(rules.isExcluded("Alice", "Carol"));
+        assertTrue(rules.isExcluded("Alice", "Drafts"));
+        assertFalse(rules.isExcluded("Alice/Songs", "Drafts"));
+        assertFalse(rules.isExcluded(null, "Carol"));
+    }
+
+    @Test
+    public void doubleStarMatchesAnyNumberOfDirectories() {
+        ExclusionRules rules = rules("Bob/**", "**/Live/*.flac");
+
+        assertTrue(rules.isExcluded("", "Bob"));
+        assertTrue(rules.isExcluded("Bob/Songs", "Track 1.mp3"));
+        assertFalse(rules.isExcluded("", "Bobby"));
+        assertTrue(rules.isExcluded("Live", "Track 1.flac"));
+        assertTrue(rules.isExcluded("Alice/Songs/Live", "Track 1.FLAC"));
+        assertFalse(rules.isExcluded("Alice/Songs/Live", "Track 1.mp3"));
+    }
+
+    @Test
+    public void blankLinesCommentsAndTrailingSlashesAreIgnored() {
+        ExclusionRules rules = rules("", "   ", "# Bob", "Drafts/", "Alice\\Old");
+
+        assertFalse(rules.isExcluded("", "Bob"));
+        assertTrue(rules.isExcluded("Alice", "Drafts"));
+        assertTrue(rules.isExcluded("Alice", "Old"));
+        assertEquals(rules("Drafts", "alice/old").getFingerprint(), rules.getFingerprint());
+        assertFalse(rules("Drafts").getFingerprint() == rules.getFingerprint());
+    }
+
+    @Test
+    public void keepsAtMostTheMaximumNumberOfPatterns() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < Constants.MAX_EXCLUDE_PATTERNS; i++) {
+            lines.add("Pattern " + i);
+        }
+        lines.add("Bob");
+
+        ExclusionRules rules = ExclusionRules.forRoot(ROOT, lines);
+
+        assertTrue(rules.isExcluded("", "pattern 0"));
+        assertFalse(rules.isExcluded("", "Bob"));
+    }
+
+    @Test
+    public void relativePathsStayWithinTheRoot() {
+        ExclusionRules rules = rules();
+
+        assertEquals("", rules.getRelativePath(ROOT));
+        assertEquals("Alice/Songs", rules.getRelativePath(new File(ROOT, "Alice/Songs")));
+        assertNull(rules.getRelativePath(new File("/mnt/sdcard/Kidz2/Alice")));
+        assertNull(ExclusionRules.DEFAULT.getRelativePath(ROOT));
+    }
+
+    @Test
+    public void excludedPathsCheckEveryDirectory() {
+        ExclusionRules rules = rules("Bob/Drafts");
+
+        assertTrue(rules.isExcludedPath(new File(ROOT, "Bob/Drafts/Song/Track 1.mp3")));
+        assertTrue(rules.isExcludedPath(new File(ROOT, "Alice/.Trashes/Track 1.mp3")));
+        assertFalse(rules.isExcludedPath(new File(ROOT, "Alice/Drafts/Track 1.mp3")));
+        assertTrue(rules.isExcludedPath(new File("/mnt/usb/Music/Track 1.bak")));
+    }
+
+    private static ExclusionRules rules(String... lines) {
+        return ExclusionRules.forRoot(ROOT, Arrays.asList(lines));
+    }
+}
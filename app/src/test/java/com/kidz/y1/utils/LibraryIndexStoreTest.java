@@ -0,0 +1,153 @@
+package com.kidz.y1.utils;
+
+import com.kidz.y1.models.DirectorySignature;
+import com.kidz.y1.models.LibraryIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round-trips indexes through a real file in a temporary directory.
+ */
+public class LibraryIndexStoreTest {
+    private static final String ROOT = "/mnt/sdcard/Kidz";
+    private static final String PROFILE = ROOT + "/Alice";
+    private static final String ALBUM = PROFILE + "/Songs";
+
+    private File directory;
+    private LibraryIndexStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("index", "");
+        assertTrue(directory.delete() && directory.mkdir());
+        store = new LibraryIndexStore(new File(directory, Constants.LIBRARY_INDEX_FILE_NAME));
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void readsWhatWasWritten() {
+        LibraryIndex index = index();
+
+        assertTrue(store.write(index));
+        LibraryIndex read = store.read();
+
+        assertNotNull(read);
+        assertTrue(read.contentEquals(index));
+        assertTrue(read.signaturesEqual(index));
+        assertEquals(42, read.getExclusionFingerprint());
+        assertEquals(Arrays.asList(ALBUM + "/One.mp3", ALBUM + "/Two.mp3"), read.getTrackPaths(ALBUM));
+        assertEquals(PROFILE + "/Songs.jpg", read.getAlbumCover(ALBUM));
+        assertEquals(Constants.ID3_PREFIX + ALBUM + "/Two.mp3", read.getTrackCover(ALBUM + "/Two.mp3"));
+        assertEquals(new DirectorySignature(2000L, DirectorySignature.UNKNOWN_CHILD_COUNT), read.getSignature(ALBUM));
+        assertFalse(new File(store.getFile().getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void missingFileReadsAsNoIndex() {
+        assertNull(store.read());
+    }
+
+    @Test
+    public void corruptPayloadFailsTheChecksum() throws IOException {
+        assertTrue(store.write(index()));
+
+        RandomAccessFile file = new RandomAccessFile(store.getFile(), "rw");
+        try {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        assertNull(store.read());
+    }
+
+    @Test
+    public void otherFormatVersionIsIgnored() throws IOException {
+        assertTrue(store.write(index()));
+
+        RandomAccessFile file = new RandomAccessFile(store.getFile(), "rw");
+        try {
+            file.seek(4);
+            int version = file.readInt();
+            file.seek(4);
+            file.writeInt(version + 1);
+        } finally {
+            file.close();
+        }
+
+        assertNull(store.read());
+    }
+
+    @Test
+    public void truncatedFileIsIgnored() throws IOException {
+        assertTrue(store.write(index()));
+
+        RandomAccessFile file = new RandomAccessFile(store.getFile(), "rw");
+        try {
+            file.setLength(file.length() / 2);
+        } finally {
+            file.close();
+        }
+
+        assertNull(store.read());
+    }
+
+    @Test
+    public void secondaryRootsGetTheirOwnFile() {
+        File primary = LibraryIndexStore.getIndexFile(directory, new File(ROOT), true);
+        File card = LibraryIndexStore.getIndexFile(directory, new File("/mnt/extsd/Kidz"), false);
+        File usb = LibraryIndexStore.getIndexFile(directory, new File("/mnt/usb/Kidz"), false);
+
+        assertEquals(Constants.LIBRARY_INDEX_FILE_NAME, primary.getName());
+        assertFalse(card.equals(primary));
+        assertFalse(card.equals(usb));
+        assertEquals(card, LibraryIndexStore.getIndexFile(directory, new File("/mnt/extsd/Kidz"), false));
+    }
+
+    private static LibraryIndex index() {
+        Map<String, List<String>> albums = new HashMap<>();
+        albums.put(PROFILE, Collections.singletonList(ALBUM));
+        Map<String, List<String>> tracks = new HashMap<>();
+        tracks.put(ALBUM, Arrays.asList(ALBUM + "/One.mp3", ALBUM + "/Two.mp3"));
+        Map<String, String> albumCovers = new HashMap<>();
+        albumCovers.put(ALBUM, PROFILE + "/Songs.jpg");
+        Map<String, String> trackCovers = new HashMap<>();
+        trackCovers.put(ALBUM + "/Two.mp3", Constants.ID3_PREFIX + ALBUM + "/Two.mp3");
+        Map<String, DirectorySignature> signatures = new HashMap<>();
+        signatures.put(ROOT, new DirectorySignature(1000L, 1));
+        signatures.put(PROFILE, new DirectorySignature(1500L, 2));
+        signatures.put(ALBUM, new DirectorySignature(2000L, DirectorySignature.UNKNOWN_CHILD_COUNT));
+        return new LibraryIndex(ROOT, Collections.singletonList(PROFILE), albums, tracks,
+                Collections.<String, String>emptyMap(), albumCovers, trackCovers, signatures, 42);
+    }
+}
@@ -0,0 +1,151 @@
+package com.kidz.y1.utils;
+
+import com.kidz.y1.models.LibraryIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Walks synthetic libraries held in an InMemoryStorageBackend on the JVM, without a device.
+ */
+public class LibraryWalkerTest {
+    private static final File SDCARD = new File("/mem/sdcard");
+    private static final File KIDZ = new File(SDCARD, Constants.KIDZ_DIRECTORY_NAME);
+
+    private InMemoryStorageBackend storage;
+
+    @Before
+    public void setUp() {
+        storage = new InMemoryStorageBackend(SDCARD);
+        Storage.set(storage);
+        ScanExclusions.clear();
+    }
+
+    @After
+    public void tearDown() {
+        Storage.set(null);
+        ScanExclusions.clear();
+    }
+
+    @Test
+    public void walksSyntheticLibrary() {
+        addLibrary(3, 4, 10);
+        storage.addFile(new File(KIDZ, "Profile 1/Album 2.jpg"), 10);
+        storage.addFile(new File(KIDZ, "Profile 1/Album 3/notes.txt"), 10);
+        storage.addFile(new File(KIDZ, "Profile 1/Album 3/._Track 1.mp3"), 10);
+        storage.setEmbeddedPicture(new File(KIDZ, "Profile 2/Album 1/Track 1.mp3"), true);
+
+        LibraryIndex index = walk(null);
+
+        assertEquals(Arrays.asList(path("Profile 1"), path("Profile 2"), path("Profile 3")),
+                index.getProfilePaths());
+        assertEquals(4, index.getAlbumPaths(path("Profile 1")).size());
+        List<String> tracks = index.getTrackPaths(path("Profile 1/Album 3"));
+        assertEquals(10, tracks.size());
+        assertEquals(path("Profile 1/Album 3/Track 1.mp3"), tracks.get(0));
+        assertEquals(path("Profile 1/Album 3/Track 10.mp3"), tracks.get(9));
+        assertEquals(path("Profile 1/Album 2.jpg"), index.getAlbumCover(path("Profile 1/Album 2")));
+        assertEquals(Constants.ID3_PREFIX + path("Profile 2/Album 1/Track 1.mp3"),
+                index.getAlbumCover(path("Profile 2/Album 1")));
+        assertNull(index.getAlbumCover(path("Profile 3/Album 1")));
+    }
+
+    @Test
+    public void rewalkOfUnchangedLibraryReadsNoFiles() {
+        addLibrary(2, 3, 5);
+        LibraryIndex first = walk(null);
+
+        long directoryReads = SyscallCounter.getDirectoryReads();
+        long fileReads = SyscallCounter.getFileReads();
+        LibraryIndex second = walk(first);
+
+        assertTrue(second.contentEquals(first));
+        assertTrue(second.signaturesEqual(first));
+        assertEquals(directoryReads, SyscallCounter.getDirectoryReads());
+        assertEquals(fileReads, SyscallCounter.getFileReads());
+    }
+
+    @Test
+    public void rewalkListsOnlyChangedAlbumAndItsProfile() {
+        addLibrary(2, 3, 5);
+        LibraryIndex first = walk(null);
+        storage.addFile(new File(KIDZ, "Profile 2/Album 1/Track 6.mp3"), 4096);
+
+        long directoryReads = SyscallCounter.getDirectoryReads();
+        LibraryIndex second = walk(first);
+
+        // The album itself, then its profile for the album cover candidates
+        assertEquals(directoryReads + 2, SyscallCounter.getDirectoryReads());
+        assertEquals(6, second.getTrackPaths(path("Profile 2/Album 1")).size());
+        assertEquals(first.getTrackPaths(path("Profile 1/Album 1")), second.getTrackPaths(path("Profile 1/Album 1")));
+    }
+
+    @Test
+    public void rewalkPicksUpAddedAndRemovedEntries() {
+        addLibrary(2, 3, 5);
+        LibraryIndex first = walk(null);
+        storage.remove(new File(KIDZ, "Profile 1/Album 2/Track 3.mp3"));
+        storage.addFile(new File(KIDZ, "Profile 1/Album 2/Track 6.mp3"), 4096);
+        storage.remove(new File(KIDZ, "Profile 2/Album 3"));
+
+        LibraryIndex second = walk(first);
+
+        assertFalse(second.contentEquals(first));
+        List<String> tracks = second.getTrackPaths(path("Profile 1/Album 2"));
+        assertEquals(5, tracks.size());
+        assertFalse(tracks.contains(path("Profile 1/Album 2/Track 3.mp3")));
+        assertTrue(tracks.contains(path("Profile 1/Album 2/Track 6.mp3")));
+        assertEquals(2, second.getAlbumPaths(path("Profile 2")).size());
+    }
+
+    @Test
+    public void walkWithStorageLatencyBuildsTheSameIndex() {
+        addLibrary(2, 2, 3);
+        LibraryIndex fast = walk(null);
+        storage.setLatency(InMemoryStorageBackend.Operation.LIST, 2, TimeUnit.MILLISECONDS);
+        storage.setLatency(InMemoryStorageBackend.Operation.STAT, 1, TimeUnit.MILLISECONDS);
+        long lists = storage.getCallCount(InMemoryStorageBackend.Operation.LIST);
+        long reads = storage.getCallCount(InMemoryStorageBackend.Operation.READ);
+
+        long start = System.nanoTime();
+        LibraryIndex slow = walk(null);
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(slow.contentEquals(fast));
+        // One listing per directory: the root, 2 profiles and 4 albums
+        assertEquals(lists + 7, storage.getCallCount(InMemoryStorageBackend.Operation.LIST));
+        // ID3 art lookups: the album cover, then the cover of each of the 3 tracks, per album
+        assertEquals(reads + 4 * (1 + 3), storage.getCallCount(InMemoryStorageBackend.Operation.READ));
+        // The root, profile and album levels are listed one after the other, however parallel
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(3 * 2));
+    }
+
+    private void addLibrary(int profiles, int albums, int tracks) {
+        for (int p = 1; p <= profiles; p++) {
+            for (int a = 1; a <= albums; a++) {
+                for (int t = 1; t <= tracks; t++) {
+                    storage.addFile(new File(KIDZ, "Profile " + p + "/Album " + a + "/Track " + t + ".mp3"), 4096);
+                }
+            }
+        }
+    }
+
+    private static LibraryIndex walk(LibraryIndex previous) {
+        return LibraryWalker.walk(KIDZ, previous, DirectorySource.FILESYSTEM);
+    }
+
+    private static String path(String relativePath) {
+        return new File(KIDZ, relativePath).getAbsolutePath();
+    }
+}
@@ -0,0 +1,67 @@
+package com.kidz.y1.utils;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NaturalOrderTest {
+
+    @Test
+    public void digitRunsCompareByNumericValue() {
+        assertEquals(Arrays.asList("Chapter 1", "Chapter 2", "Chapter 10", "Chapter 100"),
+                sorted("Chapter 10", "Chapter 2", "Chapter 100", "Chapter 1"));
+    }
+
+    @Test
+    public void caseIsIgnored() {
+        assertEquals(Arrays.asList("apple", "Banana", "cherry"), sorted("cherry", "Banana", "apple"));
+    }
+
+    @Test
+    public void numbersSortBeforeLetters() {
+        assertEquals(Arrays.asList("7 Dwarves", "Abba"), sorted("Abba", "7 Dwarves"));
+    }
+
+    @Test
+    public void leadingZerosDoNotChangeTheValue() {
+        assertTrue(NaturalOrder.sortKey("Track 002").compareTo(NaturalOrder.sortKey("Track 10")) < 0);
+        assertTrue(NaturalOrder.sortKey("Track 10").compareTo(NaturalOrder.sortKey("Track 0011")) < 0);
+    }
+
+    @Test
+    public void namesDifferingOnlyInCaseOrZerosHaveDistinctKeys() {
+        assertTrue(!NaturalOrder.sortKey("Track 1").equals(NaturalOrder.sortKey("Track 01")));
+        assertTrue(!NaturalOrder.sortKey("abc").equals(NaturalOrder.sortKey("ABC")));
+        assertEquals(sorted("Track 01", "Track 1"), sorted("Track 1", "Track 01"));
+    }
+
+    @Test
+    public void sortsFilesByNameOnly() {
+        List<File> files = new ArrayList<>(Arrays.asList(
+                new File("/z/Track 3.mp3"), new File("/a/Track 20.mp3"), new File("/m/track 1.mp3")));
+
+        NaturalOrder.sortFiles(files);
+
+        assertEquals(Arrays.asList(new File("/m/track 1.mp3"), new File("/z/Track 3.mp3"),
+                new File("/a/Track 20.mp3")), files);
+    }
+
+    private static List<String> sorted(String... names) {
+        List<File> files = new ArrayList<>();
+        for (String name : names) {
+            files.add(new File(name));
+        }
+        NaturalOrder.sortFiles(files);
+        List<String> result = new ArrayList<>();
+        for (File file : files) {
+            result.add(file.getName());
+        }
+        return result;
+    }
+}
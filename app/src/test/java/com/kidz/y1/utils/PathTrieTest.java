@@ -0,0 +1,89 @@
+package com.kidz.y1.utils;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PathTrieTest {
+
+    @Test
+    public void getsWhatWasPut() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/Kidz/Alice", "alice");
+        trie.put("/Kidz/Alice/Songs", "songs");
+
+        assertEquals("alice", trie.get("/Kidz/Alice"));
+        assertEquals("songs", trie.get("/Kidz/Alice/Songs"));
+        assertNull(trie.get("/Kidz"));
+        assertNull(trie.get("/Kidz/Alice/Songs/Track 1.mp3"));
+        assertEquals(2, trie.size());
+    }
+
+    @Test
+    public void removeSubtreeStopsAtSegmentBoundaries() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/Kidz/Alice", "alice");
+        trie.put("/Kidz/Alice/Songs", "songs");
+        trie.put("/Kidz/Alice/Songs/Live", "live");
+        trie.put("/Kidz/Alice2", "alice2");
+
+        assertEquals(3, trie.removeSubtree("/Kidz/Alice"));
+
+        assertNull(trie.get("/Kidz/Alice"));
+        assertNull(trie.get("/Kidz/Alice/Songs/Live"));
+        assertEquals("alice2", trie.get("/Kidz/Alice2"));
+        assertEquals(1, trie.size());
+        assertEquals(0, trie.removeSubtree("/Kidz/Bob"));
+    }
+
+    @Test
+    public void removeOnlyRemovesTheGivenValue() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/Kidz/Alice", "new");
+
+        assertFalse(trie.remove("/Kidz/Alice", "old"));
+        assertTrue(trie.remove("/Kidz/Alice", "new"));
+        assertNull(trie.get("/Kidz/Alice"));
+        assertEquals(0, trie.size());
+    }
+
+    @Test
+    public void findsValuesOfAncestors() {
+        PathTrie<Long> trie = new PathTrie<>();
+        trie.put("/Kidz/Alice", 1L);
+
+        assertTrue(trie.containsSelfOrAncestor("/Kidz/Alice"));
+        assertTrue(trie.containsSelfOrAncestor("/Kidz/Alice/Songs/Track 1.mp3"));
+        assertFalse(trie.containsSelfOrAncestor("/Kidz"));
+        assertFalse(trie.containsSelfOrAncestor("/Kidz/Alice2"));
+    }
+
+    @Test
+    public void copiesEveryPathToAMap() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/Kidz/Alice", "alice");
+        trie.put("/Kidz/Bob/Songs", "songs");
+
+        Map<String, String> map = trie.toMap();
+
+        assertEquals(2, map.size());
+        assertEquals("alice", map.get("/Kidz/Alice"));
+        assertEquals("songs", map.get("/Kidz/Bob/Songs"));
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/Kidz/Alice", "alice");
+
+        trie.clear();
+
+        assertEquals(0, trie.size());
+        assertNull(trie.get("/Kidz/Alice"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.kidz.y1.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlaylistParserTest {
+    private static final File SDCARD = new File("/mem/sdcard");
+    private static final File PROFILE = new File(SDCARD, Constants.KIDZ_DIRECTORY_NAME + "/Alice");
+
+    private InMemoryStorageBackend storage;
+
+    @Before
+    public void setUp() {
+        storage = new InMemoryStorageBackend(SDCARD);
+        Storage.set(storage);
+        storage.addFile(track("Songs/One.mp3"), 4096);
+        storage.addFile(track("Songs/Two.flac"), 4096);
+        storage.addFile(track("Songs/cover.jpg"), 4096);
+    }
+
+    @After
+    public void tearDown() {
+        Storage.set(null);
+    }
+
+    @Test
+    public void recognizesPlaylistNames() {
+        assertTrue(PlaylistParser.isPlaylistName("Bedtime.M3U"));
+        assertTrue(PlaylistParser.isPlaylist(new File("Road trip.pls")));
+        assertFalse(PlaylistParser.isPlaylistName("Bedtime.mp3"));
+        assertEquals("Bedtime", PlaylistParser.getBaseName("Bedtime.m3u8"));
+        assertEquals("Songs", PlaylistParser.getBaseName("Songs"));
+    }
+
+    @Test
+    public void readsM3uEntriesRelativeToThePlaylist() throws IOException {
+        File playlist = playlist("Bedtime.m3u", "\uFEFF#EXTM3U\n#EXTINF:123,One\nSongs/One.mp3\n\n"
+                + "Songs\\Two.flac\r\n./Songs/../Songs/One.mp3\n");
+
+        assertEquals(Arrays.asList(track("Songs/One.mp3"), track("Songs/Two.flac"), track("Songs/One.mp3")),
+                PlaylistParser.parse(playlist));
+    }
+
+    @Test
+    public void readsPlsFileKeysInFileOrder() throws IOException {
+        File playlist = playlist("Road trip.pls", "[playlist]\nFile1=Songs/Two.flac\nTitle1=Two\n"
+                + "file2 = " + track("Songs/One.mp3").getAbsolutePath() + "\nNumberOfEntries=2\n");
+
+        assertEquals(Arrays.asList(track("Songs/Two.flac"), track("Songs/One.mp3")), PlaylistParser.parse(playlist));
+    }
+
+    @Test
+    public void skipsEntriesThatAreNotLocalTracks() throws IOException {
+        File playlist = playlist("Mixed.m3u", "http://radio.example/stream.mp3\nC:\\Music\\One.mp3\n"
+                + "Songs/Missing.mp3\nSongs/cover.jpg\nSongs\nfile://" + track("Songs/One.mp3").getAbsolutePath() + "\n");
+
+        assertEquals(Collections.singletonList(track("Songs/One.mp3")), PlaylistParser.parse(playlist));
+    }
+
+    @Test
+    public void keepsAtMostTheMaximumNumberOfEntries() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < Constants.MAX_PLAYLIST_ENTRIES + 10; i++) {
+            content.append("Songs/One.mp3\n");
+        }
+
+        assertEquals(Constants.MAX_PLAYLIST_ENTRIES, PlaylistParser.parse(playlist("Long.m3u", content.toString())).size());
+    }
+
+    private File playlist(String name, String content) throws IOException {
+        File playlist = new File(PROFILE, name);
+        storage.addFile(playlist, content.getBytes("UTF-8"));
+        return playlist;
+    }
+
+    private static File track(String relativePath) {
+        return new File(PROFILE, relativePath);
+    }
+}
@@ -0,0 +1,113 @@
+package com.kidz.y1.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SegmentedLruTest {
+
+    @Test
+    public void evictsTheOldestEntryWhileOverweight() {
+        SegmentedLru<Item> lru = new SegmentedLru<>(10);
+        Item a = add(lru, "a", 4);
+        add(lru, "b", 4);
+        add(lru, "c", 4);
+
+        assertSame(a, lru.evict());
+        assertNull(lru.evict());
+        assertEquals(8, lru.getWeight());
+        assertEquals(1, lru.getEvictionCount());
+    }
+
+    @Test
+    public void entriesHitTwiceSurviveAScan() {
+        SegmentedLru<Item> lru = new SegmentedLru<>(10);
+        Item a = add(lru, "a", 2);
+        lru.access(a);
+        Item b = add(lru, "b", 2);
+        add(lru, "c", 2);
+        add(lru, "d", 2);
+        add(lru, "e", 2);
+        Item f = add(lru, "f", 2);
+
+        assertSame(b, lru.evict());
+        assertNull(lru.evict());
+        lru.access(f);
+        add(lru, "g", 4);
+        assertEquals("c", lru.evict().name);
+        assertEquals("d", lru.evict().name);
+        assertNull(lru.evict());
+    }
+
+    @Test
+    public void protectedOverflowIsDemotedToProbation() {
+        // The protected segment holds at most 8 of the 10
+        SegmentedLru<Item> lru = new SegmentedLru<>(10);
+        Item a = add(lru, "a", 3);
+        Item b = add(lru, "b", 3);
+        Item c = add(lru, "c", 3);
+        lru.access(a);
+        lru.access(b);
+        lru.access(c);
+        add(lru, "d", 3);
+
+        assertSame(a, lru.evict());
+        assertNull(lru.evict());
+    }
+
+    @Test
+    public void evictsFromProtectedWhenProbationIsEmpty() {
+        SegmentedLru<Item> lru = new SegmentedLru<>(10);
+        Item a = add(lru, "a", 12);
+        lru.access(a);
+
+        assertSame(a, lru.evict());
+        assertEquals(0, lru.getWeight());
+        assertNull(lru.evict());
+    }
+
+    @Test
+    public void removedEntriesAreNoLongerTracked() {
+        SegmentedLru<Item> lru = new SegmentedLru<>(10);
+        Item a = add(lru, "a", 6);
+        lru.access(a);
+        lru.remove(a);
+        lru.remove(a);
+        lru.access(a);
+
+        assertEquals(0, lru.getWeight());
+        Item b = add(lru, "b", 6);
+        add(lru, "c", 6);
+        assertSame(b, lru.evict());
+        assertEquals(1, lru.getEvictionCount());
+    }
+
+    @Test
+    public void clearDropsAllWeight() {
+        SegmentedLru<Item> lru = new SegmentedLru<>(10);
+        add(lru, "a", 6);
+        add(lru, "b", 6);
+
+        lru.clear();
+
+        assertEquals(0, lru.getWeight());
+        assertNull(lru.evict());
+        assertEquals(10, lru.getMaxWeight());
+    }
+
+    private static Item add(SegmentedLru<Item> lru, String name, long weight) {
+        Item item = new Item(name);
+        lru.add(item, weight);
+        return item;
+    }
+
+    private static class Item extends SegmentedLru.Entry {
+        final String name;
+
+        Item(String name) {
+            this.name = name;
+        }
+    }
+}